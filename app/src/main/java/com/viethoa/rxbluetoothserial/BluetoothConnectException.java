@@ -0,0 +1,27 @@
+package com.viethoa.rxbluetoothserial;
+
+import java.io.IOException;
+
+/**
+ * Bonding or connecting to a device failed, a {@link java.util.concurrent.TimeoutException}
+ * cause means the stage took longer than allowed by {@link ConnectOptions}.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class BluetoothConnectException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    @ConnectStage
+    private final int stage;
+
+    public BluetoothConnectException(@ConnectStage int stage, String message, Throwable cause) {
+        super(message, cause);
+        this.stage = stage;
+    }
+
+    @ConnectStage
+    public int getStage() {
+        return stage;
+    }
+}
@@ -0,0 +1,166 @@
+package com.viethoa.rxbluetoothserial;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps the devices found by the current scan in a map keyed by address, so a device reported
+ * again only produces an event when its name or signal strength actually changed. The broadcast
+ * receiver is only registered while someone listens.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class BluetoothDiscovery {
+
+    /**
+     * Smaller signal strength changes are dropped, they are mostly noise.
+     */
+    public static final int RSSI_CHANGE_DBM = 4;
+
+    private final Context context;
+    private final BluetoothAdapter adapter;
+    private final CopyOnWriteArrayList<DiscoveryListener> listeners = new CopyOnWriteArrayList<>();
+    // Guarded by itself, like the list.
+    private final Map<String, Integer> positions = new HashMap<>();
+    private final List<DiscoveredDevice> devices = new ArrayList<>();
+    private boolean registered;
+
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            String action = intent.getAction();
+            if (BluetoothAdapter.ACTION_DISCOVERY_STARTED.equals(action)) {
+                onStarted();
+            } else if (BluetoothAdapter.ACTION_DISCOVERY_FINISHED.equals(action)) {
+                onFinished();
+            } else if (BluetoothDevice.ACTION_FOUND.equals(action)
+                    || BluetoothDevice.ACTION_NAME_CHANGED.equals(action)) {
+                BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
+                if (device != null) {
+                    int rssi = intent.getShortExtra(BluetoothDevice.EXTRA_RSSI, Short.MIN_VALUE);
+                    onFound(device, intent.getStringExtra(BluetoothDevice.EXTRA_NAME), rssi,
+                            BluetoothDevice.ACTION_FOUND.equals(action));
+                }
+            }
+        }
+    };
+
+    public BluetoothDiscovery(Context context, BluetoothAdapter adapter) {
+        this.context = context.getApplicationContext();
+        this.adapter = adapter;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Replays the devices found so far as {@link DiscoveryEventType#FOUND} events on the calling
+     * thread, later events come on the main thread.
+     */
+    public void addListener(DiscoveryListener listener) {
+        synchronized (devices) {
+            if (!listeners.addIfAbsent(listener)) {
+                return;
+            }
+            for (int i = 0; i < devices.size(); i++) {
+                listener.onDiscoveryEvent(new DiscoveryEvent(DiscoveryEventType.FOUND, devices.get(i), i));
+            }
+            if (!registered && adapter != null) {
+                IntentFilter filter = new IntentFilter();
+                filter.addAction(BluetoothDevice.ACTION_FOUND);
+                filter.addAction(BluetoothDevice.ACTION_NAME_CHANGED);
+                filter.addAction(BluetoothAdapter.ACTION_DISCOVERY_STARTED);
+                filter.addAction(BluetoothAdapter.ACTION_DISCOVERY_FINISHED);
+                context.registerReceiver(receiver, filter);
+                registered = true;
+            }
+        }
+    }
+
+    public void removeListener(DiscoveryListener listener) {
+        synchronized (devices) {
+            listeners.remove(listener);
+            if (registered && listeners.isEmpty()) {
+                context.unregisterReceiver(receiver);
+                registered = false;
+            }
+        }
+    }
+
+    /**
+     * Devices found by the current or last scan, in discovery order.
+     */
+    public List<DiscoveredDevice> getDevices() {
+        synchronized (devices) {
+            return new ArrayList<>(devices);
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Settings
+    //----------------------------------------------------------------------------------------------
+
+    private void onStarted() {
+        synchronized (devices) {
+            devices.clear();
+            positions.clear();
+            publish(new DiscoveryEvent(DiscoveryEventType.STARTED, null, -1));
+        }
+    }
+
+    private void onFinished() {
+        synchronized (devices) {
+            publish(new DiscoveryEvent(DiscoveryEventType.FINISHED, null, -1));
+        }
+    }
+
+    private void onFound(BluetoothDevice device, String name, int rssi, boolean found) {
+        synchronized (devices) {
+            Integer position = positions.get(device.getAddress());
+            if (position == null && !found) {
+                // Renamed, but not seen by this scan.
+                return;
+            }
+            if (position == null) {
+                DiscoveredDevice added = new DiscoveredDevice(device, name != null ? name : device.getName(), rssi);
+                positions.put(device.getAddress(), devices.size());
+                devices.add(added);
+                publish(new DiscoveryEvent(DiscoveryEventType.FOUND, added, devices.size() - 1));
+                return;
+            }
+
+            // Name changes come without a signal strength, keep the last one.
+            DiscoveredDevice last = devices.get(position);
+            String newName = name != null ? name : last.getName();
+            int newRssi = rssi != Short.MIN_VALUE ? rssi : last.getRssi();
+            boolean renamed = !TextUtils.equals(newName, last.getName());
+            boolean moved = newRssi != last.getRssi()
+                    && (!last.hasRssi() || Math.abs(newRssi - last.getRssi()) >= RSSI_CHANGE_DBM);
+            if (!renamed && !moved) {
+                return;
+            }
+
+            DiscoveredDevice updated = new DiscoveredDevice(device, newName, newRssi);
+            devices.set(position, updated);
+            publish(new DiscoveryEvent(DiscoveryEventType.UPDATED, updated, position));
+        }
+    }
+
+    private void publish(DiscoveryEvent event) {
+        for (DiscoveryListener listener : listeners) {
+            listener.onDiscoveryEvent(event);
+        }
+    }
+}
@@ -5,11 +5,55 @@ import android.bluetooth.BluetoothDevice;
 import android.bluetooth.BluetoothManager;
 import android.content.Context;
 import android.os.Build;
-import android.util.Log;
 
-import java.lang.reflect.Method;
-import java.nio.charset.Charset;
+import com.viethoa.rxbluetoothserial.cores.Logger;
+import com.viethoa.rxbluetoothserial.cores.SerialText;
+import com.viethoa.rxbluetoothserial.serialportprofile.SPPService;
+import com.viethoa.rxbluetoothserial.serialportprofile.SPPServiceListener;
+import com.viethoa.rxbluetoothserial.serialportprofile.buffer.BufferLeakListener;
+import com.viethoa.rxbluetoothserial.serialportprofile.buffer.BufferPool;
+import com.viethoa.rxbluetoothserial.serialportprofile.buffer.PooledBuffer;
+import com.viethoa.rxbluetoothserial.serialportprofile.codec.FrameDecoder;
+import com.viethoa.rxbluetoothserial.serialportprofile.command.CommandCorrelator;
+import com.viethoa.rxbluetoothserial.serialportprofile.command.CommandWriter;
+import com.viethoa.rxbluetoothserial.serialportprofile.command.PendingCommand;
+import com.viethoa.rxbluetoothserial.serialportprofile.command.ResponseCallback;
+import com.viethoa.rxbluetoothserial.serialportprofile.command.ResponseMatcher;
+import com.viethoa.rxbluetoothserial.serialportprofile.command.SerialCommand;
+import com.viethoa.rxbluetoothserial.serialportprofile.codec.FrameListener;
+import com.viethoa.rxbluetoothserial.serialportprofile.codec.FrameListeners;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.IoEventLog;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.ReconnectPolicy;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialDispatchOptions;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialDispatcher;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialIoRuntime;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialIoRuntimeOptions;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialReadOptions;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialTransport;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialWriteOptions;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialWriteSource;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialWriteSources;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.TimerWheel;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.WriteFuture;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.WriteProgressListener;
+import com.viethoa.rxbluetoothserial.serialportprofile.journal.JournalReader;
+import com.viethoa.rxbluetoothserial.serialportprofile.journal.ReplayTransport;
+import com.viethoa.rxbluetoothserial.serialportprofile.journal.SerialJournal;
+import com.viethoa.rxbluetoothserial.serialportprofile.metrics.MetricsSnapshot;
+import com.viethoa.rxbluetoothserial.serialportprofile.metrics.SerialMetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by VietHoa on 23/10/2016.
@@ -17,25 +61,87 @@ import java.util.Set;
 public class BluetoothSerial implements SPPServiceListener {
 
     private static final String TAG = BluetoothSerial.class.getSimpleName();
-    private static final byte[] CRLF = {0x0D, 0x0A};
+    private static final byte[] NO_DELIMITER = new byte[0];
+    private static final BufferLeakListener LEAK_LOGGER = new BufferLeakListener() {
+        @Override
+        public void onBufferLeaked(Exception acquiredAt) {
+            Logger.e(TAG, "Pooled buffer was never released", acquiredAt);
+        }
+    };
 
+    private Context mContext;
     private BluetoothAdapter mAdapter;
-    private Set<android.bluetooth.BluetoothDevice> mPairedDevices;
+    private BluetoothDiscovery mDiscovery;
+    private DeviceRegistry mDeviceRegistry;
 
-    private SPPService mService;
+    private volatile SPPService mService;
+    // Made on setup and shut down on stop when not given, null meanwhile.
+    private volatile SerialIoRuntime mRuntime;
+    private final boolean mOwnsRuntime;
     private BluetoothDevice mConnectedDevice;
     private BluetoothSerialListener mListener;
+    private SerialWriteOptions mWriteOptions;
+    private SerialReadOptions mReadOptions;
+    private ReconnectPolicy mReconnectPolicy;
+    private IoEventLog mEventLog;
+    private SerialJournal mJournal;
+    private Executor mDispatchExecutor;
+    private SerialDispatchOptions mDispatchOptions;
+    private final BluetoothSerialRawListeners mRawListeners = new BluetoothSerialRawListeners();
+    private final CopyOnWriteArrayList<BluetoothSerialStateListener> mStateListeners = new CopyOnWriteArrayList<>();
+    private final FrameListeners mFrameListeners = new FrameListeners();
+    private final SerialMetrics mMetrics = new SerialMetrics();
+    private final CommandCorrelator mCommands = new CommandCorrelator(new CommandWriter() {
+        @Override
+        public WriteFuture write(byte[] data) {
+            return BluetoothSerial.this.write(data);
+        }
+    }, TimerWheel.shared(), new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            SerialIoRuntime runtime = mRuntime;
+            if (runtime == null) {
+                throw new RejectedExecutionException("Serial is stopped");
+            }
+            runtime.getWriteExecutor().execute(command);
+        }
+    });
+    private final FrameListener mFrameDispatcher = new FrameListener() {
+        @Override
+        public void onFrame(byte[] buffer, int offset, int length) {
+            mMetrics.onFrameRead();
+            mCommands.onFrame(buffer, offset, length);
+            mFrameListeners.onFrame(buffer, offset, length);
+        }
+    };
+    private volatile FrameDecoder mFrameDecoder;
+    private volatile boolean mTextDecodingEnabled;
 
     public BluetoothSerial(Context context, BluetoothSerialListener listener) {
+        this(context, listener, null);
+    }
+
+    /**
+     * Connects, reads, writes and callbacks run on {@code runtime}, which {@link #stop()} leaves
+     * running. When null the serial has threads of its own, so a remote that stopped reading or a
+     * slow listener holds up no other serial, and stop shuts them down.
+     */
+    public BluetoothSerial(Context context, BluetoothSerialListener listener, SerialIoRuntime runtime) {
+        mContext = context.getApplicationContext();
+        mRuntime = runtime;
+        mOwnsRuntime = runtime == null;
         mAdapter = getAdapter(context);
+        mDiscovery = new BluetoothDiscovery(context, mAdapter);
+        mDeviceRegistry = new DeviceRegistry(context, mAdapter);
         mListener = listener;
+        detectBufferLeaks();
     }
 
     //----------------------------------------------------------------------------------------------
     // Settings
     //----------------------------------------------------------------------------------------------
 
-    private BluetoothAdapter getAdapter(Context context) {
+    static BluetoothAdapter getAdapter(Context context) {
         BluetoothAdapter bluetoothAdapter = null;
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
             BluetoothManager bluetoothManager = (BluetoothManager) context.getSystemService(Context.BLUETOOTH_SERVICE);
@@ -47,6 +153,15 @@ public class BluetoothSerial implements SPPServiceListener {
         return bluetoothAdapter;
     }
 
+    /**
+     * Debug builds report pooled buffers that were dropped without a release.
+     */
+    static void detectBufferLeaks() {
+        if (BuildConfig.DEBUG) {
+            BufferPool.shared().setLeakListener(LEAK_LOGGER);
+        }
+    }
+
     private boolean checkBluetooth() {
         if (mAdapter == null) {
             mListener.onBluetoothNotSupported();
@@ -70,13 +185,27 @@ public class BluetoothSerial implements SPPServiceListener {
             return;
         }
 
-        if (mPairedDevices == null) {
-            Log.d(TAG, "Create mPairedDevices");
-            mPairedDevices = mAdapter.getBondedDevices();
-        }
+        mDeviceRegistry.start();
+        createService();
+    }
+
+    private void createService() {
         if (mService == null) {
-            Log.d(TAG, "Create mService");
-            mService = new SPPService(this);
+            Logger.d(TAG, "Create mService");
+            if (mRuntime == null) {
+                mRuntime = new SerialIoRuntime(TAG, new SerialIoRuntimeOptions()
+                        .setMaxSessions(1)
+                        .setWriteThreads(1));
+            }
+            SPPService service = new SPPService(this, mRuntime);
+            service.setWriteOptions(mWriteOptions);
+            service.setReadOptions(mReadOptions);
+            service.setReconnectPolicy(mReconnectPolicy);
+            service.setMetrics(mMetrics);
+            service.setEventLog(mEventLog);
+            service.setJournal(mJournal);
+            service.setDispatcher(mDispatchExecutor, mDispatchOptions);
+            mService = service;
         }
     }
 
@@ -92,6 +221,21 @@ public class BluetoothSerial implements SPPServiceListener {
         }
     }
 
+    /**
+     * Deduplicated scan results with their signal strength, see {@link BluetoothDiscovery}.
+     */
+    public void addDiscoveryListener(DiscoveryListener listener) {
+        mDiscovery.addListener(listener);
+    }
+
+    public void removeDiscoveryListener(DiscoveryListener listener) {
+        mDiscovery.removeListener(listener);
+    }
+
+    public List<DiscoveredDevice> getDiscoveredDevices() {
+        return mDiscovery.getDevices();
+    }
+
     public void connect(android.bluetooth.BluetoothDevice device) {
         // Always stop discover because it will slow down connection
         stopDiscover();
@@ -102,65 +246,335 @@ public class BluetoothSerial implements SPPServiceListener {
         }
     }
 
+    /**
+     * Bond with the device when needed, then connect, see
+     * {@link #connect(String, ConnectOptions, ConnectCallback)}. The outcome comes to the
+     * {@link BluetoothSerialListener}.
+     */
     public void connect(String address) {
-        try {
-            android.bluetooth.BluetoothDevice device = mAdapter.getRemoteDevice(address);
-            if (device == null) {
-                mListener.onBluetoothDeviceDisconnected();
-                return;
+        connect(address, new ConnectOptions(), null);
+    }
+
+    /**
+     * Bond with the device unless it is bonded already, wait for the bond to complete, then
+     * connect over RFCOMM, all in one go, so a device used for the first time needs no second
+     * try. Each stage fails on its own timeout from {@code options}. The
+     * {@link BluetoothSerialListener} is told about the progress as usual.
+     *
+     * @param callback told about the connection and how long each stage took, may be null
+     */
+    public PendingConnect connect(String address, ConnectOptions options, final ConnectCallback callback) {
+        stopDiscover();
+        mListener.onConnectingBluetoothDevice();
+
+        android.bluetooth.BluetoothDevice device = null;
+        IOException error = null;
+        if (mAdapter == null || !mAdapter.isEnabled()) {
+            error = new IOException("Bluetooth is off");
+        } else if (!BluetoothAdapter.checkBluetoothAddress(address)) {
+            error = new IOException("Invalid device address " + address);
+        } else {
+            device = mAdapter.getRemoteDevice(address);
+            createService();
+        }
+
+        PendingConnect pending = new PendingConnect(this, mContext, device, options, new ConnectCallback() {
+            @Override
+            public void onConnected(SerialConnection connection) {
+                if (callback != null) {
+                    callback.onConnected(connection);
+                }
             }
 
-            mListener.onConnectingBluetoothDevice();
-            if (device.getBondState() != android.bluetooth.BluetoothDevice.BOND_BONDED) {
-                Method method = device.getClass().getMethod("createBond", (Class[]) null);
-                method.invoke(device, (Object[]) null);
-            } else {
-                connect(device);
+            @Override
+            public void onConnectFailed(Throwable error) {
+                if (!(error instanceof BluetoothConnectException)
+                        || ((BluetoothConnectException) error).getStage() != ConnectStage.CONNECT) {
+                    // Connect failures are told by the state change.
+                    mListener.onBluetoothDeviceDisconnected();
+                }
+                if (callback != null) {
+                    callback.onConnectFailed(error);
+                }
             }
-        } catch (Exception e) {
-            Log.e(TAG, "BluetoothDevice not found!");
+        });
+        if (error != null) {
+            pending.fail(error, false);
+            return pending;
         }
+
+        RegisteredDevice registered = mDeviceRegistry.get(address);
+        pending.start(registered != null && mDeviceRegistry.isLoaded()
+                ? registered.isBonded()
+                : device.getBondState() == android.bluetooth.BluetoothDevice.BOND_BONDED);
+        return pending;
     }
 
-    public void write(byte[] data) {
-        if (mService.getState() == BluetoothSerialState.CONNECTED) {
-            mService.write(data);
+    /**
+     * Stop a connect in progress, the state goes back to disconnected.
+     */
+    void cancelConnect() {
+        if (mService != null) {
+            mService.disconnect();
         }
     }
 
-    public void write(String data, boolean crlf) {
-        write(data.getBytes(Charset.forName("ISO-8859-1")));
-        if (crlf) {
-            write(CRLF);
+    /**
+     * Run the connection on {@code transport} instead of a bluetooth socket, through the same
+     * framing, commands and listeners, e.g. a {@link ReplayTransport} of a recorded session. Works
+     * without bluetooth.
+     */
+    public void connect(SerialTransport transport) {
+        createService();
+        mConnectedDevice = null;
+        mService.resetConnection();
+        mService.connect(transport);
+    }
+
+    /**
+     * Queue bytes for the writer thread, safe to call from the UI thread. The array must not be
+     * changed until the returned future is done.
+     */
+    public WriteFuture write(byte[] data) {
+        SPPService service = mService;
+        if (service == null) {
+            return WriteFuture.failed(new IOException("Not connected"));
         }
+        return service.write(data);
+    }
+
+    /**
+     * The remaining bytes of every buffer as one write, streamed through the writer in MTU sized
+     * chunks without copying them up front. The buffers must not change until the future is done.
+     */
+    public WriteFuture write(ByteBuffer... buffers) {
+        return writeFrom(SerialWriteSources.of(buffers), 0, null);
     }
 
-    public void write(String data) {
-        write(data.getBytes(Charset.forName("ISO-8859-1")));
+    /**
+     * Streams the file through the writer, e.g. a firmware upload, one chunk in memory at a time.
+     *
+     * @param chunkSize bytes read per transport write, 0 for the MTU
+     * @param progress  called on the writer thread after each chunk, may be null
+     */
+    public WriteFuture writeFrom(File file, int chunkSize, WriteProgressListener progress) {
+        try {
+            return writeFrom(SerialWriteSources.of(file), chunkSize, progress);
+        } catch (IOException e) {
+            return WriteFuture.failed(e);
+        }
     }
 
-    public void writeln(String data) {
-        write(data.getBytes(Charset.forName("ISO-8859-1")));
-        write(CRLF);
+    /**
+     * Streams {@code inputStream} to its end and closes it once the write is done or failed.
+     */
+    public WriteFuture writeFrom(InputStream inputStream, int chunkSize, WriteProgressListener progress) {
+        return writeFrom(SerialWriteSources.of(inputStream, -1), chunkSize, progress);
     }
 
-    public void stop() {
+    public WriteFuture writeFrom(SerialWriteSource source, int chunkSize, WriteProgressListener progress) {
+        SPPService service = mService;
+        if (service == null) {
+            try {
+                source.close();
+            } catch (IOException e) {
+                Logger.e(TAG, e);
+            }
+            return WriteFuture.failed(new IOException("Not connected"));
+        }
+        return service.write(source, chunkSize, progress);
+    }
+
+    public WriteFuture write(String data, boolean crlf) {
+        if (!crlf) {
+            return write(data);
+        }
+        return writeln(data);
+    }
+
+    /**
+     * Encoded into a pooled buffer, nothing to keep around until the write is done.
+     */
+    public WriteFuture write(String data) {
+        return writeText(data, NO_DELIMITER);
+    }
+
+    /**
+     * Payload and CRLF go out as one write.
+     */
+    public WriteFuture writeln(String data) {
+        return writeText(data, SerialText.CRLF);
+    }
+
+    private WriteFuture writeText(String data, byte[] delimiter) {
+        SPPService service = mService;
+        if (service == null) {
+            return WriteFuture.failed(new IOException("Not connected"));
+        }
+        PooledBuffer buffer = BufferPool.shared().acquire(data.length() + delimiter.length);
+        buffer.setLength(SerialText.encodeLine(data, delimiter, buffer.array()));
+        return service.write(buffer);
+    }
+
+    /**
+     * Call when the device acknowledged {@code frames} more frames with an ack window set in
+     * {@link SerialWriteOptions#setAckWindow(int)}, e.g. from a frame listener.
+     */
+    public void acknowledgeWrites(int frames) {
+        SPPService service = mService;
+        if (service != null) {
+            service.acknowledgeWrites(frames);
+        }
+    }
+
+    /**
+     * Batching, queue policy, rate limit and flow control of the writer, takes effect from the
+     * next connection.
+     */
+    public void setWriteOptions(SerialWriteOptions options) {
+        mWriteOptions = options;
         if (mService != null) {
-            mService.disconnect();
+            mService.setWriteOptions(options);
+        }
+    }
+
+    /**
+     * Read buffer sizing and coalescing of small reads, takes effect from the next connection.
+     */
+    public void setReadOptions(SerialReadOptions options) {
+        mReadOptions = options;
+        if (mService != null) {
+            mService.setReadOptions(options);
+        }
+    }
+
+    /**
+     * Reconnect automatically when an established connection drops, null (default) turns it off.
+     * While reconnecting the listener gets onConnectingBluetoothDevice().
+     */
+    public void setReconnectPolicy(ReconnectPolicy policy) {
+        mReconnectPolicy = policy;
+        if (mService != null) {
+            mService.setReconnectPolicy(policy);
+        }
+    }
+
+    /**
+     * Raw listeners get the reader's buffer slice as is, without any copy or decoding.
+     */
+    public void addRawListener(BluetoothSerialRawListener listener) {
+        mRawListeners.add(listener);
+    }
+
+    public void removeRawListener(BluetoothSerialRawListener listener) {
+        mRawListeners.remove(listener);
+    }
+
+    /**
+     * Frames are cut from the read stream on the reader thread, e.g. with
+     * {@link com.viethoa.rxbluetoothserial.serialportprofile.codec.DelimiterFrameDecoder#crlf(int)},
+     * and handed to the frame listeners. Pass null to stop framing.
+     */
+    public void setFrameDecoder(FrameDecoder decoder) {
+        mFrameDecoder = decoder;
+    }
+
+    /**
+     * Write {@code command} and wait for the frame {@code matcher} takes, without waiting for
+     * earlier commands to be answered first. Responses are matched against frames, so a frame
+     * decoder has to be set. The frame also goes to the frame listeners as usual.
+     *
+     * @param timeout from the command being written, fails with a
+     *                {@link java.util.concurrent.TimeoutException}
+     */
+    public PendingCommand send(SerialCommand command, ResponseMatcher matcher, long timeout, TimeUnit unit,
+                               ResponseCallback callback) {
+        if (mFrameDecoder == null) {
+            throw new IllegalStateException("Responses are matched against frames, set a frame decoder first");
+        }
+        return mCommands.send(command, matcher, timeout, unit, callback);
+    }
+
+    /**
+     * Commands written without waiting for a response, later ones wait their turn. 1 for lock
+     * step round trips, {@link CommandCorrelator#DEFAULT_MAX_IN_FLIGHT} by default.
+     */
+    public void setMaxCommandsInFlight(int maxInFlight) {
+        mCommands.setMaxInFlight(maxInFlight);
+    }
+
+    public void addFrameListener(FrameListener listener) {
+        mFrameListeners.add(listener);
+    }
+
+    public void removeFrameListener(FrameListener listener) {
+        mFrameListeners.remove(listener);
+    }
+
+    /**
+     * Off by default, then {@link BluetoothSerialListener#onBluetoothSerialRead} and
+     * {@link BluetoothSerialListener#onBluetoothSerialWrite} are skipped and nothing is copied or
+     * decoded per message. Turn it on to get every chunk as text there; raw, frame and Rx
+     * listeners decode only what they ask for.
+     */
+    public void setTextDecodingEnabled(boolean enabled) {
+        mTextDecodingEnabled = enabled;
+    }
+
+    /**
+     * Disconnects and, unless the runtime was given, shuts down the threads once their work is
+     * done. {@link #setup()} starts over.
+     */
+    public void stop() {
+        SPPService service = mService;
+        if (service != null) {
+            service.disconnect();
+            mService = null;
         }
         if (mAdapter != null) {
             mAdapter.cancelDiscovery();
         }
+        mDeviceRegistry.stop();
+        if (mOwnsRuntime && mRuntime != null) {
+            mRuntime.shutdown();
+            mRuntime = null;
+        }
 
         mConnectedDevice = null;
     }
 
+    /**
+     * The threads of this serial, null while stopped unless the runtime was given.
+     */
+    public SerialIoRuntime getRuntime() {
+        return mRuntime;
+    }
+
     //----------------------------------------------------------------------------------------------
     // Info properties
     //----------------------------------------------------------------------------------------------
 
+    /**
+     * Never waits, not even for a connect or disconnect in progress.
+     */
+    @BluetoothSerialState
     public int getState() {
-        return mService.getState();
+        SPPService service = mService;
+        if (service == null) {
+            return BluetoothSerialState.DISCONNECTED;
+        }
+        return service.getState();
+    }
+
+    /**
+     * Called with every state change, on the dispatcher's executor like the other callbacks.
+     */
+    public void addStateListener(BluetoothSerialStateListener listener) {
+        mStateListeners.addIfAbsent(listener);
+    }
+
+    public void removeStateListener(BluetoothSerialStateListener listener) {
+        mStateListeners.remove(listener);
     }
 
     public boolean isBluetoothEnabled() {
@@ -168,24 +582,33 @@ public class BluetoothSerial implements SPPServiceListener {
     }
 
     public boolean isConnected() {
-        if (mService == null) {
-            return false;
-        }
+        return getState() == BluetoothSerialState.CONNECTED;
+    }
 
-        return (mService.getState() == BluetoothSerialState.CONNECTED);
+    /**
+     * Cached bonded devices, kept up to date while set up, see {@link DeviceRegistry}.
+     */
+    public DeviceRegistry getDeviceRegistry() {
+        return mDeviceRegistry;
     }
 
     public Set<android.bluetooth.BluetoothDevice> getPairedDevices() {
-        return mPairedDevices;
+        if (!mDeviceRegistry.isLoaded()) {
+            return null;
+        }
+        Set<android.bluetooth.BluetoothDevice> devices = new LinkedHashSet<>();
+        for (RegisteredDevice d : mDeviceRegistry.getBondedDevices()) {
+            devices.add(d.getDevice());
+        }
+        return devices;
     }
 
     public String[] getPairedDevicesName() {
-        if (mPairedDevices != null) {
-            String[] name = new String[mPairedDevices.size()];
-            int i = 0;
-            for (android.bluetooth.BluetoothDevice d : mPairedDevices) {
-                name[i] = d.getName();
-                i++;
+        if (mDeviceRegistry.isLoaded()) {
+            List<RegisteredDevice> devices = mDeviceRegistry.getBondedDevices();
+            String[] name = new String[devices.size()];
+            for (int i = 0; i < name.length; i++) {
+                name[i] = devices.get(i).getName();
             }
             return name;
         }
@@ -193,12 +616,11 @@ public class BluetoothSerial implements SPPServiceListener {
     }
 
     public String[] getPairedDevicesAddress() {
-        if (mPairedDevices != null) {
-            String[] address = new String[mPairedDevices.size()];
-            int i = 0;
-            for (android.bluetooth.BluetoothDevice d : mPairedDevices) {
-                address[i] = d.getAddress();
-                i++;
+        if (mDeviceRegistry.isLoaded()) {
+            List<RegisteredDevice> devices = mDeviceRegistry.getBondedDevices();
+            String[] address = new String[devices.size()];
+            for (int i = 0; i < address.length; i++) {
+                address[i] = devices.get(i).getAddress();
             }
             return address;
         }
@@ -209,7 +631,8 @@ public class BluetoothSerial implements SPPServiceListener {
         if (mConnectedDevice == null) {
             return null;
         }
-        return mConnectedDevice.getName();
+        RegisteredDevice registered = mDeviceRegistry.get(mConnectedDevice.getAddress());
+        return registered != null ? registered.getName() : mConnectedDevice.getName();
     }
 
     public String getConnectedDeviceAddress() {
@@ -219,35 +642,113 @@ public class BluetoothSerial implements SPPServiceListener {
         return mConnectedDevice.getAddress();
     }
 
+    /**
+     * Call the listeners on {@code executor}, see {@link BluetoothSerialExecutors}, in the order
+     * things happened. Reads queue up in a bounded queue configured by {@code options}, so a slow
+     * listener doesn't hold up the reader thread. Null or inline calls them on the I/O threads.
+     */
+    public void setDispatcher(Executor executor, SerialDispatchOptions options) {
+        mDispatchExecutor = executor;
+        mDispatchOptions = options;
+        if (mService != null) {
+            mService.setDispatcher(executor, options);
+        }
+    }
+
+    /**
+     * Depth, dropped and coalesced counts of the dispatch queue, null when dispatching inline.
+     */
+    public SerialDispatcher getDispatcher() {
+        SPPService service = mService;
+        return service != null ? service.getDispatcher() : null;
+    }
+
+    /**
+     * Keep the last I/O events in {@code eventLog} to {@link IoEventLog#dump()} them later, e.g.
+     * {@code new IoEventLog(1024)}. Null (default) records nothing.
+     */
+    public void setEventLog(IoEventLog eventLog) {
+        mEventLog = eventLog;
+        if (mService != null) {
+            mService.setEventLog(eventLog);
+        }
+    }
+
+    /**
+     * Append every chunk read and written to {@code journal}, e.g.
+     * {@code new SerialJournal(new File(context.getFilesDir(), "journal"))}, to read it back with
+     * a {@link JournalReader} after a fault. Null (default) journals nothing, the caller closes it.
+     */
+    public void setJournal(SerialJournal journal) {
+        mJournal = journal;
+        if (mService != null) {
+            mService.setJournal(journal);
+        }
+    }
+
+    /**
+     * Throughput, latency and state metrics of this serial, across all its connections.
+     */
+    public MetricsSnapshot getMetrics() {
+        return mMetrics.snapshot();
+    }
+
     //----------------------------------------------------------------------------------------------
     // SPP Service listener: will notify about connection changed
     //----------------------------------------------------------------------------------------------
 
     @Override
     public void onMessageStateChange(@BluetoothSerialState int state) {
+        FrameDecoder decoder = mFrameDecoder;
+        if (decoder != null && state != BluetoothSerialState.CONNECTED) {
+            decoder.reset();
+        }
+        if (state != BluetoothSerialState.CONNECTED) {
+            // Replies to what was sent on the dropped connection won't come.
+            mCommands.failAll(new IOException("Connection lost before a response"));
+        }
+
         switch (state) {
             case BluetoothSerialState.CONNECTED:
                 mListener.onBluetoothDeviceConnected(mConnectedDevice);
                 break;
             case BluetoothSerialState.CONNECTING:
+            case BluetoothSerialState.RECONNECTING:
                 mListener.onConnectingBluetoothDevice();
                 break;
             case BluetoothSerialState.DISCONNECTED:
                 mListener.onBluetoothDeviceDisconnected();
                 break;
         }
+
+        for (BluetoothSerialStateListener listener : mStateListeners) {
+            listener.onBluetoothSerialStateChanged(state);
+        }
     }
 
     @Override
-    public void onMessageWrite(byte[] bufferWrite, String message) {
-        String messageWrite = new String(bufferWrite);
-        mListener.onBluetoothSerialWrite(bufferWrite, messageWrite);
+    public void onMessageWrite(byte[] buffer, int offset, int length) {
+        mRawListeners.dispatchWrite(buffer, offset, length);
+
+        if (mTextDecodingEnabled) {
+            mListener.onBluetoothSerialWrite(SerialText.copy(buffer, offset, length),
+                    SerialText.decode(buffer, offset, length));
+        }
     }
 
     @Override
-    public void onMessageRead(byte[] bufferRead, String message) {
-        String messageRead = new String(bufferRead);
-        mListener.onBluetoothSerialRead(bufferRead, messageRead);
+    public void onMessageRead(byte[] buffer, int offset, int length) {
+        mRawListeners.dispatchRead(buffer, offset, length);
+
+        FrameDecoder decoder = mFrameDecoder;
+        if (decoder != null) {
+            decoder.decode(buffer, offset, length, mFrameDispatcher);
+        }
+
+        if (mTextDecodingEnabled) {
+            mListener.onBluetoothSerialRead(SerialText.copy(buffer, offset, length),
+                    SerialText.decode(buffer, offset, length));
+        }
     }
 
     @Override
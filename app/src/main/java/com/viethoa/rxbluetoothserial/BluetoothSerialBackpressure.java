@@ -0,0 +1,20 @@
+package com.viethoa.rxbluetoothserial;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+
+public @interface BluetoothSerialBackpressure {
+    /**
+     * Keep up to capacity chunks, the stream fails with MissingBackpressureException past that.
+     */
+    int BUFFER = 0;
+    /**
+     * Keep up to capacity chunks, the oldest chunk is dropped to make room for a new one.
+     */
+    int DROP_OLDEST = 1;
+    /**
+     * Keep only the most recent chunk for the subscriber.
+     */
+    int LATEST = 2;
+}
@@ -0,0 +1,81 @@
+package com.viethoa.rxbluetoothserial;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.viethoa.rxbluetoothserial.serialportprofile.io.NamedThreadFactory;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialDispatcher;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialIoRuntime;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import io.reactivex.Scheduler;
+
+/**
+ * Where {@link BluetoothSerial#setDispatcher} delivers the listener callbacks.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class BluetoothSerialExecutors {
+
+    private static volatile Executor sMainThread;
+
+    private BluetoothSerialExecutors() {
+    }
+
+    /**
+     * On the reader and writer threads, without a queue. The default.
+     */
+    public static Executor inline() {
+        return SerialDispatcher.INLINE;
+    }
+
+    /**
+     * On the main thread, so listeners can touch views.
+     */
+    public static Executor mainThread() {
+        if (sMainThread == null) {
+            sMainThread = looper(Looper.getMainLooper());
+        }
+        return sMainThread;
+    }
+
+    public static Executor looper(Looper looper) {
+        final Handler handler = new Handler(looper);
+        return new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                handler.post(command);
+            }
+        };
+    }
+
+    /**
+     * On the dispatch threads of {@link SerialIoRuntime#shared()}, one per session, shared with
+     * the other serials and never shut down.
+     */
+    public static Executor ioRuntime() {
+        return SerialIoRuntime.shared().getDispatchExecutor();
+    }
+
+    /**
+     * On a dedicated daemon thread, shut it down once the serial isn't used anymore.
+     */
+    public static ExecutorService newThread(String name) {
+        return Executors.newSingleThreadExecutor(new NamedThreadFactory(name));
+    }
+
+    /**
+     * On an Rx scheduler, e.g. {@code Schedulers.computation()}.
+     */
+    public static Executor from(final Scheduler scheduler) {
+        return new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                scheduler.scheduleDirect(command);
+            }
+        };
+    }
+}
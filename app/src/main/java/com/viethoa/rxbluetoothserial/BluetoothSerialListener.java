@@ -33,12 +33,14 @@ public interface BluetoothSerialListener {
     void onBluetoothDeviceConnected(BluetoothDevice device);
 
     /**
-     * Specified message is read from the serial port.
+     * Specified message is read from the serial port. Only with
+     * {@link BluetoothSerial#setTextDecodingEnabled(boolean)} on.
      */
     void onBluetoothSerialRead(byte[] byteMessage, String message);
 
     /**
-     * Specified message is written to the serial port.
+     * Specified message is written to the serial port. Only with
+     * {@link BluetoothSerial#setTextDecodingEnabled(boolean)} on.
      */
     void onBluetoothSerialWrite(byte[] bytesMesage, String message);
 
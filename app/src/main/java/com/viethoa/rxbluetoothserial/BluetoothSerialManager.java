@@ -0,0 +1,392 @@
+package com.viethoa.rxbluetoothserial;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.content.Context;
+
+import com.viethoa.rxbluetoothserial.cores.Logger;
+import com.viethoa.rxbluetoothserial.cores.SerialText;
+import com.viethoa.rxbluetoothserial.serialportprofile.SPPService;
+import com.viethoa.rxbluetoothserial.serialportprofile.SPPServiceListener;
+import com.viethoa.rxbluetoothserial.serialportprofile.buffer.BufferPool;
+import com.viethoa.rxbluetoothserial.serialportprofile.buffer.PooledBuffer;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.ReconnectPolicy;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialIoRuntime;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialIoRuntimeOptions;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialReadOptions;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialTransport;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialWriteOptions;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialWriteSource;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialWriteSources;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.WriteFuture;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.WriteProgressListener;
+import com.viethoa.rxbluetoothserial.serialportprofile.metrics.MetricsSnapshot;
+import com.viethoa.rxbluetoothserial.serialportprofile.metrics.SerialMetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Many serial devices connected at once, each keyed by its address. Every device has its own
+ * {@link SPPService}, all of them share the threads of one {@link SerialIoRuntime}.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class BluetoothSerialManager {
+
+    private static final String TAG = BluetoothSerialManager.class.getSimpleName();
+    public static final int DEFAULT_MAX_DEVICES = 7;
+    private static final int CONNECT_THREADS = 1;
+    private static final int WRITE_THREADS = 2;
+
+    private final BluetoothAdapter mAdapter;
+    private final BluetoothSerialManagerListener mListener;
+    private final SerialIoRuntime mRuntime;
+    private final int mMaxDevices;
+    private final Map<String, DeviceConnection> mConnections = new ConcurrentHashMap<>();
+    private final Map<String, BluetoothSerialRawListeners> mRawListeners = new ConcurrentHashMap<>();
+    private final Map<String, SerialMetrics> mMetrics = new ConcurrentHashMap<>();
+    private volatile SerialWriteOptions mWriteOptions;
+    private volatile SerialReadOptions mReadOptions;
+    private volatile ReconnectPolicy mReconnectPolicy;
+
+    public BluetoothSerialManager(Context context, BluetoothSerialManagerListener listener) {
+        this(context, listener, DEFAULT_MAX_DEVICES);
+    }
+
+    public BluetoothSerialManager(Context context, BluetoothSerialManagerListener listener, int maxDevices) {
+        // Android handles one RFCOMM connect at a time best, so connects are queued on one thread.
+        this(context, listener, new SerialIoRuntimeOptions()
+                .setMaxSessions(maxDevices)
+                .setConnectThreads(CONNECT_THREADS)
+                .setWriteThreads(WRITE_THREADS));
+    }
+
+    /**
+     * Up to {@link SerialIoRuntimeOptions#getMaxSessions()} devices, on threads set up by
+     * {@code options}.
+     */
+    public BluetoothSerialManager(Context context, BluetoothSerialManagerListener listener,
+                                  SerialIoRuntimeOptions options) {
+        mAdapter = BluetoothSerial.getAdapter(context);
+        mListener = listener;
+        mMaxDevices = options.getMaxSessions();
+        BluetoothSerial.detectBufferLeaks();
+        mRuntime = new SerialIoRuntime(TAG, options);
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Returns false when the device is unknown or the max device count is reached.
+     */
+    public boolean connect(String address) {
+        if (mAdapter == null || !BluetoothAdapter.checkBluetoothAddress(address)) {
+            return false;
+        }
+        return connect(mAdapter.getRemoteDevice(address));
+    }
+
+    public boolean connect(BluetoothDevice device) {
+        if (mAdapter != null) {
+            // Discovery slows down connection a lot.
+            mAdapter.cancelDiscovery();
+        }
+
+        DeviceConnection connection = obtainConnection(device.getAddress());
+        if (connection == null) {
+            return false;
+        }
+        try {
+            connection.service.connect(device);
+        } finally {
+            connectStarted(connection);
+        }
+        return true;
+    }
+
+    /**
+     * Connect a device over another transport, keyed by the given address.
+     */
+    public boolean connect(String address, SerialTransport transport) {
+        DeviceConnection connection = obtainConnection(address);
+        if (connection == null) {
+            return false;
+        }
+        try {
+            connection.service.connect(transport);
+        } finally {
+            connectStarted(connection);
+        }
+        return true;
+    }
+
+    public void disconnect(String address) {
+        DeviceConnection connection = mConnections.get(address);
+        if (connection != null) {
+            connection.service.disconnect();
+        }
+    }
+
+    public void disconnectAll() {
+        for (DeviceConnection connection : mConnections.values()) {
+            connection.service.disconnect();
+        }
+    }
+
+    /**
+     * Disconnects every device and stops the shared threads, the manager can't be used after.
+     * The threads finish their work in the background, {@link SerialIoRuntime#awaitTermination}
+     * on {@link #getRuntime()} waits for them.
+     */
+    public void release() {
+        disconnectAll();
+        mRuntime.shutdown();
+    }
+
+    /**
+     * The threads of all devices, e.g. to watch {@link SerialIoRuntime#getThreadCount()} or to
+     * dispatch callbacks on {@link SerialIoRuntime#getDispatchExecutor()}.
+     */
+    public SerialIoRuntime getRuntime() {
+        return mRuntime;
+    }
+
+    public WriteFuture write(String address, byte[] data) {
+        DeviceConnection connection = mConnections.get(address);
+        if (connection == null) {
+            return WriteFuture.failed(new IOException("Not connected to " + address));
+        }
+        return connection.service.write(data);
+    }
+
+    /**
+     * Streamed in MTU sized chunks like {@link BluetoothSerial#write(ByteBuffer...)}.
+     */
+    public WriteFuture write(String address, ByteBuffer... buffers) {
+        return writeFrom(address, SerialWriteSources.of(buffers), 0, null);
+    }
+
+    /**
+     * Streamed chunk by chunk like {@link BluetoothSerial#writeFrom(File, int, WriteProgressListener)}.
+     */
+    public WriteFuture writeFrom(String address, SerialWriteSource source, int chunkSize,
+                                 WriteProgressListener progress) {
+        DeviceConnection connection = mConnections.get(address);
+        if (connection == null) {
+            try {
+                source.close();
+            } catch (IOException e) {
+                Logger.e(TAG, e);
+            }
+            return WriteFuture.failed(new IOException("Not connected to " + address));
+        }
+        return connection.service.write(source, chunkSize, progress);
+    }
+
+    /**
+     * Encoded into a pooled buffer like {@link BluetoothSerial#writeln(String)}.
+     */
+    public WriteFuture writeln(String address, String data) {
+        DeviceConnection connection = mConnections.get(address);
+        if (connection == null) {
+            return WriteFuture.failed(new IOException("Not connected to " + address));
+        }
+        PooledBuffer buffer = BufferPool.shared().acquire(data.length() + SerialText.CRLF.length);
+        buffer.setLength(SerialText.encodeLine(data, SerialText.CRLF, buffer.array()));
+        return connection.service.write(buffer);
+    }
+
+    public void acknowledgeWrites(String address, int frames) {
+        DeviceConnection connection = mConnections.get(address);
+        if (connection != null) {
+            connection.service.acknowledgeWrites(frames);
+        }
+    }
+
+    /**
+     * Takes effect from the next connection of each device.
+     */
+    public void setWriteOptions(SerialWriteOptions options) {
+        mWriteOptions = options;
+        for (DeviceConnection connection : mConnections.values()) {
+            connection.service.setWriteOptions(options);
+        }
+    }
+
+    /**
+     * Takes effect from the next connection of each device.
+     */
+    public void setReadOptions(SerialReadOptions options) {
+        mReadOptions = options;
+        for (DeviceConnection connection : mConnections.values()) {
+            connection.service.setReadOptions(options);
+        }
+    }
+
+    /**
+     * Every device gets its own backoff and breaker, a device is only released once it gives up.
+     */
+    public void setReconnectPolicy(ReconnectPolicy policy) {
+        mReconnectPolicy = policy;
+        for (DeviceConnection connection : mConnections.values()) {
+            connection.service.setReconnectPolicy(policy);
+        }
+    }
+
+    /**
+     * Raw listeners of a device stay registered across its connections.
+     */
+    public void addRawListener(String address, BluetoothSerialRawListener listener) {
+        obtainRawListeners(address).add(listener);
+    }
+
+    public void removeRawListener(String address, BluetoothSerialRawListener listener) {
+        BluetoothSerialRawListeners listeners = mRawListeners.get(address);
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Info properties
+    //----------------------------------------------------------------------------------------------
+
+    @BluetoothSerialState
+    public int getState(String address) {
+        DeviceConnection connection = mConnections.get(address);
+        if (connection == null) {
+            return BluetoothSerialState.DISCONNECTED;
+        }
+        return connection.service.getState();
+    }
+
+    public Set<String> getConnectedAddresses() {
+        Set<String> addresses = new HashSet<>();
+        for (DeviceConnection connection : mConnections.values()) {
+            if (connection.service.getState() == BluetoothSerialState.CONNECTED) {
+                addresses.add(connection.address);
+            }
+        }
+        return Collections.unmodifiableSet(addresses);
+    }
+
+    public BluetoothDevice getDevice(String address) {
+        DeviceConnection connection = mConnections.get(address);
+        return connection != null ? connection.device : null;
+    }
+
+    /**
+     * Metrics of a device across all its connections, null if it was never connected.
+     */
+    public MetricsSnapshot getMetrics(String address) {
+        SerialMetrics metrics = mMetrics.get(address);
+        return metrics != null ? metrics.snapshot() : null;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Settings
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * The connection stays in the map until {@link #connectStarted} even when the last session's
+     * disconnect comes in meanwhile.
+     */
+    private synchronized DeviceConnection obtainConnection(String address) {
+        DeviceConnection connection = mConnections.get(address);
+        if (connection == null) {
+            if (mConnections.size() >= mMaxDevices) {
+                Logger.e(TAG, "Max %d devices reached, can't connect %s", mMaxDevices, address);
+                return null;
+            }
+            connection = new DeviceConnection(address);
+            mConnections.put(address, connection);
+        }
+        connection.connecting++;
+        return connection;
+    }
+
+    private synchronized void connectStarted(DeviceConnection connection) {
+        connection.connecting--;
+        // Gone if the connect failed right away.
+        releaseConnection(connection);
+    }
+
+    private synchronized BluetoothSerialRawListeners obtainRawListeners(String address) {
+        BluetoothSerialRawListeners listeners = mRawListeners.get(address);
+        if (listeners == null) {
+            listeners = new BluetoothSerialRawListeners();
+            mRawListeners.put(address, listeners);
+        }
+        return listeners;
+    }
+
+    private synchronized SerialMetrics obtainMetrics(String address) {
+        SerialMetrics metrics = mMetrics.get(address);
+        if (metrics == null) {
+            metrics = new SerialMetrics();
+            mMetrics.put(address, metrics);
+        }
+        return metrics;
+    }
+
+    private synchronized void releaseConnection(DeviceConnection connection) {
+        if (mConnections.get(connection.address) == connection && connection.connecting == 0
+                && connection.service.getState() == BluetoothSerialState.DISCONNECTED) {
+            mConnections.remove(connection.address);
+        }
+    }
+
+    private class DeviceConnection implements SPPServiceListener {
+
+        final String address;
+        final SPPService service;
+        final BluetoothSerialRawListeners rawListeners;
+        volatile BluetoothDevice device;
+        // Connects between obtainConnection and connectStarted, guarded by the manager.
+        int connecting;
+
+        DeviceConnection(String address) {
+            this.address = address;
+            this.rawListeners = obtainRawListeners(address);
+            this.service = new SPPService(this, mRuntime);
+            this.service.setWriteOptions(mWriteOptions);
+            this.service.setReadOptions(mReadOptions);
+            this.service.setReconnectPolicy(mReconnectPolicy);
+            this.service.setMetrics(obtainMetrics(address));
+        }
+
+        @Override
+        public void onMessageStateChange(@BluetoothSerialState int state) {
+            mListener.onDeviceStateChanged(address, state);
+            if (state == BluetoothSerialState.DISCONNECTED) {
+                releaseConnection(this);
+            }
+        }
+
+        @Override
+        public void onMessageRead(byte[] buffer, int offset, int length) {
+            rawListeners.dispatchRead(buffer, offset, length);
+            mListener.onDeviceRead(address, buffer, offset, length);
+        }
+
+        @Override
+        public void onMessageWrite(byte[] buffer, int offset, int length) {
+            rawListeners.dispatchWrite(buffer, offset, length);
+            mListener.onDeviceWrite(address, buffer, offset, length);
+        }
+
+        @Override
+        public void onDeviceInfo(BluetoothDevice device) {
+            this.device = device;
+        }
+    }
+}
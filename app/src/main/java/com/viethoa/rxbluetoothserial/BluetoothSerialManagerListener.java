@@ -0,0 +1,23 @@
+package com.viethoa.rxbluetoothserial;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public interface BluetoothSerialManagerListener {
+
+    /**
+     * Connection state of the device with this address have changed.
+     */
+    void onDeviceStateChanged(String address, @BluetoothSerialState int state);
+
+    /**
+     * Bytes read from the device on its reader thread, the buffer is reused once this returns.
+     */
+    void onDeviceRead(String address, byte[] buffer, int offset, int length);
+
+    /**
+     * Bytes written to the device.
+     */
+    void onDeviceWrite(String address, byte[] buffer, int offset, int length);
+
+}
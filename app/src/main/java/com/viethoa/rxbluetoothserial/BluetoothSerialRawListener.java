@@ -0,0 +1,19 @@
+package com.viethoa.rxbluetoothserial;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public interface BluetoothSerialRawListener {
+
+    /**
+     * Bytes read from the serial port, valid from {@code offset} for {@code length} bytes.
+     * The buffer is owned by the reader thread and will be overwritten once this returns.
+     */
+    void onBluetoothSerialRawRead(byte[] buffer, int offset, int length);
+
+    /**
+     * Bytes written to the serial port, valid from {@code offset} for {@code length} bytes.
+     */
+    void onBluetoothSerialRawWrite(byte[] buffer, int offset, int length);
+
+}
@@ -0,0 +1,55 @@
+package com.viethoa.rxbluetoothserial;
+
+import java.util.Arrays;
+
+/**
+ * Copy on write set of raw listeners, dispatching never locks nor allocates.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class BluetoothSerialRawListeners {
+
+    private static final BluetoothSerialRawListener[] EMPTY = new BluetoothSerialRawListener[0];
+
+    private volatile BluetoothSerialRawListener[] listeners = EMPTY;
+
+    public synchronized void add(BluetoothSerialRawListener listener) {
+        if (listener == null) {
+            return;
+        }
+        BluetoothSerialRawListener[] result = Arrays.copyOf(listeners, listeners.length + 1);
+        result[result.length - 1] = listener;
+        listeners = result;
+    }
+
+    public synchronized void remove(BluetoothSerialRawListener listener) {
+        BluetoothSerialRawListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                BluetoothSerialRawListener[] result = new BluetoothSerialRawListener[current.length - 1];
+                System.arraycopy(current, 0, result, 0, i);
+                System.arraycopy(current, i + 1, result, i, current.length - i - 1);
+                listeners = result;
+                return;
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return listeners.length == 0;
+    }
+
+    public void dispatchRead(byte[] buffer, int offset, int length) {
+        BluetoothSerialRawListener[] current = listeners;
+        for (BluetoothSerialRawListener listener : current) {
+            listener.onBluetoothSerialRawRead(buffer, offset, length);
+        }
+    }
+
+    public void dispatchWrite(byte[] buffer, int offset, int length) {
+        BluetoothSerialRawListener[] current = listeners;
+        for (BluetoothSerialRawListener listener : current) {
+            listener.onBluetoothSerialRawWrite(buffer, offset, length);
+        }
+    }
+}
@@ -8,4 +8,5 @@ public @interface BluetoothSerialState {
     int DISCONNECTED = 0;
     int CONNECTING = 1;
     int CONNECTED = 2;
+    int RECONNECTING = 3;
 }
@@ -0,0 +1,9 @@
+package com.viethoa.rxbluetoothserial;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public interface BluetoothSerialStateListener {
+
+    void onBluetoothSerialStateChanged(@BluetoothSerialState int state);
+}
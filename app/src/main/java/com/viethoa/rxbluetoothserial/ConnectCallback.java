@@ -0,0 +1,20 @@
+package com.viethoa.rxbluetoothserial;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public interface ConnectCallback {
+
+    /**
+     * Called on the thread delivering the state change, see {@link BluetoothSerial#setDispatcher}.
+     */
+    void onConnected(SerialConnection connection);
+
+    /**
+     * A {@link BluetoothConnectException} telling the stage that failed or timed out, an
+     * {@link java.io.IOException} when Bluetooth is off or the address is invalid, or a
+     * {@link java.util.concurrent.CancellationException}. Called on the main, timer, dispatch or
+     * calling thread.
+     */
+    void onConnectFailed(Throwable error);
+}
@@ -0,0 +1,46 @@
+package com.viethoa.rxbluetoothserial;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public class ConnectOptions {
+
+    public static final long DEFAULT_BOND_TIMEOUT_SECONDS = 60;
+    public static final long DEFAULT_CONNECT_TIMEOUT_SECONDS = 30;
+
+    private long bondTimeoutNanos = TimeUnit.SECONDS.toNanos(DEFAULT_BOND_TIMEOUT_SECONDS);
+    private long connectTimeoutNanos = TimeUnit.SECONDS.toNanos(DEFAULT_CONNECT_TIMEOUT_SECONDS);
+
+    /**
+     * From asking to bond to the device being bonded, including the user confirming the pairing
+     * dialog.
+     */
+    public ConnectOptions setBondTimeout(long timeout, TimeUnit unit) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("timeout must be positive: " + timeout);
+        }
+        this.bondTimeoutNanos = unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * From starting the RFCOMM connect to being connected, across all socket strategies tried.
+     */
+    public ConnectOptions setConnectTimeout(long timeout, TimeUnit unit) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("timeout must be positive: " + timeout);
+        }
+        this.connectTimeoutNanos = unit.toNanos(timeout);
+        return this;
+    }
+
+    public long getBondTimeoutNanos() {
+        return bondTimeoutNanos;
+    }
+
+    public long getConnectTimeoutNanos() {
+        return connectTimeoutNanos;
+    }
+}
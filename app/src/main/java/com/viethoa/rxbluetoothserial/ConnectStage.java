@@ -0,0 +1,10 @@
+package com.viethoa.rxbluetoothserial;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+
+public @interface ConnectStage {
+    int BOND = 0;
+    int CONNECT = 1;
+}
@@ -0,0 +1,17 @@
+package com.viethoa.rxbluetoothserial.cores;
+
+import java.nio.charset.Charset;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public final class Charsets {
+
+    /**
+     * Serial devices talk in single byte characters, decode 1:1 without any lookup per call.
+     */
+    public static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private Charsets() {
+    }
+}
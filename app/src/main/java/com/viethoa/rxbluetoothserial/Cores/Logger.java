@@ -1,56 +1,111 @@
 package com.viethoa.rxbluetoothserial.cores;
 
-import android.support.compat.BuildConfig;
 import android.text.TextUtils;
 import android.util.Log;
 
+import com.viethoa.rxbluetoothserial.BuildConfig;
+
 /**
+ * Debug build logging. The level flags are compile time constants, so a call guarded by one of
+ * them, e.g. {@code if (Logger.D) Logger.d(TAG, "read %d", length);}, is removed by the compiler
+ * from release builds. Unguarded calls with a format and arguments only format when the level is
+ * enabled.
+ * <p>
  * Created by VietHoa on 23/10/2016.
  */
 public class Logger {
 
+    /**
+     * Lowest level logged, nothing at all in release builds.
+     */
+    public static final int LEVEL = BuildConfig.DEBUG ? Log.VERBOSE : Log.ASSERT + 1;
+
+    public static final boolean V = LEVEL <= Log.VERBOSE;
+    public static final boolean D = LEVEL <= Log.DEBUG;
+    public static final boolean I = LEVEL <= Log.INFO;
+    public static final boolean E = LEVEL <= Log.ERROR;
+
     public static void i(String tag, String message) {
-        if (TextUtils.isEmpty(message)) {
-            return;
-        }
-        if (BuildConfig.DEBUG) {
+        if (I && !TextUtils.isEmpty(message)) {
             Log.i(tag, message);
         }
     }
 
+    public static void i(String tag, String format, Object arg) {
+        if (I) {
+            Log.i(tag, String.format(format, arg));
+        }
+    }
+
+    public static void i(String tag, String format, Object arg1, Object arg2) {
+        if (I) {
+            Log.i(tag, String.format(format, arg1, arg2));
+        }
+    }
+
     public static void e(String tag, Exception ex) {
-        if (ex == null) {
-            return;
+        if (E && ex != null) {
+            Log.e(tag, String.valueOf(ex.getMessage()));
         }
-        if (BuildConfig.DEBUG) {
-            Log.e(tag, ex.getMessage());
+    }
+
+    public static void e(String tag, String message, Throwable tr) {
+        if (E) {
+            Log.e(tag, message, tr);
         }
     }
 
     public static void e(String tag, String message) {
-        if (TextUtils.isEmpty(message)) {
-            return;
-        }
-        if (BuildConfig.DEBUG) {
+        if (E && !TextUtils.isEmpty(message)) {
             Log.e(tag, message);
         }
     }
 
-    public static void d(String tag, String message) {
-        if (TextUtils.isEmpty(message)) {
-            return;
+    public static void e(String tag, String format, Object arg) {
+        if (E) {
+            Log.e(tag, String.format(format, arg));
+        }
+    }
+
+    public static void e(String tag, String format, Object arg1, Object arg2) {
+        if (E) {
+            Log.e(tag, String.format(format, arg1, arg2));
         }
-        if (BuildConfig.DEBUG) {
+    }
+
+    public static void d(String tag, String message) {
+        if (D && !TextUtils.isEmpty(message)) {
             Log.d(tag, message);
         }
     }
 
-    public static void v(String tag, String message) {
-        if (TextUtils.isEmpty(message)) {
-            return;
+    public static void d(String tag, String format, Object arg) {
+        if (D) {
+            Log.d(tag, String.format(format, arg));
+        }
+    }
+
+    public static void d(String tag, String format, Object arg1, Object arg2) {
+        if (D) {
+            Log.d(tag, String.format(format, arg1, arg2));
+        }
+    }
+
+    public static void d(String tag, String format, Object... args) {
+        if (D) {
+            Log.d(tag, String.format(format, args));
         }
-        if (BuildConfig.DEBUG) {
+    }
+
+    public static void v(String tag, String message) {
+        if (V && !TextUtils.isEmpty(message)) {
             Log.v(tag, message);
         }
     }
+
+    public static void v(String tag, String format, Object arg) {
+        if (V) {
+            Log.v(tag, String.format(format, arg));
+        }
+    }
 }
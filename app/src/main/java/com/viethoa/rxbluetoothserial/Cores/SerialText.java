@@ -0,0 +1,52 @@
+package com.viethoa.rxbluetoothserial.cores;
+
+import java.util.Arrays;
+
+/**
+ * Text conversions of the serial data path, kept free of Android so it can be benchmarked.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public final class SerialText {
+
+    public static final byte[] CRLF = {0x0D, 0x0A};
+
+    private SerialText() {
+    }
+
+    public static byte[] copy(byte[] buffer, int offset, int length) {
+        return Arrays.copyOfRange(buffer, offset, offset + length);
+    }
+
+    public static String decode(byte[] buffer, int offset, int length) {
+        return new String(buffer, offset, length, Charsets.ISO_8859_1);
+    }
+
+    public static byte[] encode(String data) {
+        return data.getBytes(Charsets.ISO_8859_1);
+    }
+
+    /**
+     * Encodes the text followed by the delimiter into a single array.
+     */
+    public static byte[] encodeLine(String data, byte[] delimiter) {
+        byte[] line = new byte[data.length() + delimiter.length];
+        encodeLine(data, delimiter, line);
+        return line;
+    }
+
+    /**
+     * Encodes into {@code line}, which needs room for the text and the delimiter.
+     *
+     * @return the encoded length
+     */
+    public static int encodeLine(String data, byte[] delimiter, byte[] line) {
+        int length = data.length();
+        for (int i = 0; i < length; i++) {
+            char c = data.charAt(i);
+            line[i] = (byte) (c <= 0xFF ? c : '?');
+        }
+        System.arraycopy(delimiter, 0, line, length, delimiter.length);
+        return length + delimiter.length;
+    }
+}
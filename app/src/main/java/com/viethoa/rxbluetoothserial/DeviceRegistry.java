@@ -0,0 +1,253 @@
+package com.viethoa.rxbluetoothserial;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothClass;
+import android.bluetooth.BluetoothDevice;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Name, bond state, class and last seen signal strength of the bonded and discovered devices,
+ * kept in memory so lookups by address are a map read instead of a binder call into the
+ * Bluetooth stack per {@link BluetoothDevice#getName()}. The bonded devices are loaded once on
+ * {@link #start()}, then single entries are replaced as bond, name, class and discovery
+ * broadcasts come in. The bonded set is loaded again when Bluetooth is turned back on.
+ * <p>
+ * Lookups work on any thread. Between {@link #stop()} and the next {@link #start()} they return
+ * what was known at the stop, but {@link #isLoaded()} is false since it may be stale.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class DeviceRegistry {
+
+    private final Context context;
+    private final BluetoothAdapter adapter;
+    // Written under the lock of bondedAddresses, read without.
+    private final Map<String, RegisteredDevice> devices = new ConcurrentHashMap<>();
+    // Bonded device addresses in bond order, guarded by itself.
+    private final Set<String> bondedAddresses = new LinkedHashSet<>();
+    private volatile List<RegisteredDevice> bonded;
+    private volatile boolean loaded;
+    private boolean registered;
+
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            String action = intent.getAction();
+            if (BluetoothAdapter.ACTION_STATE_CHANGED.equals(action)) {
+                if (intent.getIntExtra(BluetoothAdapter.EXTRA_STATE, BluetoothAdapter.ERROR) == BluetoothAdapter.STATE_ON) {
+                    load();
+                }
+                return;
+            }
+
+            BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
+            if (device == null) {
+                return;
+            }
+            if (BluetoothDevice.ACTION_BOND_STATE_CHANGED.equals(action)) {
+                onBondStateChanged(device, intent.getIntExtra(BluetoothDevice.EXTRA_BOND_STATE, BluetoothDevice.BOND_NONE),
+                        (BluetoothClass) intent.getParcelableExtra(BluetoothDevice.EXTRA_CLASS));
+            } else if (BluetoothDevice.ACTION_NAME_CHANGED.equals(action)) {
+                onChanged(device, intent.getStringExtra(BluetoothDevice.EXTRA_NAME), null,
+                        DiscoveredDevice.NO_RSSI);
+            } else if (BluetoothDevice.ACTION_CLASS_CHANGED.equals(action)) {
+                onChanged(device, null, (BluetoothClass) intent.getParcelableExtra(BluetoothDevice.EXTRA_CLASS),
+                        DiscoveredDevice.NO_RSSI);
+            } else if (BluetoothDevice.ACTION_FOUND.equals(action)) {
+                onChanged(device, intent.getStringExtra(BluetoothDevice.EXTRA_NAME),
+                        (BluetoothClass) intent.getParcelableExtra(BluetoothDevice.EXTRA_CLASS),
+                        intent.getShortExtra(BluetoothDevice.EXTRA_RSSI, Short.MIN_VALUE));
+            }
+        }
+    };
+
+    public DeviceRegistry(Context context, BluetoothAdapter adapter) {
+        this.context = context.getApplicationContext();
+        this.adapter = adapter;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Load the bonded devices and follow their changes, does nothing when already started.
+     */
+    public void start() {
+        synchronized (bondedAddresses) {
+            if (registered || adapter == null) {
+                return;
+            }
+            IntentFilter filter = new IntentFilter();
+            filter.addAction(BluetoothAdapter.ACTION_STATE_CHANGED);
+            filter.addAction(BluetoothDevice.ACTION_BOND_STATE_CHANGED);
+            filter.addAction(BluetoothDevice.ACTION_NAME_CHANGED);
+            filter.addAction(BluetoothDevice.ACTION_CLASS_CHANGED);
+            filter.addAction(BluetoothDevice.ACTION_FOUND);
+            context.registerReceiver(receiver, filter);
+            registered = true;
+            load();
+        }
+    }
+
+    public void stop() {
+        synchronized (bondedAddresses) {
+            if (registered) {
+                context.unregisterReceiver(receiver);
+                registered = false;
+            }
+            // Changes are missed from now on.
+            loaded = false;
+        }
+    }
+
+    /**
+     * True once the bonded devices were loaded, until {@link #stop()}.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Null when the device was neither bonded nor discovered.
+     */
+    public RegisteredDevice get(String address) {
+        return address != null ? devices.get(address) : null;
+    }
+
+    /**
+     * Null when unknown or the device never told its name.
+     */
+    public String getName(String address) {
+        RegisteredDevice device = get(address);
+        return device != null ? device.getName() : null;
+    }
+
+    public boolean isBonded(String address) {
+        RegisteredDevice device = get(address);
+        return device != null && device.isBonded();
+    }
+
+    /**
+     * Bonded devices in bond order, unmodifiable.
+     */
+    public List<RegisteredDevice> getBondedDevices() {
+        List<RegisteredDevice> snapshot = bonded;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (bondedAddresses) {
+            List<RegisteredDevice> list = new ArrayList<>(bondedAddresses.size());
+            for (String address : bondedAddresses) {
+                list.add(devices.get(address));
+            }
+            snapshot = Collections.unmodifiableList(list);
+            bonded = snapshot;
+            return snapshot;
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Settings
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * The only place asking the Bluetooth stack, once per bonded device.
+     */
+    private void load() {
+        Set<BluetoothDevice> bondedDevices = adapter.getBondedDevices();
+        if (bondedDevices == null) {
+            // Bluetooth is off, loaded when it comes on.
+            return;
+        }
+
+        synchronized (bondedAddresses) {
+            Set<String> addresses = new LinkedHashSet<>();
+            for (BluetoothDevice device : bondedDevices) {
+                RegisteredDevice last = devices.get(device.getAddress());
+                devices.put(device.getAddress(), new RegisteredDevice(device, device.getName(),
+                        BluetoothDevice.BOND_BONDED, device.getBluetoothClass(),
+                        last != null ? last.getRssi() : DiscoveredDevice.NO_RSSI,
+                        last != null ? last.getLastSeenMillis() : 0));
+                addresses.add(device.getAddress());
+            }
+            for (String address : bondedAddresses) {
+                if (!addresses.contains(address)) {
+                    // Unbonded while we weren't listening.
+                    replace(devices.get(address), null, BluetoothDevice.BOND_NONE, null, DiscoveredDevice.NO_RSSI);
+                }
+            }
+            bondedAddresses.clear();
+            bondedAddresses.addAll(addresses);
+            bonded = null;
+            loaded = true;
+        }
+    }
+
+    /**
+     * On the main thread, so only what the intent carries: a device never seen before has no name
+     * until a name broadcast or the next load.
+     */
+    private void onBondStateChanged(BluetoothDevice device, int bondState, BluetoothClass bluetoothClass) {
+        synchronized (bondedAddresses) {
+            RegisteredDevice last = devices.get(device.getAddress());
+            if (last == null) {
+                devices.put(device.getAddress(), new RegisteredDevice(device, null, bondState,
+                        bluetoothClass, DiscoveredDevice.NO_RSSI, 0));
+            } else {
+                replace(last, null, bondState, bluetoothClass, DiscoveredDevice.NO_RSSI);
+            }
+
+            boolean changed = bondState == BluetoothDevice.BOND_BONDED
+                    ? bondedAddresses.add(device.getAddress())
+                    : bondedAddresses.remove(device.getAddress());
+            if (changed) {
+                bonded = null;
+            }
+        }
+    }
+
+    /**
+     * Null or {@link DiscoveredDevice#NO_RSSI} keep what was known.
+     */
+    private void onChanged(BluetoothDevice device, String name, BluetoothClass bluetoothClass, int rssi) {
+        synchronized (bondedAddresses) {
+            RegisteredDevice last = devices.get(device.getAddress());
+            if (last == null) {
+                // Seen by discovery for the first time, the intent has all there is to know.
+                devices.put(device.getAddress(), new RegisteredDevice(device, name, BluetoothDevice.BOND_NONE,
+                        bluetoothClass, rssi, rssi != DiscoveredDevice.NO_RSSI ? SystemClock.elapsedRealtime() : 0));
+                return;
+            }
+            replace(last, name, last.getBondState(), bluetoothClass, rssi);
+        }
+    }
+
+    /**
+     * Under the lock. Null or {@link DiscoveredDevice#NO_RSSI} keep what was known.
+     */
+    private void replace(RegisteredDevice last, String name, int bondState, BluetoothClass bluetoothClass, int rssi) {
+        boolean seen = rssi != DiscoveredDevice.NO_RSSI;
+        devices.put(last.getAddress(), new RegisteredDevice(last.getDevice(),
+                name != null ? name : last.getName(),
+                bondState,
+                bluetoothClass != null ? bluetoothClass : last.getBluetoothClass(),
+                seen ? rssi : last.getRssi(),
+                seen ? SystemClock.elapsedRealtime() : last.getLastSeenMillis()));
+        if (bondedAddresses.contains(last.getAddress())) {
+            bonded = null;
+        }
+    }
+}
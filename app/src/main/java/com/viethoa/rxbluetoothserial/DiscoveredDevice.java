@@ -0,0 +1,66 @@
+package com.viethoa.rxbluetoothserial;
+
+import android.bluetooth.BluetoothDevice;
+
+/**
+ * A device seen by discovery with its name and signal strength at the time. Immutable, an update
+ * replaces it with a new one.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class DiscoveredDevice {
+
+    /**
+     * Signal strength of a device that was not seen by discovery, e.g. a bonded one.
+     */
+    public static final int NO_RSSI = Short.MIN_VALUE;
+
+    private final BluetoothDevice device;
+    private final String name;
+    private final int rssi;
+
+    public DiscoveredDevice(BluetoothDevice device, String name, int rssi) {
+        this.device = device;
+        this.name = name;
+        this.rssi = rssi;
+    }
+
+    public DiscoveredDevice(BluetoothDevice device) {
+        this(device, device.getName(), NO_RSSI);
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    public BluetoothDevice getDevice() {
+        return device;
+    }
+
+    public String getAddress() {
+        return device.getAddress();
+    }
+
+    /**
+     * Null until the device told its name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * In dBm, {@link #NO_RSSI} when unknown.
+     */
+    public int getRssi() {
+        return rssi;
+    }
+
+    public boolean hasRssi() {
+        return rssi != NO_RSSI;
+    }
+
+    @Override
+    public String toString() {
+        return getAddress() + " " + name + (hasRssi() ? " " + rssi + " dBm" : "");
+    }
+}
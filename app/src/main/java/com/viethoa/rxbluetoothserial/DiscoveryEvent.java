@@ -0,0 +1,50 @@
+package com.viethoa.rxbluetoothserial;
+
+/**
+ * One change of the discovered device list. Positions are in discovery order and never move
+ * during a scan, so a list adapter can apply {@link DiscoveryEventType#FOUND} as an append and
+ * {@link DiscoveryEventType#UPDATED} as a replace of a single row.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class DiscoveryEvent {
+
+    @DiscoveryEventType
+    private final int type;
+    private final DiscoveredDevice device;
+    private final int position;
+
+    DiscoveryEvent(@DiscoveryEventType int type, DiscoveredDevice device, int position) {
+        this.type = type;
+        this.device = device;
+        this.position = position;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    @DiscoveryEventType
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * Null for {@link DiscoveryEventType#STARTED} and {@link DiscoveryEventType#FINISHED}.
+     */
+    public DiscoveredDevice getDevice() {
+        return device;
+    }
+
+    /**
+     * Position of the device in the list, -1 without a device.
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    @Override
+    public String toString() {
+        return "DiscoveryEvent{type=" + type + ", position=" + position + ", device=" + device + "}";
+    }
+}
@@ -0,0 +1,12 @@
+package com.viethoa.rxbluetoothserial;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+
+public @interface DiscoveryEventType {
+    int STARTED = 0;
+    int FOUND = 1;
+    int UPDATED = 2;
+    int FINISHED = 3;
+}
@@ -1,13 +1,9 @@
 package com.viethoa.rxbluetoothserial;
 
 import android.app.Activity;
-import android.app.ProgressDialog;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
-import android.content.BroadcastReceiver;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.text.TextUtils;
@@ -19,11 +15,10 @@ import android.widget.Toast;
 import com.viethoa.rxbluetoothserial.cores.Logger;
 import com.viethoa.rxbluetoothserial.dialogchoosedevice.DialogChooseDevice;
 import com.viethoa.rxbluetoothserial.dialogchoosedevice.DialogChooseDeviceListener;
-
-import java.util.ArrayList;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialDispatchOptions;
 
 public class MainActivity extends AppCompatActivity implements BluetoothSerialListener,
-        DialogChooseDeviceListener {
+        DialogChooseDeviceListener, DiscoveryListener {
 
     private static final String TAG = MainActivity.class.getSimpleName();
     private static final int REQUEST_ENABLE_BLUETOOTH = 1;
@@ -32,8 +27,6 @@ public class MainActivity extends AppCompatActivity implements BluetoothSerialLi
     private TextView tvBluetoothConnection;
     private BluetoothSerial bluetoothSerial;
 
-    private ProgressDialog dialogScanning;
-    private ArrayList<BluetoothDevice> mDeviceList;
     private DialogChooseDevice dialogChooseDevice;
 
     @Override
@@ -57,34 +50,28 @@ public class MainActivity extends AppCompatActivity implements BluetoothSerialLi
         dialogChooseDevice = new DialogChooseDevice(this);
         dialogChooseDevice.setListener(this);
 
-        // Scan dialog
-        dialogScanning = new ProgressDialog(this);
-
         // Bluetooth to serial
         bluetoothSerial = new BluetoothSerial(this, this);
+        bluetoothSerial.setDispatcher(BluetoothSerialExecutors.mainThread(), new SerialDispatchOptions());
+        bluetoothSerial.setTextDecodingEnabled(true);
     }
 
     @Override
     protected void onStart() {
         super.onStart();
         bluetoothSerial.setup();
-
-        // Scan receiver
-        IntentFilter scanFilter = new IntentFilter();
-        scanFilter.addAction(BluetoothDevice.ACTION_FOUND);
-        scanFilter.addAction(BluetoothAdapter.ACTION_DISCOVERY_STARTED);
-        scanFilter.addAction(BluetoothAdapter.ACTION_DISCOVERY_FINISHED);
-        registerReceiver(bluetoothScanReceiver, scanFilter);
+        bluetoothSerial.addDiscoveryListener(this);
     }
 
     @Override
     protected void onStop() {
         super.onStop();
-        unregisterReceiver(bluetoothScanReceiver);
+        bluetoothSerial.removeDiscoveryListener(this);
     }
 
     @Override
     public void onBluetoothDeviceSelected(BluetoothDevice device) {
+        dialogChooseDevice.dismiss();
         bluetoothSerial.connect(device);
     }
 
@@ -106,24 +93,22 @@ public class MainActivity extends AppCompatActivity implements BluetoothSerialLi
         }
     }
 
-    private final BroadcastReceiver bluetoothScanReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            String action = intent.getAction();
-            if (BluetoothAdapter.ACTION_DISCOVERY_STARTED.equals(action)) {
-                mDeviceList = new ArrayList<>();
-                dialogScanning.show();
-
-            } else if (BluetoothAdapter.ACTION_DISCOVERY_FINISHED.equals(action)) {
-                dialogScanning.dismiss();
-
-            } else if (BluetoothDevice.ACTION_FOUND.equals(action)) {
-                BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
-                Logger.d(TAG, "Found device " + device.getName());
-                mDeviceList.add(device);
-            }
+    @Override
+    public void onDiscoveryEvent(DiscoveryEvent event) {
+        switch (event.getType()) {
+            case DiscoveryEventType.STARTED:
+                dialogChooseDevice.setTitle("SCANNING...");
+                dialogChooseDevice.show();
+                break;
+            case DiscoveryEventType.FINISHED:
+                dialogChooseDevice.setTitle("CHOOSE DEVICE");
+                break;
+            case DiscoveryEventType.FOUND:
+                Logger.d(TAG, "Found device %s", event.getDevice());
+                break;
         }
-    };
+        dialogChooseDevice.onDiscoveryEvent(event);
+    }
 
     //----------------------------------------------------------------------------------------------
     // Bluetooth listener events
@@ -160,14 +145,14 @@ public class MainActivity extends AppCompatActivity implements BluetoothSerialLi
     @Override
     public void onBluetoothSerialRead(byte[] byteMessage, String message) {
         if (!TextUtils.isEmpty(message)) {
-            Logger.d(TAG, String.format("Message read: %s", message));
+            Logger.d(TAG, "Message read: %s", message);
         }
     }
 
     @Override
     public void onBluetoothSerialWrite(byte[] bytesMesage, String message) {
         if (!TextUtils.isEmpty(message)) {
-            Logger.d(TAG, String.format("Message wrote: %s", message));
+            Logger.d(TAG, "Message wrote: %s", message);
         }
     }
 }
@@ -0,0 +1,254 @@
+package com.viethoa.rxbluetoothserial;
+
+import android.bluetooth.BluetoothDevice;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+
+import com.viethoa.rxbluetoothserial.cores.Logger;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialIoRuntime;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A connect to a device by address in progress: bonding it first when needed, waiting for the
+ * bond state broadcast, then the RFCOMM connect, which picks the socket strategy that last worked
+ * for the device. Each stage has its own timeout from {@link ConnectOptions}.
+ * <p>
+ * Work that calls back into {@link BluetoothSerial} is done outside the lock, the state listener
+ * may be called inline from the connect thread while it holds the service lock.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public final class PendingConnect {
+
+    private static final String TAG = PendingConnect.class.getSimpleName();
+    private static final int ANY_STAGE = -1;
+
+    private final BluetoothSerial serial;
+    private final Context context;
+    private final BluetoothDevice device;
+    private final ConnectOptions options;
+    private final ConnectCallback callback;
+
+    // Guarded by this.
+    @ConnectStage
+    private int stage = ConnectStage.BOND;
+    private boolean done;
+    private boolean newlyBonded;
+    private boolean receiverRegistered;
+    private boolean connecting;
+    private ScheduledFuture<?> timeout;
+    private long startNanos;
+    private long bondNanos;
+    private long connectStartNanos;
+
+    private final BroadcastReceiver bondReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            BluetoothDevice bonding = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
+            if (bonding != null && bonding.getAddress().equals(device.getAddress())) {
+                onBondStateChanged(intent.getIntExtra(BluetoothDevice.EXTRA_BOND_STATE, BluetoothDevice.BOND_NONE));
+            }
+        }
+    };
+
+    private final BluetoothSerialStateListener stateListener = new BluetoothSerialStateListener() {
+        @Override
+        public void onBluetoothSerialStateChanged(@BluetoothSerialState int state) {
+            onStateChanged(state);
+        }
+    };
+
+    PendingConnect(BluetoothSerial serial, Context context, BluetoothDevice device, ConnectOptions options,
+                   ConnectCallback callback) {
+        this.serial = serial;
+        this.context = context;
+        this.device = device;
+        this.options = options;
+        this.callback = callback;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    public BluetoothDevice getDevice() {
+        return device;
+    }
+
+    @ConnectStage
+    public synchronized int getStage() {
+        return stage;
+    }
+
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Fails the connect with a {@link CancellationException} and stops connecting, unless it is
+     * already done. A bond in progress is left to finish.
+     */
+    public void cancel() {
+        fail(new CancellationException("Connect to " + device + " cancelled"), true);
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Settings
+    //----------------------------------------------------------------------------------------------
+
+    void start(boolean bonded) {
+        synchronized (this) {
+            startNanos = System.nanoTime();
+            if (!bonded) {
+                newlyBonded = true;
+                context.registerReceiver(bondReceiver, new IntentFilter(BluetoothDevice.ACTION_BOND_STATE_CHANGED));
+                receiverRegistered = true;
+                timeout = schedule(ConnectStage.BOND, options.getBondTimeoutNanos());
+            }
+        }
+        if (bonded) {
+            startConnect();
+            return;
+        }
+
+        boolean started;
+        try {
+            // Public API only since KitKat.
+            Method method = device.getClass().getMethod("createBond", (Class[]) null);
+            started = Boolean.TRUE.equals(method.invoke(device, (Object[]) null));
+        } catch (Exception e) {
+            fail(new BluetoothConnectException(ConnectStage.BOND, "Failed to bond with " + device, e), false);
+            return;
+        }
+        if (!started) {
+            // Already bonding, or bonded meanwhile.
+            int bondState = device.getBondState();
+            if (bondState != BluetoothDevice.BOND_BONDING) {
+                onBondStateChanged(bondState);
+            }
+        }
+    }
+
+    void fail(Throwable error, boolean stopConnecting) {
+        fail(error, stopConnecting, ANY_STAGE);
+    }
+
+    /**
+     * @param expectedStage fails only while still in that stage, or {@link #ANY_STAGE}
+     */
+    private void fail(Throwable error, boolean stopConnecting, int expectedStage) {
+        boolean connectStarted;
+        synchronized (this) {
+            if (done || (expectedStage != ANY_STAGE && stage != expectedStage)) {
+                return;
+            }
+            done = true;
+            connectStarted = stage == ConnectStage.CONNECT;
+            release();
+        }
+
+        Logger.e(TAG, "Connect to %s failed: %s", device, error.getMessage());
+        if (stopConnecting && connectStarted) {
+            serial.cancelConnect();
+        }
+        callback.onConnectFailed(error);
+    }
+
+    private void onBondStateChanged(int bondState) {
+        synchronized (this) {
+            if (done || stage != ConnectStage.BOND || bondState == BluetoothDevice.BOND_BONDING) {
+                return;
+            }
+            if (bondState == BluetoothDevice.BOND_BONDED) {
+                // Moved on already, so a repeated broadcast doesn't connect twice.
+                stage = ConnectStage.CONNECT;
+                bondNanos = System.nanoTime() - startNanos;
+                release();
+            }
+        }
+
+        if (bondState == BluetoothDevice.BOND_BONDED) {
+            Logger.d(TAG, "Bonded with %s in %d ms", device, TimeUnit.NANOSECONDS.toMillis(bondNanos));
+            startConnect();
+        } else {
+            fail(new BluetoothConnectException(ConnectStage.BOND, "Bonding with " + device + " was rejected", null), false);
+        }
+    }
+
+    private void startConnect() {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            stage = ConnectStage.CONNECT;
+            connectStartNanos = System.nanoTime();
+            serial.addStateListener(stateListener);
+            timeout = schedule(ConnectStage.CONNECT, options.getConnectTimeoutNanos());
+        }
+        serial.connect(device);
+    }
+
+    private void onStateChanged(@BluetoothSerialState int state) {
+        SerialConnection connection = null;
+        synchronized (this) {
+            if (done || stage != ConnectStage.CONNECT) {
+                return;
+            }
+            if (state == BluetoothSerialState.CONNECTING || state == BluetoothSerialState.RECONNECTING) {
+                connecting = true;
+                return;
+            }
+            if (!connecting) {
+                // Left over from an earlier connection.
+                return;
+            }
+            if (state == BluetoothSerialState.CONNECTED) {
+                done = true;
+                release();
+                connection = new SerialConnection(device, newlyBonded, bondNanos, System.nanoTime() - connectStartNanos);
+            }
+        }
+
+        if (connection != null) {
+            Logger.d(TAG, "Connected to %s", connection);
+            callback.onConnected(connection);
+        } else if (state == BluetoothSerialState.DISCONNECTED) {
+            fail(new BluetoothConnectException(ConnectStage.CONNECT, "Failed to connect to " + device, null), false);
+        }
+    }
+
+    /**
+     * Under the lock. Stops listening and the timeout of the current stage.
+     */
+    private void release() {
+        if (receiverRegistered) {
+            context.unregisterReceiver(bondReceiver);
+            receiverRegistered = false;
+        }
+        serial.removeStateListener(stateListener);
+        if (timeout != null) {
+            timeout.cancel(false);
+            timeout = null;
+        }
+    }
+
+    private ScheduledFuture<?> schedule(@ConnectStage final int timedStage, final long timeoutNanos) {
+        return SerialIoRuntime.shared().getScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                // The stage may move on before fail takes the lock, it checks again.
+                String what = timedStage == ConnectStage.BOND ? "Bonding with " : "Connecting to ";
+                fail(new BluetoothConnectException(timedStage, what + device + " took longer than "
+                        + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms", new TimeoutException()), true,
+                        timedStage);
+            }
+        }, timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,92 @@
+package com.viethoa.rxbluetoothserial;
+
+import android.bluetooth.BluetoothClass;
+import android.bluetooth.BluetoothDevice;
+
+/**
+ * What {@link DeviceRegistry} knows about a device, read without asking the Bluetooth stack.
+ * Immutable, a change replaces it with a new one.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class RegisteredDevice {
+
+    private final BluetoothDevice device;
+    private final String name;
+    private final int bondState;
+    private final BluetoothClass bluetoothClass;
+    private final int rssi;
+    private final long lastSeenMillis;
+
+    RegisteredDevice(BluetoothDevice device, String name, int bondState, BluetoothClass bluetoothClass,
+                     int rssi, long lastSeenMillis) {
+        this.device = device;
+        this.name = name;
+        this.bondState = bondState;
+        this.bluetoothClass = bluetoothClass;
+        this.rssi = rssi;
+        this.lastSeenMillis = lastSeenMillis;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    public BluetoothDevice getDevice() {
+        return device;
+    }
+
+    public String getAddress() {
+        return device.getAddress();
+    }
+
+    /**
+     * Null until the device told its name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * {@link BluetoothDevice#BOND_NONE}, {@link BluetoothDevice#BOND_BONDING} or
+     * {@link BluetoothDevice#BOND_BONDED}.
+     */
+    public int getBondState() {
+        return bondState;
+    }
+
+    public boolean isBonded() {
+        return bondState == BluetoothDevice.BOND_BONDED;
+    }
+
+    /**
+     * Null when unknown.
+     */
+    public BluetoothClass getBluetoothClass() {
+        return bluetoothClass;
+    }
+
+    /**
+     * In dBm when discovery last saw it, {@link DiscoveredDevice#NO_RSSI} if it never did.
+     */
+    public int getRssi() {
+        return rssi;
+    }
+
+    public boolean hasRssi() {
+        return rssi != DiscoveredDevice.NO_RSSI;
+    }
+
+    /**
+     * {@link android.os.SystemClock#elapsedRealtime()} when discovery last saw it, 0 if it never
+     * did.
+     */
+    public long getLastSeenMillis() {
+        return lastSeenMillis;
+    }
+
+    @Override
+    public String toString() {
+        return getAddress() + " " + name + (isBonded() ? " bonded" : "") + (hasRssi() ? " " + rssi + " dBm" : "");
+    }
+}
@@ -0,0 +1,412 @@
+package com.viethoa.rxbluetoothserial;
+
+import com.viethoa.rxbluetoothserial.cores.SerialText;
+import com.viethoa.rxbluetoothserial.serialportprofile.codec.FrameListener;
+import com.viethoa.rxbluetoothserial.serialportprofile.command.PendingCommand;
+import com.viethoa.rxbluetoothserial.serialportprofile.command.ResponseCallback;
+import com.viethoa.rxbluetoothserial.serialportprofile.command.ResponseMatcher;
+import com.viethoa.rxbluetoothserial.serialportprofile.command.SerialCommand;
+import com.viethoa.rxbluetoothserial.serialportprofile.command.SerialResponse;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.WriteCallback;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.WriteFuture;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.WriteProgressListener;
+import com.viethoa.rxbluetoothserial.serialportprofile.metrics.MetricsSnapshot;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.BackpressureOverflowStrategy;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Completable;
+import io.reactivex.CompletableEmitter;
+import io.reactivex.CompletableOnSubscribe;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableEmitter;
+import io.reactivex.FlowableOnSubscribe;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.reactivex.SingleOnSubscribe;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Cancellable;
+import io.reactivex.functions.Function;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public class RxBluetoothSerial {
+
+    static final int DEFAULT_CAPACITY = 128;
+    private static final Action IGNORE_OVERFLOW = new Action() {
+        @Override
+        public void run() throws Exception {
+        }
+    };
+
+    private final BluetoothSerial mBluetoothSerial;
+
+    public RxBluetoothSerial(BluetoothSerial bluetoothSerial) {
+        mBluetoothSerial = bluetoothSerial;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    public BluetoothSerial getBluetoothSerial() {
+        return mBluetoothSerial;
+    }
+
+    /**
+     * Bytes read from the serial port, dropping the oldest chunks when the subscriber falls behind.
+     */
+    public Flowable<ByteBuffer> observeBytes() {
+        return observeBytes(BluetoothSerialBackpressure.DROP_OLDEST, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Bytes read from the serial port, one read-only {@link ByteBuffer} per chunk. The reader
+     * thread never waits for the subscriber, {@code backpressure} decides what happens to chunks
+     * the subscriber has not requested yet and {@code capacity} bounds how many are kept.
+     */
+    public Flowable<ByteBuffer> observeBytes(@BluetoothSerialBackpressure int backpressure, int capacity) {
+        Flowable<ByteBuffer> source = Flowable.create(new FlowableOnSubscribe<ByteBuffer>() {
+            @Override
+            public void subscribe(final FlowableEmitter<ByteBuffer> emitter) throws Exception {
+                final BluetoothSerialRawListener listener = new BluetoothSerialRawListener() {
+                    @Override
+                    public void onBluetoothSerialRawRead(byte[] buffer, int offset, int length) {
+                        emitter.onNext(copyOf(buffer, offset, length));
+                    }
+
+                    @Override
+                    public void onBluetoothSerialRawWrite(byte[] buffer, int offset, int length) {
+                    }
+                };
+
+                mBluetoothSerial.addRawListener(listener);
+                emitter.setCancellable(new Cancellable() {
+                    @Override
+                    public void cancel() throws Exception {
+                        mBluetoothSerial.removeRawListener(listener);
+                    }
+                });
+            }
+        }, BackpressureStrategy.MISSING);
+
+        return applyBackpressure(source, backpressure, capacity);
+    }
+
+    /**
+     * The current state, then every change of it.
+     */
+    public Observable<Integer> observeState() {
+        return Observable.create(new ObservableOnSubscribe<Integer>() {
+            @Override
+            public void subscribe(final ObservableEmitter<Integer> emitter) throws Exception {
+                final BluetoothSerialStateListener listener = new BluetoothSerialStateListener() {
+                    @Override
+                    public void onBluetoothSerialStateChanged(@BluetoothSerialState int state) {
+                        emitter.onNext(state);
+                    }
+                };
+
+                mBluetoothSerial.addStateListener(listener);
+                emitter.setCancellable(new Cancellable() {
+                    @Override
+                    public void cancel() throws Exception {
+                        mBluetoothSerial.removeStateListener(listener);
+                    }
+                });
+                emitter.onNext(mBluetoothSerial.getState());
+            }
+        }).serialize().distinctUntilChanged();
+    }
+
+    /**
+     * The devices found so far, then every change of the scan results, on the main thread. Scans
+     * are still started with {@link BluetoothSerial#startDiscover()}.
+     */
+    public Observable<DiscoveryEvent> observeDiscovery() {
+        return Observable.create(new ObservableOnSubscribe<DiscoveryEvent>() {
+            @Override
+            public void subscribe(final ObservableEmitter<DiscoveryEvent> emitter) throws Exception {
+                final DiscoveryListener listener = new DiscoveryListener() {
+                    @Override
+                    public void onDiscoveryEvent(DiscoveryEvent event) {
+                        emitter.onNext(event);
+                    }
+                };
+
+                mBluetoothSerial.addDiscoveryListener(listener);
+                emitter.setCancellable(new Cancellable() {
+                    @Override
+                    public void cancel() throws Exception {
+                        mBluetoothSerial.removeDiscoveryListener(listener);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * A metrics snapshot every {@code period}, on the computation scheduler.
+     */
+    public Observable<MetricsSnapshot> observeMetrics(long period, TimeUnit unit) {
+        return Observable.interval(0, period, unit).map(new Function<Long, MetricsSnapshot>() {
+            @Override
+            public MetricsSnapshot apply(Long tick) throws Exception {
+                return mBluetoothSerial.getMetrics();
+            }
+        });
+    }
+
+    /**
+     * Complete frames cut by the decoder set with {@link BluetoothSerial#setFrameDecoder}, without
+     * their delimiter, dropping the oldest frames when the subscriber falls behind.
+     */
+    public Flowable<ByteBuffer> observeFrames() {
+        return observeFrames(BluetoothSerialBackpressure.DROP_OLDEST, DEFAULT_CAPACITY);
+    }
+
+    public Flowable<ByteBuffer> observeFrames(@BluetoothSerialBackpressure int backpressure, int capacity) {
+        return applyBackpressure(frames(new FrameMapper<ByteBuffer>() {
+            @Override
+            public ByteBuffer map(byte[] buffer, int offset, int length) {
+                return copyOf(buffer, offset, length);
+            }
+        }), backpressure, capacity);
+    }
+
+    /**
+     * Complete frames decoded as ISO-8859-1 text, e.g. the lines of a CRLF framed device.
+     */
+    public Flowable<String> observeLines() {
+        return observeLines(BluetoothSerialBackpressure.DROP_OLDEST, DEFAULT_CAPACITY);
+    }
+
+    public Flowable<String> observeLines(@BluetoothSerialBackpressure int backpressure, int capacity) {
+        return applyBackpressure(frames(new FrameMapper<String>() {
+            @Override
+            public String map(byte[] buffer, int offset, int length) {
+                return SerialText.decode(buffer, offset, length);
+            }
+        }), backpressure, capacity);
+    }
+
+    /**
+     * Queues the bytes on subscribe and completes once they are handed to the socket.
+     */
+    public Completable write(final byte[] data) {
+        return Completable.create(new CompletableOnSubscribe() {
+            @Override
+            public void subscribe(CompletableEmitter emitter) throws Exception {
+                await(mBluetoothSerial.write(data), emitter);
+            }
+        });
+    }
+
+    /**
+     * Queues the line and CRLF as one write on subscribe.
+     */
+    public Completable writeln(final String data) {
+        return Completable.create(new CompletableOnSubscribe() {
+            @Override
+            public void subscribe(CompletableEmitter emitter) throws Exception {
+                await(mBluetoothSerial.writeln(data), emitter);
+            }
+        });
+    }
+
+    /**
+     * Queues the remaining bytes of the buffers as one write on subscribe.
+     */
+    public Completable write(final ByteBuffer... buffers) {
+        return Completable.create(new CompletableOnSubscribe() {
+            @Override
+            public void subscribe(CompletableEmitter emitter) throws Exception {
+                await(mBluetoothSerial.write(buffers), emitter);
+            }
+        });
+    }
+
+    /**
+     * Streams the file on subscribe, emitting the bytes written so far after each chunk on the
+     * writer thread. Disposing stops the upload after the current chunk.
+     */
+    public Observable<Long> writeFrom(final File file, final int chunkSize) {
+        return Observable.create(new ObservableOnSubscribe<Long>() {
+            @Override
+            public void subscribe(final ObservableEmitter<Long> emitter) throws Exception {
+                final WriteFuture future = mBluetoothSerial.writeFrom(file, chunkSize, new WriteProgressListener() {
+                    @Override
+                    public void onWriteProgress(long written, long total) {
+                        emitter.onNext(written);
+                    }
+                });
+                emitter.setCancellable(new Cancellable() {
+                    @Override
+                    public void cancel() throws Exception {
+                        future.cancel(false);
+                    }
+                });
+                future.setCallback(new WriteCallback() {
+                    @Override
+                    public void onWriteComplete() {
+                        emitter.onComplete();
+                    }
+
+                    @Override
+                    public void onWriteFailed(Throwable error) {
+                        // Disposing cancels the future, nobody is left to tell.
+                        if (!emitter.isDisposed()) {
+                            emitter.onError(error);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Writes the command on subscribe and emits the frame {@code matcher} takes, see
+     * {@link BluetoothSerial#send}. Disposing cancels the command.
+     */
+    public Single<SerialResponse> send(final SerialCommand command, final ResponseMatcher matcher,
+                                       final long timeout, final TimeUnit unit) {
+        return Single.create(new SingleOnSubscribe<SerialResponse>() {
+            @Override
+            public void subscribe(final SingleEmitter<SerialResponse> emitter) throws Exception {
+                final PendingCommand pending = mBluetoothSerial.send(command, matcher, timeout, unit,
+                        new ResponseCallback() {
+                            @Override
+                            public void onResponse(SerialResponse response) {
+                                emitter.onSuccess(response);
+                            }
+
+                            @Override
+                            public void onCommandFailed(Throwable error) {
+                                if (!emitter.isDisposed()) {
+                                    emitter.onError(error);
+                                }
+                            }
+                        });
+                emitter.setCancellable(new Cancellable() {
+                    @Override
+                    public void cancel() throws Exception {
+                        pending.cancel();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Bonds when needed and connects on subscribe, see
+     * {@link BluetoothSerial#connect(String, ConnectOptions, ConnectCallback)}. Disposing before
+     * it is connected stops connecting.
+     */
+    public Single<SerialConnection> connect(String address) {
+        return connect(address, new ConnectOptions());
+    }
+
+    public Single<SerialConnection> connect(final String address, final ConnectOptions options) {
+        return Single.create(new SingleOnSubscribe<SerialConnection>() {
+            @Override
+            public void subscribe(final SingleEmitter<SerialConnection> emitter) throws Exception {
+                final PendingConnect pending = mBluetoothSerial.connect(address, options, new ConnectCallback() {
+                    @Override
+                    public void onConnected(SerialConnection connection) {
+                        emitter.onSuccess(connection);
+                    }
+
+                    @Override
+                    public void onConnectFailed(Throwable error) {
+                        if (!emitter.isDisposed()) {
+                            emitter.onError(error);
+                        }
+                    }
+                });
+                emitter.setCancellable(new Cancellable() {
+                    @Override
+                    public void cancel() throws Exception {
+                        pending.cancel();
+                    }
+                });
+            }
+        });
+    }
+
+    private static void await(WriteFuture future, final CompletableEmitter emitter) {
+        future.setCallback(new WriteCallback() {
+            @Override
+            public void onWriteComplete() {
+                emitter.onComplete();
+            }
+
+            @Override
+            public void onWriteFailed(Throwable error) {
+                // Disposed meanwhile, the error would go to the uncaught exception handler.
+                if (!emitter.isDisposed()) {
+                    emitter.onError(error);
+                }
+            }
+        });
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Settings
+    //----------------------------------------------------------------------------------------------
+
+    private <T> Flowable<T> frames(final FrameMapper<T> mapper) {
+        return Flowable.create(new FlowableOnSubscribe<T>() {
+            @Override
+            public void subscribe(final FlowableEmitter<T> emitter) throws Exception {
+                final FrameListener listener = new FrameListener() {
+                    @Override
+                    public void onFrame(byte[] buffer, int offset, int length) {
+                        emitter.onNext(mapper.map(buffer, offset, length));
+                    }
+                };
+
+                mBluetoothSerial.addFrameListener(listener);
+                emitter.setCancellable(new Cancellable() {
+                    @Override
+                    public void cancel() throws Exception {
+                        mBluetoothSerial.removeFrameListener(listener);
+                    }
+                });
+            }
+        }, BackpressureStrategy.MISSING);
+    }
+
+    static <T> Flowable<T> applyBackpressure(Flowable<T> source,
+                                             @BluetoothSerialBackpressure int backpressure, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+
+        switch (backpressure) {
+            case BluetoothSerialBackpressure.BUFFER:
+                return source.onBackpressureBuffer(capacity);
+            case BluetoothSerialBackpressure.DROP_OLDEST:
+                return source.onBackpressureBuffer(capacity, IGNORE_OVERFLOW,
+                        BackpressureOverflowStrategy.DROP_OLDEST);
+            case BluetoothSerialBackpressure.LATEST:
+                return source.onBackpressureLatest();
+            default:
+                throw new IllegalArgumentException("Unknown backpressure: " + backpressure);
+        }
+    }
+
+    static ByteBuffer copyOf(byte[] buffer, int offset, int length) {
+        return ByteBuffer.wrap(SerialText.copy(buffer, offset, length)).asReadOnlyBuffer();
+    }
+
+    private interface FrameMapper<T> {
+        T map(byte[] buffer, int offset, int length);
+    }
+}
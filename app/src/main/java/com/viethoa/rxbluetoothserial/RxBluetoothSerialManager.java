@@ -0,0 +1,80 @@
+package com.viethoa.rxbluetoothserial;
+
+import com.viethoa.rxbluetoothserial.serialportprofile.metrics.MetricsSnapshot;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableEmitter;
+import io.reactivex.FlowableOnSubscribe;
+import io.reactivex.Observable;
+import io.reactivex.functions.Cancellable;
+import io.reactivex.functions.Function;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public class RxBluetoothSerialManager {
+
+    private final BluetoothSerialManager mManager;
+
+    public RxBluetoothSerialManager(BluetoothSerialManager manager) {
+        mManager = manager;
+    }
+
+    public BluetoothSerialManager getManager() {
+        return mManager;
+    }
+
+    /**
+     * A metrics snapshot of one device every {@code period}, skipped until it was connected once.
+     */
+    public Observable<MetricsSnapshot> observeMetrics(final String address, long period, TimeUnit unit) {
+        return Observable.interval(0, period, unit).flatMap(new Function<Long, Observable<MetricsSnapshot>>() {
+            @Override
+            public Observable<MetricsSnapshot> apply(Long tick) throws Exception {
+                MetricsSnapshot snapshot = mManager.getMetrics(address);
+                return snapshot != null ? Observable.just(snapshot) : Observable.<MetricsSnapshot>empty();
+            }
+        });
+    }
+
+    /**
+     * Bytes read from one device, dropping the oldest chunks when the subscriber falls behind.
+     * The stream keeps going across reconnects of the device.
+     */
+    public Flowable<ByteBuffer> observeBytes(String address) {
+        return observeBytes(address, BluetoothSerialBackpressure.DROP_OLDEST, RxBluetoothSerial.DEFAULT_CAPACITY);
+    }
+
+    public Flowable<ByteBuffer> observeBytes(final String address,
+                                             @BluetoothSerialBackpressure int backpressure, int capacity) {
+        Flowable<ByteBuffer> source = Flowable.create(new FlowableOnSubscribe<ByteBuffer>() {
+            @Override
+            public void subscribe(final FlowableEmitter<ByteBuffer> emitter) throws Exception {
+                final BluetoothSerialRawListener listener = new BluetoothSerialRawListener() {
+                    @Override
+                    public void onBluetoothSerialRawRead(byte[] buffer, int offset, int length) {
+                        emitter.onNext(RxBluetoothSerial.copyOf(buffer, offset, length));
+                    }
+
+                    @Override
+                    public void onBluetoothSerialRawWrite(byte[] buffer, int offset, int length) {
+                    }
+                };
+
+                mManager.addRawListener(address, listener);
+                emitter.setCancellable(new Cancellable() {
+                    @Override
+                    public void cancel() throws Exception {
+                        mManager.removeRawListener(address, listener);
+                    }
+                });
+            }
+        }, BackpressureStrategy.MISSING);
+
+        return RxBluetoothSerial.applyBackpressure(source, backpressure, capacity);
+    }
+}
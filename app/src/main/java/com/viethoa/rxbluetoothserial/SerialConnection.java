@@ -0,0 +1,66 @@
+package com.viethoa.rxbluetoothserial;
+
+import android.bluetooth.BluetoothDevice;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A connection made by {@link BluetoothSerial#connect(String, ConnectOptions, ConnectCallback)},
+ * with how long each stage took. Write to it through the {@link BluetoothSerial} as usual.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class SerialConnection {
+
+    private final BluetoothDevice device;
+    private final boolean bonded;
+    private final long bondNanos;
+    private final long connectNanos;
+
+    SerialConnection(BluetoothDevice device, boolean bonded, long bondNanos, long connectNanos) {
+        this.device = device;
+        this.bonded = bonded;
+        this.bondNanos = bondNanos;
+        this.connectNanos = connectNanos;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    public BluetoothDevice getDevice() {
+        return device;
+    }
+
+    /**
+     * True when the device had to be bonded first.
+     */
+    public boolean isNewlyBonded() {
+        return bonded;
+    }
+
+    /**
+     * Time spent bonding, 0 when it was bonded already.
+     */
+    public long getBondTime(TimeUnit unit) {
+        return unit.convert(bondNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Time from starting the RFCOMM connect to being connected, including every socket strategy
+     * tried.
+     */
+    public long getConnectTime(TimeUnit unit) {
+        return unit.convert(connectNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getTotalTime(TimeUnit unit) {
+        return unit.convert(bondNanos + connectNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return device + " bond " + getBondTime(TimeUnit.MILLISECONDS) + " ms, connect "
+                + getConnectTime(TimeUnit.MILLISECONDS) + " ms";
+    }
+}
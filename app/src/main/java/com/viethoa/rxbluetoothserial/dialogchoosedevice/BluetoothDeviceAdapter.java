@@ -1,6 +1,5 @@
 package com.viethoa.rxbluetoothserial.dialogchoosedevice;
 
-import android.bluetooth.BluetoothDevice;
 import android.content.Context;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
@@ -8,6 +7,7 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
+import com.viethoa.rxbluetoothserial.DiscoveredDevice;
 import com.viethoa.rxbluetoothserial.R;
 import com.viethoa.rxbluetoothserial.base.BaseArrayAdapter;
 
@@ -16,15 +16,19 @@ import java.util.List;
 /**
  * Created by VietHoa on 23/10/2016.
  */
-public class BluetoothDeviceAdapter extends BaseArrayAdapter<BluetoothDevice> {
+public class BluetoothDeviceAdapter extends BaseArrayAdapter<DiscoveredDevice> {
 
-    private final boolean mShowAddress;
+    private boolean mShowAddress;
 
-    BluetoothDeviceAdapter(Context context, List<BluetoothDevice> data, boolean mShowAddress) {
+    BluetoothDeviceAdapter(Context context, List<DiscoveredDevice> data, boolean mShowAddress) {
         super(context, data);
         this.mShowAddress = mShowAddress;
     }
 
+    void setShowAddress(boolean showAddress) {
+        mShowAddress = showAddress;
+    }
+
     @Override
     public View getView(int position, View convertView, ViewGroup parent) {
         if (convertView == null) {
@@ -47,15 +51,18 @@ public class BluetoothDeviceAdapter extends BaseArrayAdapter<BluetoothDevice> {
             tvDeviceAddress = (TextView) itemView.findViewById(R.id.tv_device_address);
         }
 
-        void bind(BluetoothDevice device) {
+        void bind(DiscoveredDevice device) {
             if (device == null) {
                 return;
             }
 
-            if (!TextUtils.isEmpty(device.getName())) {
-                tvDeviceName.setText(device.getName());
-            }
-            if (mShowAddress && !TextUtils.isEmpty(device.getAddress())) {
+            // Rows are recycled and rebound on updates, so always set both texts.
+            tvDeviceName.setText(!TextUtils.isEmpty(device.getName()) ? device.getName() : device.getAddress());
+            if (!mShowAddress) {
+                tvDeviceAddress.setText(null);
+            } else if (device.hasRssi()) {
+                tvDeviceAddress.setText(String.format("%s  %d dBm", device.getAddress(), device.getRssi()));
+            } else {
                 tvDeviceAddress.setText(device.getAddress());
             }
         }
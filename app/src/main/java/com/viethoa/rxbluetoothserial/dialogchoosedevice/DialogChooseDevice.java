@@ -9,6 +9,10 @@ import android.widget.AdapterView;
 import android.widget.ListView;
 import android.widget.TextView;
 
+import com.viethoa.rxbluetoothserial.DiscoveredDevice;
+import com.viethoa.rxbluetoothserial.DiscoveryEvent;
+import com.viethoa.rxbluetoothserial.DiscoveryEventType;
+import com.viethoa.rxbluetoothserial.DiscoveryListener;
 import com.viethoa.rxbluetoothserial.R;
 
 import java.util.ArrayList;
@@ -18,7 +22,7 @@ import java.util.Set;
 /**
  * Created by VietHoa on 23/10/2016.
  */
-public class DialogChooseDevice extends Dialog implements AdapterView.OnItemClickListener {
+public class DialogChooseDevice extends Dialog implements AdapterView.OnItemClickListener, DiscoveryListener {
 
     private Context mContext;
     private ListView lvDevices;
@@ -26,8 +30,18 @@ public class DialogChooseDevice extends Dialog implements AdapterView.OnItemClic
 
     private String mTitle;
     private DialogChooseDeviceListener mListener;
-    private List<BluetoothDevice> mDeviceList;
+    private final List<DiscoveredDevice> mDeviceList = new ArrayList<>();
+    private final BluetoothDeviceAdapter mAdapter;
     private boolean isShowAddress;
+    private boolean isRefreshPosted;
+
+    private final Runnable mRefresh = new Runnable() {
+        @Override
+        public void run() {
+            isRefreshPosted = false;
+            mAdapter.notifyDataSetChanged();
+        }
+    };
 
     public DialogChooseDevice(Context context) {
         super(context, R.style.Window_DialogStyle);
@@ -40,6 +54,11 @@ public class DialogChooseDevice extends Dialog implements AdapterView.OnItemClic
 
         tvTitle = (TextView) findViewById(R.id.tv_title);
         lvDevices = (ListView) findViewById(R.id.lv_devices);
+
+        // One adapter for the dialog's lifetime, the list is changed in place.
+        mAdapter = new BluetoothDeviceAdapter(mContext, mDeviceList, isShowAddress);
+        lvDevices.setAdapter(mAdapter);
+        lvDevices.setOnItemClickListener(this);
     }
 
     //----------------------------------------------------------------------------------------------
@@ -52,6 +71,9 @@ public class DialogChooseDevice extends Dialog implements AdapterView.OnItemClic
 
     public void setTitle(String title) {
         mTitle = title;
+        if (!TextUtils.isEmpty(mTitle)) {
+            tvTitle.setText(mTitle);
+        }
     }
 
     public void setDevices(Set<BluetoothDevice> devices) {
@@ -59,19 +81,22 @@ public class DialogChooseDevice extends Dialog implements AdapterView.OnItemClic
             return;
         }
 
-        mDeviceList = new ArrayList<>();
+        mDeviceList.clear();
         for (BluetoothDevice d : devices) {
-            mDeviceList.add(d);
+            mDeviceList.add(new DiscoveredDevice(d));
         }
+        mAdapter.notifyDataSetChanged();
     }
 
     public void shouldShowAddress(boolean showAddress) {
         isShowAddress = showAddress;
+        mAdapter.setShowAddress(showAddress);
+        mAdapter.notifyDataSetChanged();
     }
 
     @Override
     public void setTitle(int resId) {
-        mTitle = mContext.getString(resId);
+        setTitle(mContext.getString(resId));
     }
 
     @Override
@@ -79,15 +104,57 @@ public class DialogChooseDevice extends Dialog implements AdapterView.OnItemClic
         if (!TextUtils.isEmpty(mTitle)) {
             tvTitle.setText(mTitle);
         }
-
-        BluetoothDeviceAdapter adapter = new BluetoothDeviceAdapter(mContext, mDeviceList, isShowAddress);
-        lvDevices.setAdapter(adapter);
         super.show();
     }
 
+    /**
+     * Apply one scan change on the main thread. Found devices are appended and the list is
+     * refreshed at most once per main loop pass however many arrive in it; an updated device only
+     * rebinds its own row, and only when that row is on screen.
+     */
+    @Override
+    public void onDiscoveryEvent(DiscoveryEvent event) {
+        switch (event.getType()) {
+            case DiscoveryEventType.STARTED:
+                mDeviceList.clear();
+                postRefresh();
+                break;
+            case DiscoveryEventType.FOUND:
+                if (event.getPosition() == mDeviceList.size()) {
+                    mDeviceList.add(event.getDevice());
+                    postRefresh();
+                }
+                break;
+            case DiscoveryEventType.UPDATED:
+                if (event.getPosition() < mDeviceList.size()) {
+                    mDeviceList.set(event.getPosition(), event.getDevice());
+                    rebindRow(event.getPosition());
+                }
+                break;
+        }
+    }
+
+    private void postRefresh() {
+        if (!isRefreshPosted) {
+            isRefreshPosted = true;
+            lvDevices.post(mRefresh);
+        }
+    }
+
+    private void rebindRow(int position) {
+        if (isRefreshPosted) {
+            // The coming refresh binds it anyway.
+            return;
+        }
+        int index = position - lvDevices.getFirstVisiblePosition();
+        if (index >= 0 && index < lvDevices.getChildCount()) {
+            mAdapter.getView(position, lvDevices.getChildAt(index), lvDevices);
+        }
+    }
+
     @Override
     public void onItemClick(AdapterView<?> adapterView, View view, int position, long l) {
-        if (mDeviceList == null || mDeviceList.size() <= 0) {
+        if (mDeviceList.size() <= 0) {
             return;
         }
         if (position < 0 || position >= mDeviceList.size()) {
@@ -97,6 +164,6 @@ public class DialogChooseDevice extends Dialog implements AdapterView.OnItemClic
             return;
         }
 
-        mListener.onBluetoothDeviceSelected(mDeviceList.get(position));
+        mListener.onBluetoothDeviceSelected(mDeviceList.get(position).getDevice());
     }
 }
@@ -0,0 +1,107 @@
+package com.viethoa.rxbluetoothserial.serialportprofile;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+
+import com.viethoa.rxbluetoothserial.cores.Logger;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Socket creation strategies, remembers per device address the one that last connected so a
+ * reconnect goes straight to it instead of spending RF time on attempts known to fail.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+final class RfcommSockets {
+
+    private static final String TAG = RfcommSockets.class.getSimpleName();
+    private static final UUID UUID_SPP = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
+
+    static final int REFLECTION = 0;
+    static final int SECURE = 1;
+    static final int INSECURE = 2;
+    static final int STRATEGY_COUNT = 3;
+
+    private static final Map<String, Integer> KNOWN_GOOD = new ConcurrentHashMap<>();
+    private static volatile Method createRfcommSocket;
+    private static volatile boolean reflectionUnavailable;
+
+    private RfcommSockets() {
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Strategy to try first for the device, the known good one or reflection.
+     */
+    static int firstStrategy(BluetoothDevice device) {
+        Integer known = KNOWN_GOOD.get(device.getAddress());
+        return known != null ? known : REFLECTION;
+    }
+
+    static void onConnected(BluetoothDevice device, int strategy) {
+        KNOWN_GOOD.put(device.getAddress(), strategy);
+    }
+
+    /**
+     * The remembered strategy stopped working, next time all of them are tried again.
+     */
+    static void onConnectFailed(BluetoothDevice device, int strategy) {
+        Integer known = KNOWN_GOOD.get(device.getAddress());
+        if (known != null && known == strategy) {
+            KNOWN_GOOD.remove(device.getAddress());
+        }
+    }
+
+    static void clear() {
+        KNOWN_GOOD.clear();
+    }
+
+    /**
+     * Null when the strategy isn't available for the device.
+     */
+    static BluetoothSocket create(BluetoothDevice device, int strategy) {
+        try {
+            switch (strategy) {
+                case REFLECTION:
+                    Method method = createRfcommSocketMethod(device);
+                    return method != null ? (BluetoothSocket) method.invoke(device, Integer.valueOf(1)) : null;
+                case SECURE:
+                    return device.createRfcommSocketToServiceRecord(UUID_SPP);
+                case INSECURE:
+                    return device.createInsecureRfcommSocketToServiceRecord(UUID_SPP);
+                default:
+                    return null;
+            }
+        } catch (Exception e) {
+            Logger.e(TAG, "Failed to create a socket with strategy %d: %s", strategy, e.getMessage());
+            return null;
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Settings
+    //----------------------------------------------------------------------------------------------
+
+    private static Method createRfcommSocketMethod(BluetoothDevice device) {
+        Method method = createRfcommSocket;
+        if (method != null || reflectionUnavailable) {
+            return method;
+        }
+
+        try {
+            method = device.getClass().getMethod("createRfcommSocket", new Class[]{int.class});
+            createRfcommSocket = method;
+        } catch (NoSuchMethodException e) {
+            Logger.e(TAG, "createRfcommSocket isn't available!");
+            reflectionUnavailable = true;
+        }
+        return method;
+    }
+}
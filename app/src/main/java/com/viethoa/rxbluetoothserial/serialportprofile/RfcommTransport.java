@@ -0,0 +1,129 @@
+package com.viethoa.rxbluetoothserial.serialportprofile;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+
+import com.viethoa.rxbluetoothserial.cores.Logger;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialTransport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Serial port profile socket to a bluetooth device.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class RfcommTransport implements SerialTransport {
+
+    private static final String TAG = RfcommTransport.class.getSimpleName();
+
+    private final BluetoothDevice device;
+    private volatile BluetoothSocket socket;
+    private volatile boolean closed;
+    private volatile InputStream inputStream;
+    private volatile OutputStream outputStream;
+
+    public RfcommTransport(BluetoothDevice device) {
+        this.device = device;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    public BluetoothDevice getDevice() {
+        return device;
+    }
+
+    /**
+     * Starts with the strategy that last connected to this device, the others are only tried
+     * when it fails.
+     */
+    @Override
+    public void connect() throws IOException {
+        if (device == null) {
+            throw new IOException("No device to connect");
+        }
+
+        int first = RfcommSockets.firstStrategy(device);
+        IOException error = null;
+        for (int i = 0; i < RfcommSockets.STRATEGY_COUNT && !closed; i++) {
+            int strategy = (first + i) % RfcommSockets.STRATEGY_COUNT;
+            BluetoothSocket tempSocket = RfcommSockets.create(device, strategy);
+            if (tempSocket == null) {
+                continue;
+            }
+
+            socket = tempSocket;
+            if (closed) {
+                closeSocket(tempSocket);
+                break;
+            }
+            try {
+                tempSocket.connect();
+                inputStream = tempSocket.getInputStream();
+                outputStream = tempSocket.getOutputStream();
+                RfcommSockets.onConnected(device, strategy);
+                return;
+            } catch (IOException e) {
+                Logger.e(TAG, "Failed to connect with strategy %d: %s", strategy, e.getMessage());
+                RfcommSockets.onConnectFailed(device, strategy);
+                closeSocket(tempSocket);
+                error = e;
+            }
+        }
+
+        if (closed) {
+            throw new IOException("Closed while connecting to " + device);
+        }
+        throw error != null ? error : new IOException("Failed to create a socket for " + device);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        return inputStream.read(buffer, offset, length);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return inputStream.available();
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        outputStream.write(buffer, offset, length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        BluetoothSocket current = socket;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return String.valueOf(device);
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Settings
+    //----------------------------------------------------------------------------------------------
+
+    private static void closeSocket(BluetoothSocket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            Logger.e(TAG, e);
+        }
+    }
+}
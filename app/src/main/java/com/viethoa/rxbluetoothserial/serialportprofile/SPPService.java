@@ -1,19 +1,40 @@
 package com.viethoa.rxbluetoothserial.serialportprofile;
 
 import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothSocket;
-import android.util.Log;
 
 import com.viethoa.rxbluetoothserial.BluetoothSerialState;
 import com.viethoa.rxbluetoothserial.cores.Logger;
+import com.viethoa.rxbluetoothserial.serialportprofile.buffer.PooledBuffer;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.IoEvent;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.IoEventLog;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.PendingWrites;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.ReconnectBackoff;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.ReconnectPolicy;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialDispatchOptions;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialDispatcher;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialDispatcherListener;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialIoRuntime;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialReadOptions;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialSession;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialSessionListener;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialStateMachine;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialTransport;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialTransportFactory;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialWriteOptions;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialWriteSource;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.WriteFuture;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.WriteProgressListener;
+import com.viethoa.rxbluetoothserial.serialportprofile.journal.JournalDirection;
+import com.viethoa.rxbluetoothserial.serialportprofile.journal.SerialJournal;
+import com.viethoa.rxbluetoothserial.serialportprofile.metrics.SerialMetrics;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.lang.ref.WeakReference;
-import java.lang.reflect.Method;
-import java.nio.charset.Charset;
-import java.util.UUID;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by VietHoa on 23/10/2016.
@@ -21,17 +42,38 @@ import java.util.UUID;
 public class SPPService {
 
     private static final String TAG = SPPService.class.getSimpleName();
-    private static final UUID UUID_SPP = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
 
-    @BluetoothSerialState
-    private int currentState;
-    private ConnectThread connectThread;
-    private ConnectedThread connectedThread;
+    private final SerialStateMachine state = new SerialStateMachine();
+    private ConnectTask connectTask;
+    private volatile SerialSession session;
     private WeakReference<SPPServiceListener> sppServiceListener;
+    private volatile SerialWriteOptions writeOptions = new SerialWriteOptions();
+    private volatile SerialReadOptions readOptions = new SerialReadOptions();
+    private volatile SerialMetrics metrics = new SerialMetrics();
+    private volatile IoEventLog eventLog;
+    private volatile SerialJournal journal;
+    private volatile SerialDispatcher dispatcher;
+    // Held by a session's reader while it feeds the dispatcher, whose read queue takes a single
+    // producer. Only the open session gets in, a closed one's reader may still finish a read.
+    private final Object readProducerLock = new Object();
+    private final SerialIoRuntime runtime;
+
+    private SerialTransportFactory transportFactory;
+    private ReconnectBackoff reconnectBackoff;
+    private volatile PendingWrites pendingWrites;
+    private ScheduledFuture<?> reconnectFuture;
 
     public SPPService(SPPServiceListener listener) {
-        sppServiceListener = new WeakReference<>(listener);
-        currentState = BluetoothSerialState.DISCONNECTED;
+        this(listener, null);
+    }
+
+    /**
+     * Connects and sessions run on {@code runtime}, or on {@link SerialIoRuntime#shared()} when it
+     * is null, so reconnecting reuses the pooled threads.
+     */
+    public SPPService(SPPServiceListener listener, SerialIoRuntime runtime) {
+        this.sppServiceListener = new WeakReference<>(listener);
+        this.runtime = runtime != null ? runtime : SerialIoRuntime.shared();
     }
 
     //----------------------------------------------------------------------------------------------
@@ -39,52 +81,289 @@ public class SPPService {
     //----------------------------------------------------------------------------------------------
 
     public synchronized void resetConnection() {
-        Log.d(TAG, "resetConnection()");
+        Logger.d(TAG, "resetConnection()");
         resetThreads();
     }
 
-    public synchronized void connect(BluetoothDevice device) {
-        Logger.d(TAG, String.format("connect to device: %s", device));
+    public synchronized void connect(final BluetoothDevice device) {
+        connect(new SerialTransportFactory() {
+            @Override
+            public SerialTransport create() {
+                return new RfcommTransport(device);
+            }
+
+            @Override
+            public String getName() {
+                return String.valueOf(device);
+            }
+        });
+    }
+
+    /**
+     * Connect over an already created transport, it can't be reconnected automatically.
+     */
+    public synchronized void connect(final SerialTransport transport) {
+        connect(new SerialTransportFactory() {
+            @Override
+            public SerialTransport create() {
+                return transport;
+            }
+
+            @Override
+            public String getName() {
+                return transport.getName();
+            }
+        });
+        transportFactory = null;
+    }
+
+    /**
+     * Connect over any transport, RFCOMM on a device or loopback/TCP when there is no radio.
+     * The factory is asked for a new transport on every reconnect.
+     */
+    public synchronized void connect(SerialTransportFactory factory) {
+        Logger.d(TAG, "connect to: %s", factory.getName());
 
         resetThreads();
-        connectThread = new ConnectThread(device);
-        connectThread.start();
+        transportFactory = factory;
+        if (reconnectBackoff != null) {
+            reconnectBackoff.reset();
+        }
         setState(BluetoothSerialState.CONNECTING);
+        startConnect(factory.create(), false);
     }
 
-    private synchronized void connected(BluetoothSocket socket, BluetoothDevice device) {
-        Logger.d(TAG, String.format("Connected to %s", device));
+    private synchronized void startConnect(SerialTransport transport, boolean reconnect) {
+        connectTask = new ConnectTask(transport, reconnect);
+        try {
+            runtime.getConnectExecutor().execute(connectTask);
+        } catch (RejectedExecutionException e) {
+            Logger.e(TAG, "Connect executor is shut down");
+            disconnect();
+        }
+    }
 
-        resetConnectedThread();
-        connectedThread = new ConnectedThread(socket);
-        connectedThread.start();
+    private synchronized void connected(ConnectTask task, SerialTransport transport) {
+        if (task != connectTask) {
+            // Cancelled while the transport was connecting.
+            closeQuietly(transport);
+            return;
+        }
+        Logger.d(TAG, "Connected to %s", transport.getName());
+
+        connectTask = null;
+        resetSession();
+        SessionListener sessionListener = new SessionListener();
+        SerialSession started = new SerialSession(transport, writeOptions, sessionListener, runtime);
+        session = started;
+        sessionListener.owner = started;
+        started.setReadOptions(readOptions);
+        started.setMetrics(metrics);
+        started.setEventLog(eventLog);
+        started.start(TAG);
+        if (session != started) {
+            // Failed to start, already disconnected.
+            return;
+        }
 
-        setState(BluetoothSerialState.CONNECTED);
-        if (sppServiceListener != null && sppServiceListener.get() != null) {
-            sppServiceListener.get().onDeviceInfo(device);
+        if (reconnectBackoff != null) {
+            reconnectBackoff.onConnected();
+        }
+        if (pendingWrites != null) {
+            pendingWrites.replay(started);
+        }
+        if (transport instanceof RfcommTransport) {
+            notifyDeviceInfo(((RfcommTransport) transport).getDevice());
         }
+        setState(BluetoothSerialState.CONNECTED);
     }
 
     public synchronized void disconnect() {
         Logger.d(TAG, "disconnect");
         resetThreads();
+        if (pendingWrites != null) {
+            pendingWrites.failAll(new IOException("Disconnected"));
+        }
         setState(BluetoothSerialState.DISCONNECTED);
     }
 
-    public synchronized void write(byte[] data) {
-        ConnectedThread connectedThread = null;
-        synchronized (this) {
-            if (currentState == BluetoothSerialState.CONNECTED) {
-                connectedThread = this.connectedThread;
+    public WriteFuture write(byte[] data) {
+        if (data == null) {
+            return WriteFuture.failed(new IllegalArgumentException("data is null"));
+        }
+        return write(data, 0, data.length);
+    }
+
+    /**
+     * Queue bytes for the writer thread, this never blocks on the socket. The array is written
+     * later so it must not be changed until the returned future is done. Takes no lock, so it
+     * never waits for a connect or disconnect in progress.
+     */
+    public WriteFuture write(byte[] data, int offset, int length) {
+        int current = state.get();
+        if (current == BluetoothSerialState.CONNECTED) {
+            SerialSession session = this.session;
+            if (session != null) {
+                return session.write(data, offset, length);
+            }
+        } else if (current == BluetoothSerialState.RECONNECTING) {
+            PendingWrites pendingWrites = this.pendingWrites;
+            if (pendingWrites != null) {
+                return pendingWrites.add(data, offset, length);
+            }
+        }
+        return WriteFuture.failed(new IOException("Not connected"));
+    }
+
+    /**
+     * Queue the used bytes of a pooled buffer like {@link #write(byte[], int, int)}. Takes over
+     * the caller's reference, the buffer is released once written or failed.
+     */
+    public WriteFuture write(PooledBuffer buffer) {
+        int current = state.get();
+        if (current == BluetoothSerialState.CONNECTED) {
+            SerialSession session = this.session;
+            if (session != null) {
+                return session.write(buffer);
+            }
+        } else if (current == BluetoothSerialState.RECONNECTING) {
+            PendingWrites pendingWrites = this.pendingWrites;
+            if (pendingWrites != null) {
+                return pendingWrites.add(buffer);
+            }
+        }
+        buffer.release();
+        return WriteFuture.failed(new IOException("Not connected"));
+    }
+
+    /**
+     * Queue a write pulled from {@code source} in chunks of {@code chunkSize} bytes, or the MTU
+     * when 0, without holding the whole payload in memory. The source is closed once written or
+     * failed.
+     *
+     * @param progress called on the writer thread after each chunk, may be null
+     */
+    public WriteFuture write(SerialWriteSource source, int chunkSize, WriteProgressListener progress) {
+        int current = state.get();
+        if (current == BluetoothSerialState.CONNECTED) {
+            SerialSession session = this.session;
+            if (session != null) {
+                return session.write(source, chunkSize, progress);
             }
+        } else if (current == BluetoothSerialState.RECONNECTING) {
+            PendingWrites pendingWrites = this.pendingWrites;
+            if (pendingWrites != null) {
+                return pendingWrites.add(source, chunkSize, progress);
+            }
+        }
+        try {
+            source.close();
+        } catch (IOException e) {
+            Logger.e(TAG, e);
+        }
+        return WriteFuture.failed(new IOException("Not connected"));
+    }
+
+    /**
+     * The device acknowledged {@code frames} more frames, see
+     * {@link SerialWriteOptions#setAckWindow(int)}. Each connection starts with an empty window.
+     */
+    public void acknowledgeWrites(int frames) {
+        SerialSession session = this.session;
+        if (session != null) {
+            session.acknowledge(frames);
+        }
+    }
+
+    /**
+     * Takes effect from the next connection.
+     */
+    public void setWriteOptions(SerialWriteOptions options) {
+        writeOptions = options != null ? options : new SerialWriteOptions();
+    }
+
+    /**
+     * Read buffer sizing and coalescing, takes effect from the next connection.
+     */
+    public void setReadOptions(SerialReadOptions options) {
+        readOptions = options != null ? options : new SerialReadOptions();
+    }
+
+    /**
+     * Re-establish dropped connections following the policy, null turns reconnecting off.
+     */
+    public synchronized void setReconnectPolicy(ReconnectPolicy policy) {
+        if (pendingWrites != null) {
+            pendingWrites.failAll(new IOException("Reconnect policy changed"));
         }
-        if (connectedThread != null) {
-            connectedThread.write(data);
+        reconnectBackoff = policy != null ? new ReconnectBackoff(policy) : null;
+        pendingWrites = policy != null && policy.isReplayQueuedWrites()
+                ? new PendingWrites(writeOptions.getQueueCapacity()) : null;
+    }
+
+    /**
+     * Kept across connections, takes effect from the next connection.
+     */
+    public void setMetrics(SerialMetrics metrics) {
+        this.metrics = metrics != null ? metrics : new SerialMetrics();
+    }
+
+    /**
+     * Records reads, writes, errors and state changes, null (default) to record nothing.
+     * Takes effect from the next connection.
+     */
+    public void setEventLog(IoEventLog eventLog) {
+        this.eventLog = eventLog;
+    }
+
+    /**
+     * Append every chunk read and written to {@code journal}, null (default) to stop. Takes effect
+     * immediately, the caller closes the journal.
+     */
+    public void setJournal(SerialJournal journal) {
+        this.journal = journal;
+    }
+
+    public SerialJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Deliver reads, writes and state changes on {@code executor} in the order they happened,
+     * through a bounded queue, so a slow listener doesn't hold up the reader thread. Null or
+     * {@link SerialDispatcher#INLINE} calls the listener on the I/O threads directly.
+     */
+    public void setDispatcher(Executor executor, SerialDispatchOptions options) {
+        if (executor == null || executor == SerialDispatcher.INLINE) {
+            dispatcher = null;
+            return;
         }
+        dispatcher = new SerialDispatcher(executor, options != null ? options : new SerialDispatchOptions(),
+                new SerialDispatcherListener() {
+                    @Override
+                    public void onDispatchRead(byte[] buffer, int offset, int length) {
+                        SPPServiceListener listener = sppServiceListener != null ? sppServiceListener.get() : null;
+                        if (listener != null) {
+                            listener.onMessageRead(buffer, offset, length);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Null without a dispatcher, read its drop and coalescing counters.
+     */
+    public SerialDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    public SerialMetrics getMetrics() {
+        return metrics;
     }
 
-    public synchronized int getState() {
-        return currentState;
+    @BluetoothSerialState
+    public int getState() {
+        return state.get();
     }
 
     //----------------------------------------------------------------------------------------------
@@ -92,180 +371,269 @@ public class SPPService {
     //----------------------------------------------------------------------------------------------
 
     private synchronized void setState(@BluetoothSerialState int state) {
-        Logger.d(TAG, "setState() " + currentState + " -> " + state);
+        int previous = this.state.moveTo(state);
+        if (previous < 0) {
+            Logger.e(TAG, "Ignored setState() %d -> %d", this.state.get(), state);
+            return;
+        }
+        Logger.d(TAG, "setState() %d -> %d", previous, state);
+
+        metrics.onStateChanged(state);
+        IoEventLog log = eventLog;
+        if (log != null) {
+            log.record(IoEvent.STATE, state);
+        }
+        notifyState(state);
+    }
+
+    private void notifyState(@BluetoothSerialState final int state) {
+        SerialDispatcher dispatcher = this.dispatcher;
+        if (dispatcher != null) {
+            dispatcher.post(new Runnable() {
+                @Override
+                public void run() {
+                    SPPServiceListener listener = sppServiceListener != null ? sppServiceListener.get() : null;
+                    if (listener != null) {
+                        listener.onMessageStateChange(state);
+                    }
+                }
+            });
+            return;
+        }
 
-        currentState = state;
-        if (sppServiceListener != null && sppServiceListener.get() != null) {
-            sppServiceListener.get().onMessageStateChange(state);
+        SPPServiceListener listener = sppServiceListener != null ? sppServiceListener.get() : null;
+        if (listener != null) {
+            listener.onMessageStateChange(state);
+        }
+    }
+
+    private void notifyDeviceInfo(final BluetoothDevice device) {
+        SerialDispatcher dispatcher = this.dispatcher;
+        if (dispatcher != null) {
+            dispatcher.post(new Runnable() {
+                @Override
+                public void run() {
+                    SPPServiceListener listener = sppServiceListener != null ? sppServiceListener.get() : null;
+                    if (listener != null) {
+                        listener.onDeviceInfo(device);
+                    }
+                }
+            });
+            return;
+        }
+
+        SPPServiceListener listener = sppServiceListener != null ? sppServiceListener.get() : null;
+        if (listener != null) {
+            listener.onDeviceInfo(device);
         }
     }
 
     private synchronized void resetThreads() {
-        resetConnectThread();
-        resetConnectedThread();
+        resetReconnect();
+        resetConnectTask();
+        resetSession();
     }
 
-    private synchronized void resetConnectThread() {
-        if (connectThread != null) {
-            connectThread.cancel();
-            connectThread = null;
+    private synchronized void resetReconnect() {
+        if (reconnectFuture != null) {
+            reconnectFuture.cancel(false);
+            reconnectFuture = null;
         }
     }
 
-    private synchronized void resetConnectedThread() {
-        if (connectedThread != null) {
-            connectedThread.cancel();
-            connectedThread = null;
+    private synchronized void resetConnectTask() {
+        if (connectTask != null) {
+            connectTask.cancel();
+            connectTask = null;
         }
     }
 
-    //----------------------------------------------------------------------------------------------
-    // Connect threads
-    //----------------------------------------------------------------------------------------------
+    private synchronized void resetSession() {
+        if (session != null) {
+            Logger.d(TAG, "Session -> close");
+            session.close();
+            session = null;
+        }
+    }
 
-    private class ConnectThread extends Thread {
+    private synchronized void sessionFailed(SerialSession failed, IOException e) {
+        Logger.e(TAG, e.getMessage());
+        if (failed != session) {
+            return;
+        }
 
-        private final BluetoothSocket socket;
-        private final BluetoothDevice device;
+        if (transportFactory != null && reconnectBackoff != null && reconnectBackoff.allowReconnect()) {
+            resetSession();
+            if (pendingWrites != null) {
+                pendingWrites.hold();
+            }
+            setState(BluetoothSerialState.RECONNECTING);
+            scheduleReconnect();
+        } else {
+            disconnect();
+        }
+    }
 
-        ConnectThread(BluetoothDevice device) {
-            Log.d(TAG, "ConnectThread(" + device + ")");
+    private synchronized void scheduleReconnect() {
+        long delay = reconnectBackoff.nextDelayMillis();
+        if (delay < 0) {
+            Logger.d(TAG, "Reconnect attempts exhausted");
+            reconnectBackoff.onCycleFailed();
+            disconnect();
+            return;
+        }
 
-            BluetoothSocket tempSocket = null;
-            try {
-                Method m = device.getClass().getMethod("createRfcommSocket", new Class[]{int.class});
-                tempSocket = (BluetoothSocket) m.invoke(device, Integer.valueOf(1));
-            } catch (Exception e1) {
-                Log.e(TAG, "Failed to create a socket with reflection!");
-                try {
-                    tempSocket = device.createRfcommSocketToServiceRecord(UUID_SPP);
-                } catch (Exception e2) {
-                    Log.e(TAG, "Failed to create a secure socket!");
-                    try {
-                        tempSocket = device.createInsecureRfcommSocketToServiceRecord(UUID_SPP);
-                    } catch (Exception e3) {
-                        Log.e(TAG, "Failed to create an insecure socket!");
-                    }
+        Logger.d(TAG, "Reconnect attempt %d in %d ms", reconnectBackoff.getAttempts(), delay);
+        try {
+            reconnectFuture = runtime.getScheduler().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    reconnect();
                 }
-            }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            disconnect();
+        }
+    }
 
-            this.device = device;
-            this.socket = tempSocket;
+    private synchronized void reconnect() {
+        if (state.get() != BluetoothSerialState.RECONNECTING || transportFactory == null) {
+            return;
         }
+        reconnectFuture = null;
+        startConnect(transportFactory.create(), true);
+    }
 
-        public void run() {
-            if (device == null || socket == null) {
-                cancel();
-                disconnect();
-                return;
-            }
+    private static void closeQuietly(SerialTransport transport) {
+        try {
+            transport.close();
+        } catch (IOException e) {
+            Logger.e(TAG, e.getMessage());
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Connect task
+    //----------------------------------------------------------------------------------------------
+
+    private class ConnectTask implements Runnable {
 
+        private final SerialTransport transport;
+        private final boolean reconnect;
+
+        ConnectTask(SerialTransport transport, boolean reconnect) {
+            Logger.d(TAG, "ConnectTask(%s)", transport.getName());
+            this.transport = transport;
+            this.reconnect = reconnect;
+        }
+
+        @Override
+        public void run() {
             try {
-                socket.connect();
+                transport.connect();
             } catch (Exception e) {
-                Log.e(TAG, "" + e.getMessage());
+                Logger.e(TAG, e);
+                if (reconnect) {
+                    // The reconnect policy decides when to try again.
+                    cancel();
+                    reconnectFailed(this);
+                    return;
+                }
                 try {
-                    Log.d(TAG, "trying to reconnect again");
-                    socket.connect();
+                    Logger.d(TAG, "trying to reconnect again");
+                    transport.connect();
                 } catch (Exception ex) {
                     cancel();
-                    disconnect();
+                    connectFailed(this);
                     return;
                 }
             }
 
-            connected(socket, device);
+            connected(this, transport);
         }
 
         void cancel() {
-            Logger.d(TAG, "ConnectThread -> cancel");
-
-            try {
-                if (socket != null) {
-                    socket.close();
-                }
-            } catch (IOException e) {
-                Logger.e(TAG, e.getMessage());
-            }
+            Logger.d(TAG, "ConnectTask -> cancel");
+            closeQuietly(transport);
         }
     }
 
-    private class ConnectedThread extends Thread {
-
-        private final BluetoothSocket socket;
-        private final InputStream inputStream;
-        private final OutputStream outputStream;
+    private synchronized void connectFailed(ConnectTask task) {
+        if (task == connectTask) {
+            disconnect();
+        }
+    }
 
-        ConnectedThread(BluetoothSocket socket) {
-            InputStream tempInputStream = null;
-            OutputStream tempOutputStream = null;
+    private synchronized void reconnectFailed(ConnectTask task) {
+        if (task == connectTask) {
+            connectTask = null;
+            scheduleReconnect();
+        }
+    }
 
-            try {
-                tempInputStream = socket.getInputStream();
-                tempOutputStream = socket.getOutputStream();
-            } catch (IOException e) {
-                Logger.e(TAG, e.getMessage());
-            }
+    //----------------------------------------------------------------------------------------------
+    // Session listener
+    //----------------------------------------------------------------------------------------------
 
-            this.socket = socket;
-            this.inputStream = tempInputStream;
-            this.outputStream = tempOutputStream;
-        }
+    private class SessionListener implements SerialSessionListener {
 
-        public void run() {
-            byte[] data = new byte[1024];
-            int bytes;
+        private volatile SerialSession owner;
 
-            while (true) {
-                try {
-                    bytes = inputStream.read(data);
-                    String message = new String(data, 0, bytes, Charset.forName("ISO-8859-1"));
-                    sendReadMessage(data, message);
-                } catch (IOException e) {
-                    Logger.e(TAG, e.getMessage());
-                    cancel();
-                    disconnect();
-                    break;
-                }
+        @Override
+        public void onDataRead(byte[] buffer, int offset, int length) {
+            SerialJournal journal = SPPService.this.journal;
+            if (journal != null) {
+                journal.append(JournalDirection.INBOUND, buffer, offset, length);
             }
-        }
 
-        void write(byte[] data) {
-            if (data == null) {
+            SerialDispatcher dispatcher = SPPService.this.dispatcher;
+            if (dispatcher != null) {
+                synchronized (readProducerLock) {
+                    if (owner != null && owner.isOpen()) {
+                        dispatcher.dispatchRead(buffer, offset, length);
+                    }
+                }
                 return;
             }
 
-            try {
-                outputStream.write(data);
-                String message = new String(data, 0, data.length, Charset.forName("ISO-8859-1"));
-                sendWroteMessage(data, message);
-            } catch (IOException e) {
-                Logger.e(TAG, e.getMessage());
+            SPPServiceListener listener = sppServiceListener != null ? sppServiceListener.get() : null;
+            if (listener != null) {
+                listener.onMessageRead(buffer, offset, length);
             }
         }
 
-        private void sendReadMessage(byte[] data, String message) {
-            if (sppServiceListener != null && sppServiceListener.get() != null) {
-                sppServiceListener.get().onMessageRead(data, message);
+        @Override
+        public void onDataWritten(byte[] buffer, int offset, int length) {
+            SerialJournal journal = SPPService.this.journal;
+            if (journal != null) {
+                journal.append(JournalDirection.OUTBOUND, buffer, offset, length);
             }
-        }
 
-        private void sendWroteMessage(byte[] data, String message) {
-            if (sppServiceListener != null && sppServiceListener.get() != null) {
-                sppServiceListener.get().onMessageWrite(data, message);
+            SerialDispatcher dispatcher = SPPService.this.dispatcher;
+            if (dispatcher != null) {
+                // Pooled arrays are reused as soon as this returns.
+                final byte[] written = Arrays.copyOfRange(buffer, offset, offset + length);
+                dispatcher.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        SPPServiceListener listener = sppServiceListener != null ? sppServiceListener.get() : null;
+                        if (listener != null) {
+                            listener.onMessageWrite(written, 0, written.length);
+                        }
+                    }
+                });
+                return;
             }
-        }
 
-        void cancel() {
-            Logger.d(TAG, "ConnectedThread -> cancel");
-            try {
-                if (socket != null) {
-                    socket.close();
-                }
-            } catch (IOException e) {
-                Logger.e(TAG, e.getMessage());
+            SPPServiceListener listener = sppServiceListener != null ? sppServiceListener.get() : null;
+            if (listener != null) {
+                listener.onMessageWrite(buffer, offset, length);
             }
         }
-    }
 
+        @Override
+        public void onSessionError(IOException e) {
+            sessionFailed(owner, e);
+        }
+    }
 }
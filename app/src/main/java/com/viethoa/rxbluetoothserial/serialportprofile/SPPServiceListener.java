@@ -16,14 +16,15 @@ public interface SPPServiceListener {
     void onMessageStateChange(@BluetoothSerialState int state);
 
     /**
-     * Receive data from bluetooth device.
+     * Receive data from bluetooth device. Only {@code length} bytes starting at {@code offset}
+     * are valid, the buffer is reused by the reader so copy what you need before returning.
      */
-    void onMessageRead(byte[] bufferRead, String message);
+    void onMessageRead(byte[] buffer, int offset, int length);
 
     /**
      * Send data to bluetooth device such as command or something like that.
      */
-    void onMessageWrite(byte[] bufferWrite, String message);
+    void onMessageWrite(byte[] buffer, int offset, int length);
 
     /**
      * That notify what device we a connected for.
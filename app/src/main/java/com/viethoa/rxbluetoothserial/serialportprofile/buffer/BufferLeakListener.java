@@ -0,0 +1,14 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.buffer;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public interface BufferLeakListener {
+
+    /**
+     * A buffer was garbage collected without being released.
+     *
+     * @param acquiredAt stack trace of the {@link BufferPool#acquire(int)} call
+     */
+    void onBufferLeaked(Exception acquiredAt);
+}
@@ -0,0 +1,195 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.buffer;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Arrays in power of two size classes from 64 bytes to 16 KiB, reused across messages and
+ * sessions so steady streaming doesn't feed the garbage collector. Larger requests get a plain
+ * array. Each class keeps a bounded number of idle buffers in slots taken and filled with a
+ * compare and set, threads start at different slots so they rarely meet. Extra buffers are left
+ * to the GC.
+ * <p>
+ * With a {@link BufferLeakListener}, e.g. in debug builds, every acquire remembers its stack trace
+ * and buffers that were garbage collected without being released are reported with it.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class BufferPool {
+
+    public static final int MIN_CLASS_SIZE = 64;
+    public static final int MAX_CLASS_SIZE = 16 * 1024;
+    public static final int DEFAULT_BUFFERS_PER_CLASS = 32;
+
+    private static final int CLASS_COUNT =
+            Integer.numberOfTrailingZeros(MAX_CLASS_SIZE) - Integer.numberOfTrailingZeros(MIN_CLASS_SIZE) + 1;
+    private static final BufferPool SHARED = new BufferPool(DEFAULT_BUFFERS_PER_CLASS);
+
+    private final AtomicReferenceArray<PooledBuffer>[] idle;
+    private final int slotMask;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicLong allocated = new AtomicLong();
+    private final Set<LeakTracker> trackers =
+            Collections.newSetFromMap(new ConcurrentHashMap<LeakTracker, Boolean>());
+    private final ReferenceQueue<PooledBuffer> collected = new ReferenceQueue<>();
+    private volatile BufferLeakListener leakListener;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public BufferPool(int buffersPerClass) {
+        if (buffersPerClass <= 0) {
+            throw new IllegalArgumentException("buffersPerClass must be positive: " + buffersPerClass);
+        }
+        int slots = Integer.highestOneBit(buffersPerClass);
+        if (slots < buffersPerClass) {
+            slots <<= 1;
+        }
+        slotMask = slots - 1;
+        idle = new AtomicReferenceArray[CLASS_COUNT];
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            idle[i] = new AtomicReferenceArray<>(slots);
+        }
+    }
+
+    /**
+     * The pool shared by all sessions of the app.
+     */
+    public static BufferPool shared() {
+        return SHARED;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * A buffer of at least {@code minCapacity} bytes with one reference, length 0.
+     */
+    public PooledBuffer acquire(int minCapacity) {
+        if (minCapacity < 0) {
+            throw new IllegalArgumentException("minCapacity must not be negative: " + minCapacity);
+        }
+
+        int sizeClass = sizeClassOf(minCapacity);
+        PooledBuffer buffer = sizeClass >= 0 ? take(idle[sizeClass]) : null;
+        if (buffer == null) {
+            int size = sizeClass >= 0 ? MIN_CLASS_SIZE << sizeClass : minCapacity;
+            buffer = new PooledBuffer(new byte[size], this, sizeClass);
+            allocated.incrementAndGet();
+        }
+
+        buffer.reset();
+        outstanding.incrementAndGet();
+        BufferLeakListener leakListener = this.leakListener;
+        if (leakListener != null) {
+            reportLeaks(leakListener);
+            buffer.tracker = new LeakTracker(buffer, collected);
+            trackers.add(buffer.tracker);
+        }
+        return buffer;
+    }
+
+    /**
+     * Turns leak detection on, null to turn it off. Costs a stack trace per acquire, so debug
+     * builds only. Leaks are reported on the thread of a later acquire.
+     */
+    public void setLeakListener(BufferLeakListener leakListener) {
+        this.leakListener = leakListener;
+        if (leakListener == null) {
+            trackers.clear();
+        }
+    }
+
+    /**
+     * Buffers acquired and not released yet.
+     */
+    public int getOutstandingCount() {
+        return outstanding.get();
+    }
+
+    /**
+     * Arrays created so far, flat once streaming reached a steady state.
+     */
+    public long getAllocatedCount() {
+        return allocated.get();
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Settings
+    //----------------------------------------------------------------------------------------------
+
+    void recycle(PooledBuffer buffer) {
+        outstanding.decrementAndGet();
+        LeakTracker tracker = buffer.tracker;
+        if (tracker != null) {
+            buffer.tracker = null;
+            tracker.clear();
+            trackers.remove(tracker);
+        }
+        if (buffer.sizeClass() >= 0) {
+            put(idle[buffer.sizeClass()], buffer);
+        }
+    }
+
+    private PooledBuffer take(AtomicReferenceArray<PooledBuffer> slots) {
+        int start = probe();
+        for (int i = 0; i <= slotMask; i++) {
+            int index = (start + i) & slotMask;
+            PooledBuffer buffer = slots.get(index);
+            if (buffer != null && slots.compareAndSet(index, buffer, null)) {
+                return buffer;
+            }
+        }
+        return null;
+    }
+
+    private void put(AtomicReferenceArray<PooledBuffer> slots, PooledBuffer buffer) {
+        int start = probe();
+        for (int i = 0; i <= slotMask; i++) {
+            int index = (start + i) & slotMask;
+            if (slots.get(index) == null && slots.compareAndSet(index, null, buffer)) {
+                return;
+            }
+        }
+    }
+
+    private int probe() {
+        // Spread threads over the slots, a thread keeps taking back what it put.
+        return (int) (Thread.currentThread().getId() * 0x9E3779B9L >>> 16) & slotMask;
+    }
+
+    private void reportLeaks(BufferLeakListener leakListener) {
+        LeakTracker tracker;
+        while ((tracker = (LeakTracker) collected.poll()) != null) {
+            // Released buffers are cleared and never enqueued, so this one was dropped.
+            if (trackers.remove(tracker)) {
+                outstanding.decrementAndGet();
+                leakListener.onBufferLeaked(tracker.acquiredAt);
+            }
+        }
+    }
+
+    static int sizeClassOf(int capacity) {
+        if (capacity > MAX_CLASS_SIZE) {
+            return -1;
+        }
+        if (capacity <= MIN_CLASS_SIZE) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(capacity - 1) - Integer.numberOfTrailingZeros(MIN_CLASS_SIZE);
+    }
+
+    static final class LeakTracker extends WeakReference<PooledBuffer> {
+        final Exception acquiredAt;
+
+        LeakTracker(PooledBuffer buffer, ReferenceQueue<PooledBuffer> queue) {
+            super(buffer, queue);
+            acquiredAt = new Exception("Buffer of " + buffer.capacity() + " bytes acquired here");
+        }
+    }
+}
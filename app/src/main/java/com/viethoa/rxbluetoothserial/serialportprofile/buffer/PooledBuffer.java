@@ -0,0 +1,104 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.buffer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reference counted array from a {@link BufferPool}. It starts with one reference held by the
+ * caller of {@link BufferPool#acquire(int)}, every {@link #retain()} needs its own
+ * {@link #release()} and the array goes back to the pool with the last one. Don't touch the
+ * array after releasing it, the next owner may already be writing to it.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public final class PooledBuffer {
+
+    private final byte[] array;
+    private final BufferPool pool;
+    private final int sizeClass;
+    private final AtomicInteger refCount = new AtomicInteger();
+    private int length;
+
+    // Leak detection only.
+    BufferPool.LeakTracker tracker;
+
+    PooledBuffer(byte[] array, BufferPool pool, int sizeClass) {
+        this.array = array;
+        this.pool = pool;
+        this.sizeClass = sizeClass;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * At least the requested capacity, possibly more.
+     */
+    public byte[] array() {
+        return array;
+    }
+
+    public int capacity() {
+        return array.length;
+    }
+
+    /**
+     * Bytes in use from index 0, set by whoever fills the buffer.
+     */
+    public int length() {
+        return length;
+    }
+
+    public PooledBuffer setLength(int length) {
+        if (length < 0 || length > array.length) {
+            throw new IndexOutOfBoundsException("length " + length + " capacity " + array.length);
+        }
+        this.length = length;
+        return this;
+    }
+
+    public PooledBuffer retain() {
+        while (true) {
+            int count = refCount.get();
+            if (count <= 0) {
+                throw new IllegalStateException("Buffer was already released");
+            }
+            if (refCount.compareAndSet(count, count + 1)) {
+                return this;
+            }
+        }
+    }
+
+    /**
+     * @return true when this was the last reference and the array went back to the pool
+     */
+    public boolean release() {
+        int count = refCount.decrementAndGet();
+        if (count > 0) {
+            return false;
+        }
+        if (count < 0) {
+            refCount.incrementAndGet();
+            throw new IllegalStateException("Buffer was released more often than retained");
+        }
+        pool.recycle(this);
+        return true;
+    }
+
+    public int refCount() {
+        return refCount.get();
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Settings
+    //----------------------------------------------------------------------------------------------
+
+    int sizeClass() {
+        return sizeClass;
+    }
+
+    void reset() {
+        length = 0;
+        refCount.set(1);
+    }
+}
@@ -0,0 +1,81 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.codec;
+
+/**
+ * COBS framing, the payload is encoded without zero bytes and every frame ends with 0x00.
+ * Decoded incrementally as bytes arrive, malformed and longer than max frames are dropped.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class CobsFrameDecoder implements FrameDecoder {
+
+    private final FrameBuffer frame;
+    private int remaining;
+    private boolean pendingZero;
+    private boolean started;
+    private boolean discarding;
+    private long droppedFrames;
+
+    public CobsFrameDecoder(int maxFrameLength) {
+        this.frame = new FrameBuffer(maxFrameLength);
+    }
+
+    @Override
+    public void decode(byte[] buffer, int offset, int length, FrameListener listener) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = buffer[i];
+            if (b == 0) {
+                if (!discarding && started) {
+                    if (remaining == 0) {
+                        listener.onFrame(frame.data(), 0, frame.length());
+                    } else {
+                        droppedFrames++;
+                    }
+                }
+                reset();
+                continue;
+            }
+            if (discarding) {
+                continue;
+            }
+
+            if (remaining > 0) {
+                remaining--;
+                append(b);
+                continue;
+            }
+
+            // Code byte: the previous block, if shorter than 254 bytes, ended with a zero.
+            if (pendingZero) {
+                append((byte) 0);
+            }
+            int code = b & 0xFF;
+            remaining = code - 1;
+            pendingZero = code < 0xFF;
+            started = true;
+        }
+    }
+
+    @Override
+    public void reset() {
+        frame.clear();
+        remaining = 0;
+        pendingZero = false;
+        started = false;
+        discarding = false;
+    }
+
+    /**
+     * Frames dropped because they were malformed or longer than the max frame length.
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    private void append(byte b) {
+        if (!discarding && !frame.append(b)) {
+            droppedFrames++;
+            discarding = true;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.codec;
+
+/**
+ * COBS framing, zero bytes are encoded away and every frame ends with 0x00.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class CobsFrameEncoder implements FrameEncoder {
+
+    @Override
+    public int maxEncodedLength(int length) {
+        return length + length / 254 + 2;
+    }
+
+    @Override
+    public int encode(byte[] source, int offset, int length, byte[] destination, int destinationOffset) {
+        int codeIndex = destinationOffset;
+        int out = destinationOffset + 1;
+        int code = 1;
+
+        for (int i = offset; i < offset + length; i++) {
+            byte b = source[i];
+            if (b == 0) {
+                destination[codeIndex] = (byte) code;
+                codeIndex = out++;
+                code = 1;
+                continue;
+            }
+
+            destination[out++] = b;
+            code++;
+            if (code == 0xFF) {
+                destination[codeIndex] = (byte) code;
+                codeIndex = out++;
+                code = 1;
+            }
+        }
+
+        destination[codeIndex] = (byte) code;
+        destination[out++] = 0;
+        return out - destinationOffset;
+    }
+}
@@ -0,0 +1,138 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.codec;
+
+import com.viethoa.rxbluetoothserial.cores.SerialText;
+
+/**
+ * Splits the stream on a delimiter such as CRLF. A frame that lies entirely in one chunk is handed
+ * out as a slice of that chunk without copying, only a frame spanning chunks is collected in a
+ * buffer that grows up to the max frame length. Longer frames are dropped up to the next delimiter.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class DelimiterFrameDecoder implements FrameDecoder {
+
+    private final byte[] delimiter;
+    // Match length to fall back to on a mismatch, so delimiters overlapping themselves such as
+    // "ABAC" are still found in "ABABAC".
+    private final int[] fallback;
+    private final int maxFrameLength;
+
+    private final FrameBuffer pending;
+    private int matched;
+    private boolean discarding;
+    private long droppedFrames;
+
+    public DelimiterFrameDecoder(byte[] delimiter, int maxFrameLength) {
+        if (delimiter == null || delimiter.length == 0) {
+            throw new IllegalArgumentException("delimiter must not be empty");
+        }
+        if (maxFrameLength <= 0) {
+            throw new IllegalArgumentException("maxFrameLength must be positive: " + maxFrameLength);
+        }
+        this.delimiter = delimiter.clone();
+        this.fallback = fallbackTable(this.delimiter);
+        this.maxFrameLength = maxFrameLength;
+        this.pending = new FrameBuffer(maxFrameLength + delimiter.length);
+    }
+
+    public static DelimiterFrameDecoder crlf(int maxFrameLength) {
+        return new DelimiterFrameDecoder(SerialText.CRLF, maxFrameLength);
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    @Override
+    public void decode(byte[] buffer, int offset, int length, FrameListener listener) {
+        int end = offset + length;
+        int frameStart = offset;
+
+        for (int i = offset; i < end; i++) {
+            byte b = buffer[i];
+            while (matched > 0 && b != delimiter[matched]) {
+                matched = fallback[matched];
+            }
+            if (b == delimiter[matched]) {
+                matched++;
+            }
+            if (matched < delimiter.length) {
+                continue;
+            }
+
+            matched = 0;
+            if (discarding) {
+                discarding = false;
+            } else if (pending.length() == 0) {
+                emit(buffer, frameStart, i + 1 - delimiter.length - frameStart, listener);
+            } else if (append(buffer, frameStart, i + 1 - frameStart, false)) {
+                emit(pending.data(), 0, pending.length() - delimiter.length, listener);
+            }
+            pending.clear();
+            frameStart = i + 1;
+        }
+
+        if (!discarding && frameStart < end) {
+            append(buffer, frameStart, end - frameStart, true);
+        }
+    }
+
+    @Override
+    public void reset() {
+        pending.clear();
+        matched = 0;
+        discarding = false;
+    }
+
+    /**
+     * Frames dropped because they were longer than the max frame length.
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Settings
+    //----------------------------------------------------------------------------------------------
+
+    private void emit(byte[] buffer, int offset, int length, FrameListener listener) {
+        if (length > maxFrameLength) {
+            droppedFrames++;
+            return;
+        }
+        listener.onFrame(buffer, offset, length);
+    }
+
+    /**
+     * @param partial the bytes don't end with the delimiter, so a frame too long to collect has to
+     *                be skipped up to the next one
+     */
+    private boolean append(byte[] buffer, int offset, int length, boolean partial) {
+        if (!pending.append(buffer, offset, length)) {
+            droppedFrames++;
+            pending.clear();
+            discarding = partial;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * {@code table[k]} is the longest proper prefix of the first {@code k} delimiter bytes that is
+     * also their suffix.
+     */
+    private static int[] fallbackTable(byte[] delimiter) {
+        int[] table = new int[delimiter.length];
+        int k = 0;
+        for (int i = 1; i < delimiter.length - 1; i++) {
+            while (k > 0 && delimiter[i] != delimiter[k]) {
+                k = table[k];
+            }
+            if (delimiter[i] == delimiter[k]) {
+                k++;
+            }
+            table[i + 1] = k;
+        }
+        return table;
+    }
+}
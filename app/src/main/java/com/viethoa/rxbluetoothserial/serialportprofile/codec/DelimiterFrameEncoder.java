@@ -0,0 +1,36 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.codec;
+
+import com.viethoa.rxbluetoothserial.cores.SerialText;
+
+/**
+ * Appends a delimiter such as CRLF to every payload.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class DelimiterFrameEncoder implements FrameEncoder {
+
+    private final byte[] delimiter;
+
+    public DelimiterFrameEncoder(byte[] delimiter) {
+        if (delimiter == null || delimiter.length == 0) {
+            throw new IllegalArgumentException("delimiter must not be empty");
+        }
+        this.delimiter = delimiter.clone();
+    }
+
+    public static DelimiterFrameEncoder crlf() {
+        return new DelimiterFrameEncoder(SerialText.CRLF);
+    }
+
+    @Override
+    public int maxEncodedLength(int length) {
+        return length + delimiter.length;
+    }
+
+    @Override
+    public int encode(byte[] source, int offset, int length, byte[] destination, int destinationOffset) {
+        System.arraycopy(source, offset, destination, destinationOffset, length);
+        System.arraycopy(delimiter, 0, destination, destinationOffset + length, delimiter.length);
+        return length + delimiter.length;
+    }
+}
@@ -0,0 +1,68 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.codec;
+
+/**
+ * Reusable frame under construction for the decoders, grows up to the max frame length.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+class FrameBuffer {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int maxLength;
+    private byte[] data;
+    private int length;
+
+    FrameBuffer(int maxLength) {
+        if (maxLength <= 0) {
+            throw new IllegalArgumentException("maxFrameLength must be positive: " + maxLength);
+        }
+        this.maxLength = maxLength;
+        this.data = new byte[Math.min(INITIAL_CAPACITY, maxLength)];
+    }
+
+    /**
+     * Returns false when the frame would exceed the max length, nothing is appended then.
+     */
+    boolean append(byte b) {
+        if (!ensureCapacity(length + 1)) {
+            return false;
+        }
+        data[length++] = b;
+        return true;
+    }
+
+    boolean append(byte[] buffer, int offset, int count) {
+        if (!ensureCapacity(length + count)) {
+            return false;
+        }
+        System.arraycopy(buffer, offset, data, length, count);
+        length += count;
+        return true;
+    }
+
+    byte[] data() {
+        return data;
+    }
+
+    int length() {
+        return length;
+    }
+
+    void clear() {
+        length = 0;
+    }
+
+    private boolean ensureCapacity(int required) {
+        if (required <= data.length) {
+            return true;
+        }
+        if (required > maxLength) {
+            return false;
+        }
+        byte[] grown = new byte[Math.min(Math.max(required, data.length * 2), maxLength)];
+        System.arraycopy(data, 0, grown, 0, length);
+        data = grown;
+        return true;
+    }
+}
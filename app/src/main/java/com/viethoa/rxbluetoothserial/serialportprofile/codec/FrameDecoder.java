@@ -0,0 +1,18 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.codec;
+
+/**
+ * Turns the arbitrary chunks of a byte stream into frames. Decoders keep the partial frame
+ * between calls, so one instance serves exactly one stream and is called from one thread.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+
+public interface FrameDecoder {
+
+    void decode(byte[] buffer, int offset, int length, FrameListener listener);
+
+    /**
+     * Forget any partial frame, e.g. when the connection is re-established.
+     */
+    void reset();
+}
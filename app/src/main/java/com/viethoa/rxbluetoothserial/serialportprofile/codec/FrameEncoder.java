@@ -0,0 +1,21 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.codec;
+
+/**
+ * Frames one outbound payload. The writer encodes straight into its batch buffer, so encoders
+ * must not keep a reference to either array.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+
+public interface FrameEncoder {
+
+    /**
+     * Upper bound of the encoded size of a {@code length} bytes payload.
+     */
+    int maxEncodedLength(int length);
+
+    /**
+     * Writes the framed payload to {@code destination} and returns the number of bytes written.
+     */
+    int encode(byte[] source, int offset, int length, byte[] destination, int destinationOffset);
+}
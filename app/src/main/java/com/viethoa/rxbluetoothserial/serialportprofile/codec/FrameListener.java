@@ -0,0 +1,14 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.codec;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+
+public interface FrameListener {
+
+    /**
+     * One complete frame without its framing bytes, valid from {@code offset} for {@code length}
+     * bytes. The buffer belongs to the decoder so copy what you need before returning.
+     */
+    void onFrame(byte[] buffer, int offset, int length);
+}
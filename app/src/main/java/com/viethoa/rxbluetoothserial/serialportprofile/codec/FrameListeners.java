@@ -0,0 +1,49 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.codec;
+
+import java.util.Arrays;
+
+/**
+ * Copy on write set of frame listeners, dispatching never locks nor allocates.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class FrameListeners implements FrameListener {
+
+    private static final FrameListener[] EMPTY = new FrameListener[0];
+
+    private volatile FrameListener[] listeners = EMPTY;
+
+    public synchronized void add(FrameListener listener) {
+        if (listener == null) {
+            return;
+        }
+        FrameListener[] result = Arrays.copyOf(listeners, listeners.length + 1);
+        result[result.length - 1] = listener;
+        listeners = result;
+    }
+
+    public synchronized void remove(FrameListener listener) {
+        FrameListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                FrameListener[] result = new FrameListener[current.length - 1];
+                System.arraycopy(current, 0, result, 0, i);
+                System.arraycopy(current, i + 1, result, i, current.length - i - 1);
+                listeners = result;
+                return;
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return listeners.length == 0;
+    }
+
+    @Override
+    public void onFrame(byte[] buffer, int offset, int length) {
+        FrameListener[] current = listeners;
+        for (FrameListener listener : current) {
+            listener.onFrame(buffer, offset, length);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.codec;
+
+/**
+ * Frames made of a 1, 2 or 4 byte unsigned length followed by that many payload bytes. A frame
+ * inside one read chunk is handed out as a slice of the chunk, others are collected first.
+ * Frames over the max length are skipped.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class LengthPrefixedFrameDecoder implements FrameDecoder {
+
+    private final int headerLength;
+    private final boolean bigEndian;
+    private final int maxFrameLength;
+    private final FrameBuffer frame;
+
+    private int headerRead;
+    private long frameLength;
+    private long skipping;
+    private long droppedFrames;
+
+    public LengthPrefixedFrameDecoder(int headerLength, boolean bigEndian, int maxFrameLength) {
+        if (headerLength != 1 && headerLength != 2 && headerLength != 4) {
+            throw new IllegalArgumentException("headerLength must be 1, 2 or 4: " + headerLength);
+        }
+        this.headerLength = headerLength;
+        this.bigEndian = bigEndian;
+        this.maxFrameLength = maxFrameLength;
+        this.frame = new FrameBuffer(maxFrameLength);
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    @Override
+    public void decode(byte[] buffer, int offset, int length, FrameListener listener) {
+        int i = offset;
+        int end = offset + length;
+
+        while (i < end) {
+            if (headerRead < headerLength) {
+                long b = buffer[i++] & 0xFF;
+                frameLength = bigEndian ? (frameLength << 8) | b : frameLength | (b << (8 * headerRead));
+                headerRead++;
+                if (headerRead == headerLength) {
+                    onHeader(listener);
+                }
+                continue;
+            }
+
+            int available = end - i;
+            if (skipping > 0) {
+                int count = (int) Math.min(skipping, available);
+                skipping -= count;
+                i += count;
+                if (skipping == 0) {
+                    nextFrame();
+                }
+                continue;
+            }
+
+            if (frame.length() == 0 && available >= frameLength) {
+                listener.onFrame(buffer, i, (int) frameLength);
+                i += (int) frameLength;
+                nextFrame();
+                continue;
+            }
+
+            int count = (int) Math.min(frameLength - frame.length(), available);
+            frame.append(buffer, i, count);
+            i += count;
+            if (frame.length() == frameLength) {
+                listener.onFrame(frame.data(), 0, frame.length());
+                nextFrame();
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        nextFrame();
+    }
+
+    /**
+     * Frames skipped because they were longer than the max frame length.
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Settings
+    //----------------------------------------------------------------------------------------------
+
+    private void onHeader(FrameListener listener) {
+        if (frameLength > maxFrameLength) {
+            droppedFrames++;
+            skipping = frameLength;
+        } else if (frameLength == 0) {
+            listener.onFrame(frame.data(), 0, 0);
+            nextFrame();
+        }
+    }
+
+    private void nextFrame() {
+        headerRead = 0;
+        frameLength = 0;
+        skipping = 0;
+        frame.clear();
+    }
+}
@@ -0,0 +1,42 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.codec;
+
+/**
+ * Prefixes every payload with its length in 1, 2 or 4 bytes.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class LengthPrefixedFrameEncoder implements FrameEncoder {
+
+    private final int headerLength;
+    private final boolean bigEndian;
+    private final long maxPayloadLength;
+
+    public LengthPrefixedFrameEncoder(int headerLength, boolean bigEndian) {
+        if (headerLength != 1 && headerLength != 2 && headerLength != 4) {
+            throw new IllegalArgumentException("headerLength must be 1, 2 or 4: " + headerLength);
+        }
+        this.headerLength = headerLength;
+        this.bigEndian = bigEndian;
+        this.maxPayloadLength = headerLength == 4 ? Integer.MAX_VALUE : (1L << (8 * headerLength)) - 1;
+    }
+
+    @Override
+    public int maxEncodedLength(int length) {
+        return headerLength + length;
+    }
+
+    @Override
+    public int encode(byte[] source, int offset, int length, byte[] destination, int destinationOffset) {
+        if (length > maxPayloadLength) {
+            throw new IllegalArgumentException("Payload of " + length + " bytes does not fit a "
+                    + headerLength + " byte length");
+        }
+
+        for (int i = 0; i < headerLength; i++) {
+            int shift = bigEndian ? 8 * (headerLength - 1 - i) : 8 * i;
+            destination[destinationOffset + i] = (byte) (length >>> shift);
+        }
+        System.arraycopy(source, offset, destination, destinationOffset + headerLength, length);
+        return headerLength + length;
+    }
+}
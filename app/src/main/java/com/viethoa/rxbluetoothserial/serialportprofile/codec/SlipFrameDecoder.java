@@ -0,0 +1,73 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.codec;
+
+/**
+ * SLIP framing (RFC 1055), frames end with END and END/ESC in the payload are escaped.
+ * Empty frames from back to back END bytes are ignored, longer than max frames are dropped.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class SlipFrameDecoder implements FrameDecoder {
+
+    static final byte END = (byte) 0xC0;
+    static final byte ESC = (byte) 0xDB;
+    static final byte ESC_END = (byte) 0xDC;
+    static final byte ESC_ESC = (byte) 0xDD;
+
+    private final FrameBuffer frame;
+    private boolean escaped;
+    private boolean discarding;
+    private long droppedFrames;
+
+    public SlipFrameDecoder(int maxFrameLength) {
+        this.frame = new FrameBuffer(maxFrameLength);
+    }
+
+    @Override
+    public void decode(byte[] buffer, int offset, int length, FrameListener listener) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = buffer[i];
+            if (b == END) {
+                if (!discarding && !escaped && frame.length() > 0) {
+                    listener.onFrame(frame.data(), 0, frame.length());
+                }
+                reset();
+                continue;
+            }
+            if (discarding) {
+                continue;
+            }
+
+            if (escaped) {
+                escaped = false;
+                if (b == ESC_END) {
+                    b = END;
+                } else if (b == ESC_ESC) {
+                    b = ESC;
+                }
+            } else if (b == ESC) {
+                escaped = true;
+                continue;
+            }
+
+            if (!frame.append(b)) {
+                droppedFrames++;
+                discarding = true;
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        frame.clear();
+        escaped = false;
+        discarding = false;
+    }
+
+    /**
+     * Frames dropped because they were longer than the max frame length.
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+}
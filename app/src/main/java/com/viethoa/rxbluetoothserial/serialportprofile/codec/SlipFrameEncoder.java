@@ -0,0 +1,40 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.codec;
+
+import static com.viethoa.rxbluetoothserial.serialportprofile.codec.SlipFrameDecoder.END;
+import static com.viethoa.rxbluetoothserial.serialportprofile.codec.SlipFrameDecoder.ESC;
+import static com.viethoa.rxbluetoothserial.serialportprofile.codec.SlipFrameDecoder.ESC_END;
+import static com.viethoa.rxbluetoothserial.serialportprofile.codec.SlipFrameDecoder.ESC_ESC;
+
+/**
+ * SLIP framing (RFC 1055). Every frame starts with END as well, so line noise before it is
+ * flushed as an empty frame on the receiving side.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class SlipFrameEncoder implements FrameEncoder {
+
+    @Override
+    public int maxEncodedLength(int length) {
+        return 2 * length + 2;
+    }
+
+    @Override
+    public int encode(byte[] source, int offset, int length, byte[] destination, int destinationOffset) {
+        int out = destinationOffset;
+        destination[out++] = END;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = source[i];
+            if (b == END) {
+                destination[out++] = ESC;
+                destination[out++] = ESC_END;
+            } else if (b == ESC) {
+                destination[out++] = ESC;
+                destination[out++] = ESC_ESC;
+            } else {
+                destination[out++] = b;
+            }
+        }
+        destination[out++] = END;
+        return out - destinationOffset;
+    }
+}
@@ -0,0 +1,304 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.command;
+
+import com.viethoa.rxbluetoothserial.serialportprofile.codec.FrameListener;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialIoRuntime;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.TimerWheel;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.WriteCallback;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Links commands to the frames that answer them. Up to {@link #setMaxInFlight(int)} commands are
+ * written back to back without waiting for replies, later ones queue in order. Each read frame
+ * goes to the oldest in flight command whose matcher takes it, so pipelined commands with the
+ * same reply prefix are answered in the order they were sent. Frames no command takes go to the
+ * unsolicited listener. Response timeouts run on a shared {@link TimerWheel} and start when the
+ * command is written.
+ * <p>
+ * A command cancelled or timed out after it was written may still be answered. It stays in line
+ * as a tombstone that swallows its late reply, so the reply isn't taken for the answer to the
+ * next command. A cancelled command's tombstone goes when its timeout would have fired, a timed
+ * out one's after the same timeout again. Tombstones don't count against the max in flight.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class CommandCorrelator implements FrameListener {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+    private final CommandWriter writer;
+    private final TimerWheel timer;
+    // Writes the commands a timeout made room for, the timer thread must not block on the writer.
+    private final Executor sendExecutor;
+    private final ArrayDeque<PendingCommand> inFlight = new ArrayDeque<>();
+    private final ArrayDeque<PendingCommand> waiting = new ArrayDeque<>();
+    // Held from moving commands in flight until they are written, so they go out in that order.
+    private final Object sendLock = new Object();
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    // Abandoned commands still in inFlight, guarded by this.
+    private int tombstones;
+    private volatile FrameListener unsolicitedListener;
+
+    public CommandCorrelator(CommandWriter writer) {
+        this(writer, TimerWheel.shared(), SerialIoRuntime.shared().getWriteExecutor());
+    }
+
+    public CommandCorrelator(CommandWriter writer, TimerWheel timer, Executor sendExecutor) {
+        this.writer = writer;
+        this.timer = timer;
+        this.sendExecutor = sendExecutor;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * 1 for lock step round trips.
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        synchronized (this) {
+            this.maxInFlight = maxInFlight;
+        }
+        sendWaiting();
+    }
+
+    /**
+     * Gets the frames that answer no command, e.g. unsolicited result codes. Null for none.
+     */
+    public void setUnsolicitedListener(FrameListener unsolicitedListener) {
+        this.unsolicitedListener = unsolicitedListener;
+    }
+
+    /**
+     * Queue {@code command}, {@code callback} gets the first frame {@code matcher} takes, or an
+     * error once {@code timeout} passed after the command was written.
+     */
+    public PendingCommand send(SerialCommand command, ResponseMatcher matcher, long timeout, TimeUnit unit,
+                               ResponseCallback callback) {
+        PendingCommand pending = new PendingCommand(this, command, matcher, unit.toNanos(timeout), callback);
+        synchronized (this) {
+            waiting.add(pending);
+        }
+        sendWaiting();
+        return pending;
+    }
+
+    /**
+     * Fails everything in flight or waiting, e.g. when the connection dropped.
+     */
+    public void failAll(Throwable error) {
+        List<PendingCommand> failed;
+        synchronized (this) {
+            failed = new ArrayList<>(inFlight.size() + waiting.size());
+            failed.addAll(inFlight);
+            failed.addAll(waiting);
+            inFlight.clear();
+            waiting.clear();
+            tombstones = 0;
+        }
+        for (PendingCommand pending : failed) {
+            if (pending.timeout != null) {
+                pending.timeout.cancel();
+            }
+            if (!pending.abandoned) {
+                pending.callback.onCommandFailed(error);
+            }
+        }
+    }
+
+    /**
+     * Commands sent and waiting for their response, without the tombstones of abandoned ones.
+     */
+    public synchronized int getInFlightCount() {
+        return inFlight.size() - tombstones;
+    }
+
+    public synchronized int getWaitingCount() {
+        return waiting.size();
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Frame listener
+    //----------------------------------------------------------------------------------------------
+
+    @Override
+    public void onFrame(byte[] buffer, int offset, int length) {
+        PendingCommand matched = null;
+        synchronized (this) {
+            Iterator<PendingCommand> iterator = inFlight.iterator();
+            while (iterator.hasNext()) {
+                PendingCommand pending = iterator.next();
+                if (pending.matcher.matches(buffer, offset, length)) {
+                    iterator.remove();
+                    if (pending.abandoned) {
+                        tombstones--;
+                    }
+                    matched = pending;
+                    break;
+                }
+            }
+        }
+
+        if (matched != null && matched.abandoned) {
+            // The late reply to a cancelled or timed out command.
+            matched.timeout.cancel();
+            return;
+        }
+        if (matched == null) {
+            FrameListener unsolicitedListener = this.unsolicitedListener;
+            if (unsolicitedListener != null) {
+                unsolicitedListener.onFrame(buffer, offset, length);
+            }
+            return;
+        }
+
+        matched.timeout.cancel();
+        sendWaiting();
+        byte[] bytes = Arrays.copyOfRange(buffer, offset, offset + length);
+        matched.callback.onResponse(new SerialResponse(matched.command, bytes, System.nanoTime() - matched.sentNanos));
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Settings
+    //----------------------------------------------------------------------------------------------
+
+    void cancel(PendingCommand pending) {
+        synchronized (this) {
+            if (waiting.remove(pending)) {
+                pending.abandoned = true;
+            } else if (!abandon(pending)) {
+                return;
+            }
+            // A tombstone keeps its timeout, which then removes it.
+        }
+        sendWaiting();
+        pending.callback.onCommandFailed(new CancellationException("Command " + pending.command + " was cancelled"));
+    }
+
+    /**
+     * On the timer thread, so the commands this makes room for are written on the send executor.
+     */
+    private void onTimeout(final PendingCommand pending) {
+        synchronized (this) {
+            if (pending.abandoned) {
+                // The tombstone expired, its reply is lost.
+                if (inFlight.remove(pending)) {
+                    tombstones--;
+                }
+                return;
+            }
+            if (!abandon(pending)) {
+                return;
+            }
+            pending.timeout = timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    onTimeout(pending);
+                }
+            }, pending.timeoutNanos, TimeUnit.NANOSECONDS);
+        }
+
+        try {
+            sendExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    sendWaiting();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shut down, the waiting commands fail with the connection.
+        }
+        pending.callback.onCommandFailed(new TimeoutException("No response to " + pending.command + " within "
+                + TimeUnit.NANOSECONDS.toMillis(pending.timeoutNanos) + " ms"));
+    }
+
+    /**
+     * Under the lock. Turns a command in flight into a tombstone.
+     *
+     * @return false when it was answered or failed already
+     */
+    private boolean abandon(PendingCommand pending) {
+        if (pending.abandoned || !inFlight.contains(pending)) {
+            return false;
+        }
+        pending.abandoned = true;
+        tombstones++;
+        return true;
+    }
+
+    /**
+     * The write failed, so no reply is coming.
+     */
+    private void writeFailed(PendingCommand pending, Throwable error) {
+        synchronized (this) {
+            if (!inFlight.remove(pending)) {
+                return;
+            }
+            if (pending.abandoned) {
+                tombstones--;
+            }
+        }
+        pending.timeout.cancel();
+        sendWaiting();
+        if (!pending.abandoned) {
+            pending.callback.onCommandFailed(error);
+        }
+    }
+
+    /**
+     * Moves waiting commands in flight while there is room and writes them. The writer may block
+     * on a full queue, so that happens outside the state lock.
+     */
+    private void sendWaiting() {
+        synchronized (sendLock) {
+            while (true) {
+                PendingCommand pending;
+                synchronized (this) {
+                    if (inFlight.size() - tombstones >= maxInFlight || waiting.isEmpty()) {
+                        return;
+                    }
+                    pending = waiting.poll();
+                    start(pending);
+                }
+                write(pending);
+            }
+        }
+    }
+
+    private void start(final PendingCommand pending) {
+        inFlight.add(pending);
+        pending.sentNanos = System.nanoTime();
+        pending.timeout = timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                onTimeout(pending);
+            }
+        }, pending.timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void write(final PendingCommand pending) {
+        writer.write(pending.command.getPayload()).setCallback(new WriteCallback() {
+            @Override
+            public void onWriteComplete() {
+            }
+
+            @Override
+            public void onWriteFailed(Throwable error) {
+                writeFailed(pending, error);
+            }
+        });
+    }
+}
@@ -0,0 +1,11 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.command;
+
+import com.viethoa.rxbluetoothserial.serialportprofile.io.WriteFuture;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public interface CommandWriter {
+
+    WriteFuture write(byte[] data);
+}
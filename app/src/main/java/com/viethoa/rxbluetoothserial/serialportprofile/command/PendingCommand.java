@@ -0,0 +1,44 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.command;
+
+import com.viethoa.rxbluetoothserial.serialportprofile.io.TimerWheel;
+
+/**
+ * A command waiting for its turn or its response.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public final class PendingCommand {
+
+    final CommandCorrelator correlator;
+    final SerialCommand command;
+    final ResponseMatcher matcher;
+    final long timeoutNanos;
+    final ResponseCallback callback;
+    // Set when sent, under the correlator lock.
+    long sentNanos;
+    TimerWheel.Timeout timeout;
+    // Cancelled or timed out, under the correlator lock.
+    boolean abandoned;
+
+    PendingCommand(CommandCorrelator correlator, SerialCommand command, ResponseMatcher matcher,
+                   long timeoutNanos, ResponseCallback callback) {
+        this.correlator = correlator;
+        this.command = command;
+        this.matcher = matcher;
+        this.timeoutNanos = timeoutNanos;
+        this.callback = callback;
+    }
+
+    public SerialCommand getCommand() {
+        return command;
+    }
+
+    /**
+     * Fails the command with a {@link java.util.concurrent.CancellationException} unless it is
+     * already done. A command that went out still counts as sent, its response is swallowed when
+     * it comes.
+     */
+    public void cancel() {
+        correlator.cancel(this);
+    }
+}
@@ -0,0 +1,18 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.command;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public interface ResponseCallback {
+
+    /**
+     * Called on the read dispatch thread.
+     */
+    void onResponse(SerialResponse response);
+
+    /**
+     * The write failed, no response came in time, the command was cancelled or the connection
+     * dropped. Called on the writer, timer or calling thread.
+     */
+    void onCommandFailed(Throwable error);
+}
@@ -0,0 +1,13 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.command;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public interface ResponseMatcher {
+
+    /**
+     * Whether a frame read while the command is in flight is its response. Called on the read
+     * dispatch thread for every frame until one matches, so keep it cheap.
+     */
+    boolean matches(byte[] buffer, int offset, int length);
+}
@@ -0,0 +1,90 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.command;
+
+import com.viethoa.rxbluetoothserial.cores.SerialText;
+
+import java.util.regex.Pattern;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public final class ResponseMatchers {
+
+    private static final ResponseMatcher ANY = new ResponseMatcher() {
+        @Override
+        public boolean matches(byte[] buffer, int offset, int length) {
+            return true;
+        }
+    };
+
+    private ResponseMatchers() {
+    }
+
+    /**
+     * The next frame, for strictly lock step protocols.
+     */
+    public static ResponseMatcher any() {
+        return ANY;
+    }
+
+    /**
+     * Frames starting with {@code prefix}, e.g. {@code "+CSQ:"}. Compared byte by byte, nothing
+     * is decoded.
+     */
+    public static ResponseMatcher prefix(String prefix) {
+        final byte[] expected = SerialText.encode(prefix);
+        return new ResponseMatcher() {
+            @Override
+            public boolean matches(byte[] buffer, int offset, int length) {
+                if (length < expected.length) {
+                    return false;
+                }
+                for (int i = 0; i < expected.length; i++) {
+                    if (buffer[offset + i] != expected[i]) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Frames whose text contains a match of {@code pattern}. Decodes every frame it sees, prefer
+     * {@link #prefix(String)} when that is enough.
+     */
+    public static ResponseMatcher regex(final Pattern pattern) {
+        return new ResponseMatcher() {
+            @Override
+            public boolean matches(byte[] buffer, int offset, int length) {
+                return pattern.matcher(SerialText.decode(buffer, offset, length)).find();
+            }
+        };
+    }
+
+    public static ResponseMatcher regex(String pattern) {
+        return regex(Pattern.compile(pattern));
+    }
+
+    /**
+     * Binary frames carrying {@code id} as a big endian field of {@code width} bytes at
+     * {@code position}, for protocols that number their requests.
+     */
+    public static ResponseMatcher sequenceId(final int position, final int width, final long id) {
+        if (position < 0 || width <= 0 || width > 8) {
+            throw new IllegalArgumentException("Bad sequence id field: " + position + ", " + width);
+        }
+        return new ResponseMatcher() {
+            @Override
+            public boolean matches(byte[] buffer, int offset, int length) {
+                if (length < position + width) {
+                    return false;
+                }
+                long value = 0;
+                for (int i = 0; i < width; i++) {
+                    value = (value << 8) | (buffer[offset + position + i] & 0xFF);
+                }
+                return value == id;
+            }
+        };
+    }
+}
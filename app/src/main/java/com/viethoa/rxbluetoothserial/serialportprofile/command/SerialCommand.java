@@ -0,0 +1,42 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.command;
+
+import com.viethoa.rxbluetoothserial.cores.SerialText;
+
+/**
+ * Bytes sent as one write by {@link CommandCorrelator#send}.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public final class SerialCommand {
+
+    private final byte[] payload;
+    private final String name;
+
+    private SerialCommand(byte[] payload, String name) {
+        this.payload = payload;
+        this.name = name;
+    }
+
+    /**
+     * An AT style command, the text followed by CRLF.
+     */
+    public static SerialCommand line(String text) {
+        return new SerialCommand(SerialText.encodeLine(text, SerialText.CRLF), text);
+    }
+
+    /**
+     * Sent as is, the array must not change until the response is in.
+     */
+    public static SerialCommand of(byte[] payload) {
+        return new SerialCommand(payload, payload.length + " bytes");
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
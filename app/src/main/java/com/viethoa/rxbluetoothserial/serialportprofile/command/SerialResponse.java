@@ -0,0 +1,45 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.command;
+
+import com.viethoa.rxbluetoothserial.cores.SerialText;
+
+/**
+ * The frame that matched a {@link SerialCommand}.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public final class SerialResponse {
+
+    private final SerialCommand command;
+    private final byte[] bytes;
+    private final long latencyNanos;
+
+    SerialResponse(SerialCommand command, byte[] bytes, long latencyNanos) {
+        this.command = command;
+        this.bytes = bytes;
+        this.latencyNanos = latencyNanos;
+    }
+
+    public SerialCommand getCommand() {
+        return command;
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public String getText() {
+        return SerialText.decode(bytes, 0, bytes.length);
+    }
+
+    /**
+     * From the command going out to the response coming in.
+     */
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    @Override
+    public String toString() {
+        return getText();
+    }
+}
@@ -0,0 +1,177 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import com.viethoa.rxbluetoothserial.serialportprofile.buffer.BufferPool;
+import com.viethoa.rxbluetoothserial.serialportprofile.buffer.PooledBuffer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Read buffer of a {@link SerialSession} that follows the traffic: it doubles when reads keep
+ * filling it or more is available than fits, and halves after a long run of small reads. With
+ * coalescing, a small read polls {@link SerialTransport#available()} for the rest of the window
+ * and returns everything that arrived meanwhile as one chunk. Buffers come from the
+ * {@link BufferPool}, so resizing and reconnecting reuse arrays instead of allocating them.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class AdaptiveReader {
+
+    static final int GROW_AFTER_FULL_READS = 2;
+    static final int SHRINK_AFTER_SMALL_READS = 64;
+    private static final long POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final SerialTransport transport;
+    private final int minSize;
+    private final int maxSize;
+    private final int coalesceBytes;
+    private final long coalesceWindowNanos;
+
+    private final BufferPool pool;
+    private PooledBuffer pooled;
+    private byte[] buffer;
+    // Pooled arrays may be larger than asked for.
+    private int size;
+    // Applied on the next read, the listener is still reading the current buffer.
+    private int nextSize;
+    private int fullReads;
+    private int smallReads;
+    private boolean endOfStream;
+
+    public AdaptiveReader(SerialTransport transport, SerialReadOptions options) {
+        this(transport, options, BufferPool.shared());
+    }
+
+    public AdaptiveReader(SerialTransport transport, SerialReadOptions options, BufferPool pool) {
+        this.transport = transport;
+        this.pool = pool;
+        this.coalesceBytes = options.getCoalesceBytes();
+        this.coalesceWindowNanos = TimeUnit.MICROSECONDS.toNanos(options.getCoalesceWindowMicros());
+        // Coalescing needs room for a whole batch.
+        this.minSize = Math.max(options.getMinBufferSize(), Math.min(coalesceBytes, options.getMaxBufferSize()));
+        this.maxSize = options.getMaxBufferSize();
+        this.nextSize = Math.min(Math.max(SerialSession.READ_BUFFER_SIZE, minSize), maxSize);
+        allocate(nextSize);
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Blocks until bytes are read into {@link #getBuffer()} from index 0.
+     *
+     * @return the byte count
+     * @throws IOException also once the remote side closed the stream
+     */
+    public int read() throws IOException {
+        if (endOfStream) {
+            throw new IOException("Input stream was closed by remote device");
+        }
+
+        if (nextSize < maxSize) {
+            int available = transport.available();
+            if (available > nextSize) {
+                resize(available);
+            }
+        }
+        if (nextSize != size) {
+            pooled.release();
+            allocate(nextSize);
+        }
+
+        int used = transport.read(buffer, 0, size);
+        if (used < 0) {
+            throw new IOException("Input stream was closed by remote device");
+        }
+
+        int limit = Math.min(coalesceBytes, size);
+        if (used < limit) {
+            used = coalesce(used, limit);
+        }
+        adapt(used);
+        return used;
+    }
+
+    /**
+     * Reused by the next read.
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Return the buffer to the pool once the reader thread is done with it.
+     */
+    public void close() {
+        if (pooled != null) {
+            pooled.release();
+            pooled = null;
+            buffer = null;
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Settings
+    //----------------------------------------------------------------------------------------------
+
+    private void allocate(int size) {
+        this.pooled = pool.acquire(size);
+        this.buffer = pooled.array();
+        this.size = size;
+    }
+
+    private int coalesce(int used, int limit) throws IOException {
+        long deadline = System.nanoTime() + coalesceWindowNanos;
+        while (used < limit) {
+            int available = transport.available();
+            if (available > 0) {
+                int count = transport.read(buffer, used, Math.min(available, limit - used));
+                if (count < 0) {
+                    // Deliver what we have, fail on the next read.
+                    endOfStream = true;
+                    break;
+                }
+                used += count;
+                continue;
+            }
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            LockSupport.parkNanos(Math.min(remaining, POLL_NANOS));
+        }
+        return used;
+    }
+
+    private void adapt(int used) {
+        if (used >= size) {
+            smallReads = 0;
+            if (++fullReads >= GROW_AFTER_FULL_READS && size < maxSize) {
+                fullReads = 0;
+                resize(size * 2);
+            }
+            return;
+        }
+
+        fullReads = 0;
+        if (used <= size / 4 && size > minSize) {
+            if (++smallReads >= SHRINK_AFTER_SMALL_READS) {
+                smallReads = 0;
+                resize(size / 2);
+            }
+        } else {
+            smallReads = 0;
+        }
+    }
+
+    private void resize(int size) {
+        int capacity = Integer.highestOneBit(Math.max(size, 1));
+        if (capacity < size) {
+            capacity <<= 1;
+        }
+        nextSize = Math.max(minSize, Math.min(capacity, maxSize));
+    }
+}
@@ -0,0 +1,86 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import java.io.IOException;
+
+/**
+ * Bounded in-memory byte pipe, writers block while it is full and readers while it is empty.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class ByteRingPipe {
+
+    private final byte[] ring;
+    private int head;
+    private int size;
+    private boolean closed;
+
+    public ByteRingPipe(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        ring = new byte[capacity];
+    }
+
+    public synchronized int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        while (size == 0) {
+            if (closed) {
+                return -1;
+            }
+            await();
+        }
+
+        int count = Math.min(length, size);
+        int first = Math.min(count, ring.length - head);
+        System.arraycopy(ring, head, buffer, offset, first);
+        System.arraycopy(ring, 0, buffer, offset + first, count - first);
+        head = (head + count) % ring.length;
+        size -= count;
+        notifyAll();
+        return count;
+    }
+
+    public synchronized void write(byte[] buffer, int offset, int length) throws IOException {
+        while (length > 0) {
+            while (size == ring.length && !closed) {
+                await();
+            }
+            if (closed) {
+                throw new IOException("Pipe is closed");
+            }
+
+            int tail = (head + size) % ring.length;
+            int count = Math.min(length, ring.length - size);
+            int first = Math.min(count, ring.length - tail);
+            System.arraycopy(buffer, offset, ring, tail, first);
+            System.arraycopy(buffer, offset + first, ring, 0, count - first);
+            size += count;
+            offset += count;
+            length -= count;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Readers drain what is left and then see end of stream, writers fail.
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    public synchronized int available() {
+        return size;
+    }
+
+    private void await() throws IOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting on pipe");
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+/**
+ * What the reader thread does when the dispatch queue is full.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public @interface DispatchOverflowPolicy {
+    /**
+     * Wait for the listener to catch up, the remote side is slowed down by RFCOMM flow control.
+     */
+    int BLOCK = 0;
+    /**
+     * Drop the chunk just read, the reader never waits.
+     */
+    int DROP_NEWEST = 1;
+}
@@ -0,0 +1,15 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+/**
+ * Kinds of {@link IoEventLog} entries.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public @interface IoEvent {
+    int READ = 0;
+    int WRITE = 1;
+    int WRITE_FAILED = 2;
+    int ERROR = 3;
+    int STATE = 4;
+    int WRITE_PAUSED = 5;
+}
@@ -0,0 +1,122 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free ring of the last I/O events, cheap enough to stay on in production and dumped when
+ * something goes wrong. Recording claims a slot with one atomic increment and never allocates,
+ * older entries are overwritten. A dump skips entries being overwritten while it reads them.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class IoEventLog {
+
+    private static final String[] NAMES = {"READ", "WRITE", "WRITE_FAILED", "ERROR", "STATE", "WRITE_PAUSED"};
+
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicLongArray sequences;
+    private final long[] times;
+    private final int[] types;
+    private final long[] values;
+
+    /**
+     * Keeps the last {@code capacity} events, rounded up to a power of two.
+     */
+    public IoEventLog(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 20) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^20");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+
+        mask = size - 1;
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, -1);
+        }
+        times = new long[size];
+        types = new int[size];
+        values = new long[size];
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * {@code value} is the byte count of reads and writes, the new state of state changes.
+     */
+    public void record(@IoEvent int type, long value) {
+        long sequence = next.getAndIncrement();
+        int index = (int) (sequence & mask);
+
+        // Marked while writing, so a dump reading the slot at the same time can tell.
+        sequences.set(index, -2);
+        times[index] = System.nanoTime();
+        types[index] = type;
+        values[index] = value;
+        sequences.lazySet(index, sequence);
+    }
+
+    public long getRecordedCount() {
+        return next.get();
+    }
+
+    /**
+     * The kept events, oldest first, one per line with their time relative to the newest one.
+     */
+    public String dump() {
+        StringBuilder builder = new StringBuilder();
+        dump(builder);
+        return builder.toString();
+    }
+
+    public void dump(StringBuilder builder) {
+        long end = next.get();
+        long start = Math.max(0, end - mask - 1);
+        long newest = Long.MIN_VALUE;
+        int count = (int) (end - start);
+        long[] entryTimes = new long[count];
+        int[] entryTypes = new int[count];
+        long[] entryValues = new long[count];
+        boolean[] valid = new boolean[count];
+
+        for (long sequence = start; sequence < end; sequence++) {
+            int index = (int) (sequence & mask);
+            int i = (int) (sequence - start);
+            if (sequences.get(index) != sequence) {
+                continue;
+            }
+            entryTimes[i] = times[index];
+            entryTypes[i] = types[index];
+            entryValues[i] = values[index];
+            valid[i] = sequences.get(index) == sequence;
+            if (valid[i]) {
+                newest = Math.max(newest, entryTimes[i]);
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (!valid[i]) {
+                continue;
+            }
+            long ageMicros = TimeUnit.NANOSECONDS.toMicros(newest - entryTimes[i]);
+            int type = entryTypes[i];
+            builder.append('#').append(start + i)
+                    .append(" -").append(ageMicros).append("us ")
+                    .append(type >= 0 && type < NAMES.length ? NAMES[type] : String.valueOf(type))
+                    .append(' ').append(entryValues[i]).append('\n');
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i <= mask; i++) {
+            sequences.set(i, -1);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import java.io.IOException;
+
+/**
+ * In-memory transport for running the serial data path without a radio.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class LoopbackTransport implements SerialTransport {
+
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private final String name;
+    private final ByteRingPipe inbound;
+    private final ByteRingPipe outbound;
+
+    public LoopbackTransport(String name, ByteRingPipe inbound, ByteRingPipe outbound) {
+        this.name = name;
+        this.inbound = inbound;
+        this.outbound = outbound;
+    }
+
+    /**
+     * Everything written is read back, like a serial adapter with TX wired to RX.
+     */
+    public static LoopbackTransport echo(int capacity) {
+        ByteRingPipe pipe = new ByteRingPipe(capacity);
+        return new LoopbackTransport("loopback", pipe, pipe);
+    }
+
+    /**
+     * Two connected ends, index 0 is the host and index 1 plays the remote device.
+     */
+    public static LoopbackTransport[] pair(int capacity) {
+        ByteRingPipe hostToDevice = new ByteRingPipe(capacity);
+        ByteRingPipe deviceToHost = new ByteRingPipe(capacity);
+        return new LoopbackTransport[]{
+                new LoopbackTransport("loopback-host", deviceToHost, hostToDevice),
+                new LoopbackTransport("loopback-device", hostToDevice, deviceToHost)
+        };
+    }
+
+    @Override
+    public void connect() throws IOException {
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        return inbound.read(buffer, offset, length);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return inbound.available();
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        outbound.write(buffer, offset, length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+    }
+
+    @Override
+    public void close() throws IOException {
+        inbound.close();
+        outbound.close();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,54 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Daemon threads named {@code name-1}, {@code name-2}, ... with the given priority, optionally
+ * counted by a {@link ThreadCounter} from start to exit.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class NamedThreadFactory implements ThreadFactory {
+
+    private final String name;
+    private final int priority;
+    private final ThreadCounter counter;
+    private final AtomicInteger count = new AtomicInteger();
+
+    public NamedThreadFactory(String name) {
+        this(name, Thread.NORM_PRIORITY, null);
+    }
+
+    public NamedThreadFactory(String name, int priority, ThreadCounter counter) {
+        this.name = name;
+        this.priority = priority;
+        this.counter = counter;
+    }
+
+    @Override
+    public Thread newThread(final Runnable runnable) {
+        if (counter == null) {
+            return configure(new Thread(runnable, name + "-" + count.incrementAndGet()));
+        }
+
+        Thread thread = configure(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runnable.run();
+                } finally {
+                    counter.exited(Thread.currentThread());
+                }
+            }
+        }, name + "-" + count.incrementAndGet()));
+        counter.created(thread);
+        return thread;
+    }
+
+    private Thread configure(Thread thread) {
+        thread.setDaemon(true);
+        thread.setPriority(priority);
+        return thread;
+    }
+}
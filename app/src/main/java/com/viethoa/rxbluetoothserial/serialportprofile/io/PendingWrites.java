@@ -0,0 +1,156 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import com.viethoa.rxbluetoothserial.serialportprofile.buffer.PooledBuffer;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Writes held back while the connection is down, replayed in order on the next session. Writes
+ * that come in after the replay go straight to that session, so none can slip in between.
+ * Pooled buffers stay referenced until written, or are released when the writes fail.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class PendingWrites {
+
+    private final int capacity;
+    private final Queue<Pending> writes = new ArrayDeque<>();
+    private SerialSession target;
+
+    public PendingWrites(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public synchronized WriteFuture add(byte[] data, int offset, int length) {
+        if (target != null) {
+            return target.write(data, offset, length);
+        }
+        if (writes.size() >= capacity) {
+            return WriteFuture.failed(new IOException("Too many writes while reconnecting"));
+        }
+        Pending pending = new Pending(data, offset, length, null);
+        writes.add(pending);
+        return pending.future;
+    }
+
+    /**
+     * Takes over the caller's reference to {@code buffer}.
+     */
+    public synchronized WriteFuture add(PooledBuffer buffer) {
+        if (target != null) {
+            return target.write(buffer);
+        }
+        if (writes.size() >= capacity) {
+            buffer.release();
+            return WriteFuture.failed(new IOException("Too many writes while reconnecting"));
+        }
+        Pending pending = new Pending(buffer.array(), 0, buffer.length(), buffer);
+        writes.add(pending);
+        return pending.future;
+    }
+
+    /**
+     * Held sources are only read once replayed, so the whole payload goes to one session.
+     */
+    public synchronized WriteFuture add(SerialWriteSource source, int chunkSize, WriteProgressListener progress) {
+        if (target != null) {
+            return target.write(source, chunkSize, progress);
+        }
+        if (writes.size() >= capacity) {
+            closeQuietly(source);
+            return WriteFuture.failed(new IOException("Too many writes while reconnecting"));
+        }
+        Pending pending = new Pending(source, chunkSize, progress);
+        writes.add(pending);
+        return pending.future;
+    }
+
+    /**
+     * Hold writes again, the connection dropped.
+     */
+    public synchronized void hold() {
+        target = null;
+    }
+
+    public synchronized void replay(SerialSession session) {
+        Pending pending;
+        while ((pending = writes.poll()) != null) {
+            final WriteFuture future = pending.future;
+            WriteFuture written;
+            if (pending.source != null) {
+                written = session.write(pending.source, pending.chunkSize, pending.progress);
+            } else if (pending.pooled != null) {
+                written = session.write(pending.pooled);
+            } else {
+                written = session.write(pending.data, pending.offset, pending.length);
+            }
+            written.setCallback(new WriteCallback() {
+                @Override
+                public void onWriteComplete() {
+                    future.complete();
+                }
+
+                @Override
+                public void onWriteFailed(Throwable error) {
+                    future.fail(error);
+                }
+            });
+        }
+        target = session;
+    }
+
+    public synchronized void failAll(Throwable error) {
+        target = null;
+        Pending pending;
+        while ((pending = writes.poll()) != null) {
+            if (pending.pooled != null) {
+                pending.pooled.release();
+            }
+            if (pending.source != null) {
+                closeQuietly(pending.source);
+            }
+            pending.future.fail(error);
+        }
+    }
+
+    private static void closeQuietly(SerialWriteSource source) {
+        try {
+            source.close();
+        } catch (IOException e) {
+            // Never read, nothing to lose.
+        }
+    }
+
+    private static final class Pending {
+        final byte[] data;
+        final int offset;
+        final int length;
+        final PooledBuffer pooled;
+        final SerialWriteSource source;
+        final int chunkSize;
+        final WriteProgressListener progress;
+        final WriteFuture future = new WriteFuture();
+
+        Pending(byte[] data, int offset, int length, PooledBuffer pooled) {
+            this.data = data;
+            this.offset = offset;
+            this.length = length;
+            this.pooled = pooled;
+            this.source = null;
+            this.chunkSize = 0;
+            this.progress = null;
+        }
+
+        Pending(SerialWriteSource source, int chunkSize, WriteProgressListener progress) {
+            this.data = null;
+            this.offset = 0;
+            this.length = 0;
+            this.pooled = null;
+            this.source = source;
+            this.chunkSize = chunkSize;
+            this.progress = progress;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reconnect attempts and breaker state of one connection, following a {@link ReconnectPolicy}.
+ * Not thread safe, the owner serializes the calls.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class ReconnectBackoff {
+
+    private final ReconnectPolicy policy;
+    private final Random random = new Random();
+
+    private int attempts;
+    private int failedCycles;
+    private long openUntilNanos;
+    private boolean open;
+
+    public ReconnectBackoff(ReconnectPolicy policy) {
+        this.policy = policy;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Delay before the next attempt of this cycle, or -1 once the cycle ran out of attempts.
+     */
+    public long nextDelayMillis() {
+        if (policy.getMaxAttempts() > 0 && attempts >= policy.getMaxAttempts()) {
+            return -1;
+        }
+
+        double delay = policy.getInitialDelayMillis() * Math.pow(policy.getMultiplier(), attempts);
+        delay = Math.min(delay, policy.getMaxDelayMillis());
+        delay += delay * policy.getJitter() * (2 * random.nextDouble() - 1);
+        attempts++;
+        return Math.max(0, (long) delay);
+    }
+
+    /**
+     * False while the breaker is open.
+     */
+    public boolean allowReconnect() {
+        return !open || System.nanoTime() - openUntilNanos >= 0;
+    }
+
+    public void onConnected() {
+        attempts = 0;
+        failedCycles = 0;
+        open = false;
+    }
+
+    /**
+     * A cycle ran out of attempts, enough of them in a row open the breaker.
+     */
+    public void onCycleFailed() {
+        attempts = 0;
+        failedCycles++;
+        if (policy.getBreakerThreshold() > 0 && failedCycles >= policy.getBreakerThreshold()) {
+            open = true;
+            openUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(policy.getBreakerCooldownMillis());
+        }
+    }
+
+    /**
+     * Manual connect, starts over with a closed breaker.
+     */
+    public void reset() {
+        onConnected();
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public ReconnectPolicy getPolicy() {
+        return policy;
+    }
+}
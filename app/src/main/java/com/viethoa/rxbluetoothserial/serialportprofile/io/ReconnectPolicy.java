@@ -0,0 +1,128 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+/**
+ * How a dropped connection is re-established: exponential backoff with jitter for a number of
+ * attempts, and a circuit breaker that stops automatic reconnects for a while once too many
+ * reconnect cycles in a row have failed.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class ReconnectPolicy {
+
+    private long initialDelayMillis = 500;
+    private long maxDelayMillis = 30000;
+    private double multiplier = 2;
+    private double jitter = 0.2;
+    private int maxAttempts = 8;
+    private int breakerThreshold = 3;
+    private long breakerCooldownMillis = 5 * 60 * 1000;
+    private boolean replayQueuedWrites;
+
+    public ReconnectPolicy setInitialDelayMillis(long initialDelayMillis) {
+        if (initialDelayMillis < 0) {
+            throw new IllegalArgumentException("initialDelayMillis must not be negative: " + initialDelayMillis);
+        }
+        this.initialDelayMillis = initialDelayMillis;
+        return this;
+    }
+
+    public ReconnectPolicy setMaxDelayMillis(long maxDelayMillis) {
+        if (maxDelayMillis < 0) {
+            throw new IllegalArgumentException("maxDelayMillis must not be negative: " + maxDelayMillis);
+        }
+        this.maxDelayMillis = maxDelayMillis;
+        return this;
+    }
+
+    public ReconnectPolicy setMultiplier(double multiplier) {
+        if (multiplier < 1) {
+            throw new IllegalArgumentException("multiplier must be at least 1: " + multiplier);
+        }
+        this.multiplier = multiplier;
+        return this;
+    }
+
+    /**
+     * Every delay is spread randomly by up to this fraction of itself, 0 to 1.
+     */
+    public ReconnectPolicy setJitter(double jitter) {
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("jitter must be between 0 and 1: " + jitter);
+        }
+        this.jitter = jitter;
+        return this;
+    }
+
+    /**
+     * Attempts of one reconnect cycle, 0 keeps trying forever.
+     */
+    public ReconnectPolicy setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 0) {
+            throw new IllegalArgumentException("maxAttempts must not be negative: " + maxAttempts);
+        }
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * Failed reconnect cycles in a row that open the breaker, 0 never opens it.
+     */
+    public ReconnectPolicy setBreakerThreshold(int breakerThreshold) {
+        if (breakerThreshold < 0) {
+            throw new IllegalArgumentException("breakerThreshold must not be negative: " + breakerThreshold);
+        }
+        this.breakerThreshold = breakerThreshold;
+        return this;
+    }
+
+    /**
+     * How long an open breaker suppresses automatic reconnects, a manual connect always goes through.
+     */
+    public ReconnectPolicy setBreakerCooldownMillis(long breakerCooldownMillis) {
+        if (breakerCooldownMillis < 0) {
+            throw new IllegalArgumentException("breakerCooldownMillis must not be negative: " + breakerCooldownMillis);
+        }
+        this.breakerCooldownMillis = breakerCooldownMillis;
+        return this;
+    }
+
+    /**
+     * Writes made while reconnecting are kept and sent once the connection is back.
+     */
+    public ReconnectPolicy setReplayQueuedWrites(boolean replayQueuedWrites) {
+        this.replayQueuedWrites = replayQueuedWrites;
+        return this;
+    }
+
+    public long getInitialDelayMillis() {
+        return initialDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public int getBreakerThreshold() {
+        return breakerThreshold;
+    }
+
+    public long getBreakerCooldownMillis() {
+        return breakerCooldownMillis;
+    }
+
+    public boolean isReplayQueuedWrites() {
+        return replayQueuedWrites;
+    }
+}
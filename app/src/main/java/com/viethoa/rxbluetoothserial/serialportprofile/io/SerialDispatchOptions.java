@@ -0,0 +1,71 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public class SerialDispatchOptions {
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private int capacity = DEFAULT_CAPACITY;
+    private int chunkSize = SerialSession.READ_BUFFER_SIZE;
+    @DispatchOverflowPolicy
+    private int overflowPolicy = DispatchOverflowPolicy.BLOCK;
+    private int coalesceBytes;
+
+    /**
+     * Chunks read but not yet delivered, rounded up to a power of two.
+     */
+    public SerialDispatchOptions setCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        return this;
+    }
+
+    /**
+     * Size of each preallocated queue slot, larger reads take several slots.
+     */
+    public SerialDispatchOptions setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    public SerialDispatchOptions setOverflowPolicy(@DispatchOverflowPolicy int overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+        return this;
+    }
+
+    /**
+     * Chunks that queued up while the listener was busy are delivered as one of at most this many
+     * bytes, 0 delivers every chunk on its own.
+     */
+    public SerialDispatchOptions setCoalesceBytes(int coalesceBytes) {
+        if (coalesceBytes < 0) {
+            throw new IllegalArgumentException("coalesceBytes must not be negative: " + coalesceBytes);
+        }
+        this.coalesceBytes = coalesceBytes;
+        return this;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    @DispatchOverflowPolicy
+    public int getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public int getCoalesceBytes() {
+        return coalesceBytes;
+    }
+}
@@ -0,0 +1,243 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands data read by the reader thread to the listener on an executor, so a slow listener never
+ * holds up the socket. Reads go through a bounded single producer, single consumer ring of
+ * preallocated slots; other events such as state changes are posted as tasks and run in order
+ * with the reads around them. One drain task runs at a time, so the listener is never called
+ * concurrently, whatever the executor.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class SerialDispatcher {
+
+    /**
+     * Runs tasks on the calling thread, i.e. no dispatcher at all.
+     */
+    public static final Executor INLINE = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static final long BLOCK_PARK_NANOS = 50000;
+
+    private final Executor executor;
+    private final SerialDispatcherListener listener;
+    @DispatchOverflowPolicy
+    private final int overflowPolicy;
+    private final int chunkSize;
+    private final int mask;
+    private final byte[][] slots;
+    private final int[] lengths;
+    private final byte[] coalesceBuffer;
+
+    // Read index, written by the drain task only.
+    private final AtomicLong head = new AtomicLong();
+    // Write index, written by the reader thread only.
+    private final AtomicLong tail = new AtomicLong();
+    private final Queue<Task> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong droppedBytes = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public SerialDispatcher(Executor executor, SerialDispatchOptions options, SerialDispatcherListener listener) {
+        this.executor = executor;
+        this.listener = listener;
+        this.overflowPolicy = options.getOverflowPolicy();
+        this.chunkSize = options.getChunkSize();
+
+        int capacity = Integer.highestOneBit(options.getCapacity());
+        if (capacity < options.getCapacity()) {
+            capacity <<= 1;
+        }
+        this.mask = capacity - 1;
+        this.slots = new byte[capacity][chunkSize];
+        this.lengths = new int[capacity];
+        this.coalesceBuffer = options.getCoalesceBytes() > chunkSize ? new byte[options.getCoalesceBytes()] : null;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Copy a chunk into the queue. Only ever called by one reader thread at a time.
+     */
+    public void dispatchRead(byte[] buffer, int offset, int length) {
+        while (length > 0) {
+            int count = Math.min(length, chunkSize);
+            long index = tail.get();
+            while (index - head.get() > mask) {
+                if (overflowPolicy == DispatchOverflowPolicy.DROP_NEWEST || Thread.currentThread().isInterrupted()) {
+                    dropped.incrementAndGet();
+                    droppedBytes.addAndGet(length);
+                    return;
+                }
+                schedule();
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            }
+
+            int slot = (int) (index & mask);
+            System.arraycopy(buffer, offset, slots[slot], 0, count);
+            lengths[slot] = count;
+            tail.lazySet(index + 1);
+
+            offset += count;
+            length -= count;
+        }
+        schedule();
+    }
+
+    /**
+     * Run {@code task} on the executor after every read dispatched before it. Any thread.
+     */
+    public void post(Runnable task) {
+        tasks.add(new Task(task, tail.get()));
+        schedule();
+    }
+
+    public int getDepth() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * Listener calls with read data, fewer than the chunks read when coalescing.
+     */
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /**
+     * Reads dropped on overflow, or because the executor was shut down.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getDroppedBytes() {
+        return droppedBytes.get();
+    }
+
+    /**
+     * Chunks merged into the delivery before them.
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Drain task
+    //----------------------------------------------------------------------------------------------
+
+    private void schedule() {
+        if (!scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(drainTask);
+        } catch (RejectedExecutionException e) {
+            // Nothing will ever drain the queue, so what is in it counts as dropped.
+            discard();
+            scheduled.set(false);
+        }
+    }
+
+    /**
+     * In place of the drain task, while holding {@link #scheduled}.
+     */
+    private void discard() {
+        tasks.clear();
+        long index = head.get();
+        long end = tail.get();
+        if (index == end) {
+            return;
+        }
+        long bytes = 0;
+        for (long i = index; i < end; i++) {
+            bytes += lengths[(int) (i & mask)];
+        }
+        dropped.addAndGet(end - index);
+        droppedBytes.addAndGet(bytes);
+        head.lazySet(end);
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                Task task = tasks.peek();
+                long end = task != null ? Math.max(task.mark, head.get()) : tail.get();
+                deliverReads(end);
+
+                if (task != null) {
+                    tasks.poll();
+                    task.runnable.run();
+                } else if (head.get() == tail.get()) {
+                    break;
+                }
+            }
+        } finally {
+            scheduled.set(false);
+            if (!tasks.isEmpty() || head.get() != tail.get()) {
+                schedule();
+            }
+        }
+    }
+
+    private void deliverReads(long end) {
+        long index = head.get();
+        while (index < end) {
+            int slot = (int) (index & mask);
+            int length = lengths[slot];
+            if (coalesceBuffer == null || index + 1 == end
+                    || length + lengths[(int) ((index + 1) & mask)] > coalesceBuffer.length) {
+                listener.onDispatchRead(slots[slot], 0, length);
+                head.lazySet(++index);
+                delivered.incrementAndGet();
+                continue;
+            }
+
+            int used = 0;
+            while (index < end && used + lengths[(int) (index & mask)] <= coalesceBuffer.length) {
+                slot = (int) (index & mask);
+                System.arraycopy(slots[slot], 0, coalesceBuffer, used, lengths[slot]);
+                used += lengths[slot];
+                index++;
+                coalesced.incrementAndGet();
+            }
+            // Every merged slot but the first one saved a listener call.
+            coalesced.decrementAndGet();
+            head.lazySet(index);
+            listener.onDispatchRead(coalesceBuffer, 0, used);
+            delivered.incrementAndGet();
+        }
+    }
+
+    private static final class Task {
+        final Runnable runnable;
+        final long mark;
+
+        Task(Runnable runnable, long mark) {
+            this.runnable = runnable;
+            this.mark = mark;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public interface SerialDispatcherListener {
+
+    /**
+     * Called on the dispatch executor, the buffer is reused once this returns.
+     */
+    void onDispatchRead(byte[] buffer, int offset, int length);
+}
@@ -0,0 +1,205 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Threads shared by many serial sessions. Blocking reads need a thread per open session, so the
+ * reader pool is capped at the max session count, while connects, writes and listener dispatch
+ * share small pools. Idle threads exit after the keep-alive and are made again when needed, so a
+ * reconnect picks up a waiting thread instead of starting one.
+ * <p>
+ * Sessions without a runtime of their own use {@link #shared()}.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class SerialIoRuntime {
+
+    private static SerialIoRuntime shared;
+
+    private final ThreadCounter threads = new ThreadCounter();
+    private final ThreadPoolExecutor connectExecutor;
+    private final ThreadPoolExecutor readExecutor;
+    private final ThreadPoolExecutor writeExecutor;
+    private final ThreadPoolExecutor dispatchExecutor;
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    public SerialIoRuntime(String name, int maxSessions, int connectThreads, int writeThreads) {
+        this(name, new SerialIoRuntimeOptions()
+                .setMaxSessions(maxSessions)
+                .setConnectThreads(connectThreads)
+                .setWriteThreads(writeThreads));
+    }
+
+    public SerialIoRuntime(String name, SerialIoRuntimeOptions options) {
+        long keepAlive = options.getKeepAliveNanos();
+        connectExecutor = createPool(options.getConnectThreads(), keepAlive,
+                new NamedThreadFactory(name + "-Connect", options.getConnectPriority(), threads));
+        readExecutor = new ThreadPoolExecutor(0, options.getMaxSessions(), keepAlive, TimeUnit.NANOSECONDS,
+                new SynchronousQueue<Runnable>(),
+                new NamedThreadFactory(name + "-Reader", options.getReadPriority(), threads));
+        writeExecutor = createPool(options.getWriteThreads(), keepAlive,
+                new NamedThreadFactory(name + "-Writer", options.getWritePriority(), threads));
+        dispatchExecutor = createPool(options.getDispatchThreads(), keepAlive,
+                new NamedThreadFactory(name + "-Dispatch", options.getDispatchPriority(), threads));
+        scheduler = createScheduler(keepAlive,
+                new NamedThreadFactory(name + "-Timer", options.getWritePriority(), threads));
+        // Pending reconnects and write pacing are pointless once shut down.
+        scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * The runtime of sessions and services created without one. Unrelated sessions must not wait
+     * on each other's blocking writes or slow listeners, so it has a connect, writer and dispatch
+     * thread per session. They exit while idle, it is never shut down.
+     */
+    public static synchronized SerialIoRuntime shared() {
+        if (shared == null) {
+            int sessions = SerialIoRuntimeOptions.DEFAULT_MAX_SESSIONS;
+            shared = new SerialIoRuntime("SerialIo", new SerialIoRuntimeOptions()
+                    .setMaxSessions(sessions)
+                    .setConnectThreads(sessions)
+                    .setWriteThreads(sessions)
+                    .setDispatchThreads(sessions));
+        }
+        return shared;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Connect attempts queue up here, one blocking connect per thread.
+     */
+    public Executor getConnectExecutor() {
+        return connectExecutor;
+    }
+
+    /**
+     * One long running read loop per session, rejects sessions past the max session count.
+     */
+    public Executor getReadExecutor() {
+        return readExecutor;
+    }
+
+    /**
+     * Writers of all sessions drain their queues here.
+     */
+    public Executor getWriteExecutor() {
+        return writeExecutor;
+    }
+
+    /**
+     * For {@link SerialDispatcher}, listener callbacks of all sessions run here.
+     */
+    public Executor getDispatchExecutor() {
+        return dispatchExecutor;
+    }
+
+    /**
+     * Delayed work such as reconnect attempts, keep tasks short.
+     */
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Threads of all pools alive right now.
+     */
+    public int getThreadCount() {
+        return threads.getLiveCount();
+    }
+
+    public int getPeakThreadCount() {
+        return threads.getPeakCount();
+    }
+
+    /**
+     * Threads started since the runtime was made, growing faster than sessions come and go means
+     * the keep-alive is too short.
+     */
+    public long getCreatedThreadCount() {
+        return threads.getCreatedCount();
+    }
+
+    /**
+     * Stop taking work. Queued connects and writes still run and read loops end with their
+     * sessions, so close the sessions first; {@link #awaitTermination} waits for it all.
+     */
+    public void shutdown() {
+        checkNotShared();
+        connectExecutor.shutdown();
+        readExecutor.shutdown();
+        writeExecutor.shutdown();
+        dispatchExecutor.shutdown();
+        scheduler.shutdown();
+    }
+
+    /**
+     * Stop taking work and interrupt the running tasks, queued ones are dropped.
+     */
+    public void shutdownNow() {
+        checkNotShared();
+        connectExecutor.shutdownNow();
+        readExecutor.shutdownNow();
+        writeExecutor.shutdownNow();
+        dispatchExecutor.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    public boolean isShutdown() {
+        return connectExecutor.isShutdown();
+    }
+
+    /**
+     * After {@link #shutdown()}, wait for the tasks to finish and join every thread.
+     *
+     * @return false when some are still running after {@code timeout}
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        ExecutorService[] pools = {connectExecutor, readExecutor, writeExecutor, dispatchExecutor, scheduler};
+        for (ExecutorService pool : pools) {
+            if (!pool.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return threads.join(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Settings
+    //----------------------------------------------------------------------------------------------
+
+    private void checkNotShared() {
+        synchronized (SerialIoRuntime.class) {
+            if (this == shared) {
+                throw new IllegalStateException("The shared runtime can't be shut down");
+            }
+        }
+    }
+
+    private static ThreadPoolExecutor createPool(int threads, long keepAliveNanos, NamedThreadFactory factory) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, keepAliveNanos, TimeUnit.NANOSECONDS,
+                new LinkedBlockingQueue<Runnable>(), factory);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Single timer thread that goes away while idle.
+     */
+    private static ScheduledThreadPoolExecutor createScheduler(long keepAliveNanos, NamedThreadFactory factory) {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, factory);
+        scheduler.setKeepAliveTime(keepAliveNanos, TimeUnit.NANOSECONDS);
+        scheduler.allowCoreThreadTimeOut(true);
+        return scheduler;
+    }
+}
@@ -0,0 +1,128 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public class SerialIoRuntimeOptions {
+
+    public static final int DEFAULT_MAX_SESSIONS = 16;
+    public static final int DEFAULT_CONNECT_THREADS = 1;
+    public static final int DEFAULT_WRITE_THREADS = 2;
+    public static final int DEFAULT_DISPATCH_THREADS = 1;
+    public static final long DEFAULT_KEEP_ALIVE_SECONDS = 30;
+
+    private int maxSessions = DEFAULT_MAX_SESSIONS;
+    private int connectThreads = DEFAULT_CONNECT_THREADS;
+    private int writeThreads = DEFAULT_WRITE_THREADS;
+    private int dispatchThreads = DEFAULT_DISPATCH_THREADS;
+    private int connectPriority = Thread.NORM_PRIORITY;
+    private int readPriority = Thread.NORM_PRIORITY;
+    private int writePriority = Thread.NORM_PRIORITY;
+    private int dispatchPriority = Thread.NORM_PRIORITY;
+    private long keepAliveNanos = TimeUnit.SECONDS.toNanos(DEFAULT_KEEP_ALIVE_SECONDS);
+
+    /**
+     * Sessions open at the same time, each one holds a reader thread.
+     */
+    public SerialIoRuntimeOptions setMaxSessions(int maxSessions) {
+        this.maxSessions = checkCount("maxSessions", maxSessions);
+        return this;
+    }
+
+    /**
+     * Connects running at the same time, the others wait their turn.
+     */
+    public SerialIoRuntimeOptions setConnectThreads(int connectThreads) {
+        this.connectThreads = checkCount("connectThreads", connectThreads);
+        return this;
+    }
+
+    public SerialIoRuntimeOptions setWriteThreads(int writeThreads) {
+        this.writeThreads = checkCount("writeThreads", writeThreads);
+        return this;
+    }
+
+    /**
+     * Threads behind {@link SerialIoRuntime#getDispatchExecutor()}.
+     */
+    public SerialIoRuntimeOptions setDispatchThreads(int dispatchThreads) {
+        this.dispatchThreads = checkCount("dispatchThreads", dispatchThreads);
+        return this;
+    }
+
+    /**
+     * {@link Thread} priorities, e.g. a higher read priority to pick up bytes sooner while the
+     * app is busy. The timer runs at the write priority, it paces the writes.
+     */
+    public SerialIoRuntimeOptions setPriorities(int connectPriority, int readPriority, int writePriority,
+                                                int dispatchPriority) {
+        this.connectPriority = checkPriority(connectPriority);
+        this.readPriority = checkPriority(readPriority);
+        this.writePriority = checkPriority(writePriority);
+        this.dispatchPriority = checkPriority(dispatchPriority);
+        return this;
+    }
+
+    /**
+     * How long an idle thread waits for work before it exits.
+     */
+    public SerialIoRuntimeOptions setKeepAlive(long keepAlive, TimeUnit unit) {
+        if (keepAlive <= 0) {
+            throw new IllegalArgumentException("keepAlive must be positive: " + keepAlive);
+        }
+        this.keepAliveNanos = unit.toNanos(keepAlive);
+        return this;
+    }
+
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    public int getConnectThreads() {
+        return connectThreads;
+    }
+
+    public int getWriteThreads() {
+        return writeThreads;
+    }
+
+    public int getDispatchThreads() {
+        return dispatchThreads;
+    }
+
+    public int getConnectPriority() {
+        return connectPriority;
+    }
+
+    public int getReadPriority() {
+        return readPriority;
+    }
+
+    public int getWritePriority() {
+        return writePriority;
+    }
+
+    public int getDispatchPriority() {
+        return dispatchPriority;
+    }
+
+    public long getKeepAliveNanos() {
+        return keepAliveNanos;
+    }
+
+    private static int checkCount(String name, int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException(name + " must be positive: " + count);
+        }
+        return count;
+    }
+
+    private static int checkPriority(int priority) {
+        if (priority < Thread.MIN_PRIORITY || priority > Thread.MAX_PRIORITY) {
+            throw new IllegalArgumentException("Invalid thread priority: " + priority);
+        }
+        return priority;
+    }
+}
@@ -0,0 +1,57 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public class SerialReadOptions {
+
+    public static final int DEFAULT_MIN_BUFFER_SIZE = 128;
+    public static final int DEFAULT_MAX_BUFFER_SIZE = 16 * 1024;
+
+    private int minBufferSize = DEFAULT_MIN_BUFFER_SIZE;
+    private int maxBufferSize = DEFAULT_MAX_BUFFER_SIZE;
+    private int coalesceBytes;
+    private long coalesceWindowMicros;
+
+    /**
+     * The read buffer starts at {@link SerialSession#READ_BUFFER_SIZE} and grows or shrinks within
+     * these bounds with the reads seen, equal bounds keep it fixed.
+     */
+    public SerialReadOptions setBufferSize(int minBufferSize, int maxBufferSize) {
+        if (minBufferSize <= 0 || maxBufferSize < minBufferSize) {
+            throw new IllegalArgumentException("Invalid buffer sizes: " + minBufferSize + ", " + maxBufferSize);
+        }
+        this.minBufferSize = minBufferSize;
+        this.maxBufferSize = maxBufferSize;
+        return this;
+    }
+
+    /**
+     * Reads smaller than {@code coalesceBytes} wait up to {@code windowMicros} for more bytes and
+     * are delivered together, trading latency for fewer callbacks. 0 bytes turns it off (default).
+     */
+    public SerialReadOptions setCoalescing(int coalesceBytes, long windowMicros) {
+        if (coalesceBytes < 0 || windowMicros < 0) {
+            throw new IllegalArgumentException("Invalid coalescing: " + coalesceBytes + ", " + windowMicros);
+        }
+        this.coalesceBytes = coalesceBytes;
+        this.coalesceWindowMicros = windowMicros;
+        return this;
+    }
+
+    public int getMinBufferSize() {
+        return minBufferSize;
+    }
+
+    public int getMaxBufferSize() {
+        return maxBufferSize;
+    }
+
+    public int getCoalesceBytes() {
+        return coalesceBytes;
+    }
+
+    public long getCoalesceWindowMicros() {
+        return coalesceWindowMicros;
+    }
+}
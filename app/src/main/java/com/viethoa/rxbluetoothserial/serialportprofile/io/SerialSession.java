@@ -0,0 +1,201 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import com.viethoa.rxbluetoothserial.serialportprofile.buffer.PooledBuffer;
+import com.viethoa.rxbluetoothserial.serialportprofile.metrics.SerialMetrics;
+
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One connected transport with its read loop and {@link SerialWriter}. Runs on the threads of a
+ * {@link SerialIoRuntime}, {@link SerialIoRuntime#shared()} unless given one. Knows
+ * nothing about Android, so the whole data path runs on a plain JVM on top of a loopback or TCP
+ * transport.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class SerialSession implements SerialWriterListener {
+
+    public static final int READ_BUFFER_SIZE = 1024;
+
+    private final SerialTransport transport;
+    private final SerialWriter writer;
+    private final SerialSessionListener listener;
+    private final SerialIoRuntime runtime;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private SerialMetrics metrics;
+    private IoEventLog eventLog;
+    private SerialReadOptions readOptions = new SerialReadOptions();
+
+    public SerialSession(SerialTransport transport, SerialWriteOptions writeOptions, SerialSessionListener listener) {
+        this(transport, writeOptions, listener, null);
+    }
+
+    public SerialSession(SerialTransport transport, SerialWriteOptions writeOptions, SerialSessionListener listener,
+                         SerialIoRuntime runtime) {
+        this.transport = transport;
+        this.listener = listener;
+        this.runtime = runtime != null ? runtime : SerialIoRuntime.shared();
+        this.writer = new SerialWriter(transport, writeOptions, this);
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Set before {@link #start(String)}.
+     */
+    public void setReadOptions(SerialReadOptions readOptions) {
+        this.readOptions = readOptions != null ? readOptions : new SerialReadOptions();
+    }
+
+    /**
+     * Set before {@link #start(String)}, null to record nothing.
+     */
+    public void setMetrics(SerialMetrics metrics) {
+        this.metrics = metrics;
+        writer.setMetrics(metrics);
+    }
+
+    /**
+     * Set before {@link #start(String)}, null to record nothing.
+     */
+    public void setEventLog(IoEventLog eventLog) {
+        this.eventLog = eventLog;
+        writer.setEventLog(eventLog);
+    }
+
+    /**
+     * Start reading and writing on the runtime's pools, {@code name} tells sessions apart in errors.
+     */
+    public void start(String name) {
+        Runnable readTask = new Runnable() {
+            @Override
+            public void run() {
+                readLoop();
+            }
+        };
+
+        writer.start(runtime.getWriteExecutor(), runtime.getScheduler());
+        try {
+            runtime.getReadExecutor().execute(readTask);
+        } catch (RejectedExecutionException e) {
+            fail(new IOException("No reader thread left for " + name + " on " + transport.getName()));
+        }
+    }
+
+    /**
+     * Queue bytes for the writer thread, the array must not be changed until the future is done.
+     */
+    public WriteFuture write(byte[] data, int offset, int length) {
+        return writer.write(data, offset, length);
+    }
+
+    /**
+     * Queue a pooled buffer, released by the writer once written or failed.
+     */
+    public WriteFuture write(PooledBuffer buffer) {
+        return writer.write(buffer);
+    }
+
+    /**
+     * Queue a write pulled from {@code source} in chunks, see
+     * {@link SerialWriter#write(SerialWriteSource, int, WriteProgressListener)}.
+     */
+    public WriteFuture write(SerialWriteSource source, int chunkSize, WriteProgressListener progress) {
+        return writer.write(source, chunkSize, progress);
+    }
+
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            shutdown();
+        }
+    }
+
+    public boolean isOpen() {
+        return !closed.get();
+    }
+
+    public SerialTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * The remote device took {@code frames} more frames, see
+     * {@link SerialWriteOptions#setAckWindow(int)}.
+     */
+    public void acknowledge(int frames) {
+        writer.acknowledge(frames);
+    }
+
+    public int getWriteQueueDepth() {
+        return writer.getQueueDepth();
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Reader thread
+    //----------------------------------------------------------------------------------------------
+
+    private void readLoop() {
+        AdaptiveReader reader = new AdaptiveReader(transport, readOptions);
+        int bytes;
+
+        try {
+            while (!closed.get()) {
+                try {
+                    bytes = reader.read();
+                    bytes = writer.filterXonXoff(reader.getBuffer(), 0, bytes);
+                    if (bytes > 0) {
+                        if (metrics != null) {
+                            metrics.onRead(bytes);
+                        }
+                        if (eventLog != null) {
+                            eventLog.record(IoEvent.READ, bytes);
+                        }
+                        listener.onDataRead(reader.getBuffer(), 0, bytes);
+                    }
+                } catch (IOException e) {
+                    fail(e);
+                    return;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void fail(IOException e) {
+        if (closed.compareAndSet(false, true)) {
+            if (eventLog != null) {
+                eventLog.record(IoEvent.ERROR, 0);
+            }
+            shutdown();
+            listener.onSessionError(e);
+        }
+    }
+
+    private void shutdown() {
+        writer.stop();
+        try {
+            transport.close();
+        } catch (IOException e) {
+            // Already closed.
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Writer listener
+    //----------------------------------------------------------------------------------------------
+
+    @Override
+    public void onDataWritten(byte[] buffer, int offset, int length) {
+        listener.onDataWritten(buffer, offset, length);
+    }
+
+    @Override
+    public void onWriteError(IOException e) {
+        fail(e);
+    }
+}
@@ -0,0 +1,26 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import java.io.IOException;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+
+public interface SerialSessionListener {
+
+    /**
+     * Bytes read on the reader thread, valid from {@code offset} for {@code length} bytes.
+     * The buffer is reused by the reader so copy what you need before returning.
+     */
+    void onDataRead(byte[] buffer, int offset, int length);
+
+    /**
+     * Bytes handed to the transport on the writer thread.
+     */
+    void onDataWritten(byte[] buffer, int offset, int length);
+
+    /**
+     * The transport failed or the remote side went away. Not called after {@link SerialSession#close()}.
+     */
+    void onSessionError(IOException e);
+}
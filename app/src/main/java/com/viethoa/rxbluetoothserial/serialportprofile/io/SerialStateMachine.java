@@ -0,0 +1,75 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import com.viethoa.rxbluetoothserial.BluetoothSerialState;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connection state with compare-and-set transitions along the allowed edges only. Reading it is
+ * a volatile read, so writers and state queries never wait for a connect or disconnect.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class SerialStateMachine {
+
+    private static final int STATE_COUNT = BluetoothSerialState.RECONNECTING + 1;
+    private static final boolean[][] EDGES = new boolean[STATE_COUNT][STATE_COUNT];
+
+    static {
+        // A disconnect is always possible, repeating it tells the listener again.
+        for (int from = 0; from < STATE_COUNT; from++) {
+            allow(from, BluetoothSerialState.DISCONNECTED);
+            allow(from, BluetoothSerialState.CONNECTING);
+        }
+        allow(BluetoothSerialState.CONNECTING, BluetoothSerialState.CONNECTED);
+        allow(BluetoothSerialState.RECONNECTING, BluetoothSerialState.CONNECTED);
+        allow(BluetoothSerialState.CONNECTED, BluetoothSerialState.RECONNECTING);
+        // The session failed right when it started.
+        allow(BluetoothSerialState.CONNECTING, BluetoothSerialState.RECONNECTING);
+        allow(BluetoothSerialState.RECONNECTING, BluetoothSerialState.RECONNECTING);
+    }
+
+    private final AtomicInteger state = new AtomicInteger(BluetoothSerialState.DISCONNECTED);
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    @BluetoothSerialState
+    public int get() {
+        return state.get();
+    }
+
+    public static boolean isAllowed(@BluetoothSerialState int from, @BluetoothSerialState int to) {
+        return from >= 0 && from < STATE_COUNT && to >= 0 && to < STATE_COUNT && EDGES[from][to];
+    }
+
+    /**
+     * Move from {@code expected} only, false if the state is another one by now or the edge
+     * isn't allowed.
+     */
+    public boolean compareAndSet(@BluetoothSerialState int expected, @BluetoothSerialState int to) {
+        return isAllowed(expected, to) && state.compareAndSet(expected, to);
+    }
+
+    /**
+     * Move from whatever the current state is, -1 if that edge isn't allowed.
+     *
+     * @return the previous state
+     */
+    public int moveTo(@BluetoothSerialState int to) {
+        while (true) {
+            int from = state.get();
+            if (!isAllowed(from, to)) {
+                return -1;
+            }
+            if (state.compareAndSet(from, to)) {
+                return from;
+            }
+        }
+    }
+
+    private static void allow(int from, int to) {
+        EDGES[from][to] = true;
+    }
+}
@@ -0,0 +1,41 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import java.io.IOException;
+
+/**
+ * Byte pipe a {@link SerialSession} runs on, RFCOMM on a device and loopback or TCP on a JVM.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+
+public interface SerialTransport {
+
+    /**
+     * Blocks until the link is up. Calling it again after a failure retries the connection.
+     */
+    void connect() throws IOException;
+
+    /**
+     * Blocks until at least one byte is available, returns -1 once the remote side is closed.
+     */
+    int read(byte[] buffer, int offset, int length) throws IOException;
+
+    /**
+     * Bytes that can be read right now without blocking, 0 if unknown.
+     */
+    int available() throws IOException;
+
+    void write(byte[] buffer, int offset, int length) throws IOException;
+
+    void flush() throws IOException;
+
+    /**
+     * Unblocks pending connect, read and write calls. Safe to call more than once.
+     */
+    void close() throws IOException;
+
+    /**
+     * Human readable remote end, used in logs.
+     */
+    String getName();
+}
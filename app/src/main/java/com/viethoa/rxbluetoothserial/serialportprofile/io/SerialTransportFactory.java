@@ -0,0 +1,17 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+/**
+ * Creates a fresh transport for every connect attempt, a closed socket can't be reused.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+
+public interface SerialTransportFactory {
+
+    SerialTransport create();
+
+    /**
+     * Human readable remote end, used in logs.
+     */
+    String getName();
+}
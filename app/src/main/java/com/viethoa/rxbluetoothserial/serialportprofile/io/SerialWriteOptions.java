@@ -0,0 +1,138 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import com.viethoa.rxbluetoothserial.serialportprofile.codec.FrameEncoder;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public class SerialWriteOptions {
+
+    public static final int DEFAULT_MTU = 512;
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+    private int mtu = DEFAULT_MTU;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    @WriteQueuePolicy
+    private int queuePolicy = WriteQueuePolicy.BLOCK;
+    private long flushWindowMicros;
+    private FrameEncoder frameEncoder;
+    private long bytesPerSecond;
+    private int framesPerSecond;
+    private boolean xonXoff;
+    private int ackWindow;
+
+    /**
+     * Pending writes are merged into one socket write of at most this many bytes.
+     */
+    public SerialWriteOptions setMtu(int mtu) {
+        if (mtu <= 0) {
+            throw new IllegalArgumentException("mtu must be positive: " + mtu);
+        }
+        this.mtu = mtu;
+        return this;
+    }
+
+    public SerialWriteOptions setQueueCapacity(int queueCapacity) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity must be positive: " + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    public SerialWriteOptions setQueuePolicy(@WriteQueuePolicy int queuePolicy) {
+        this.queuePolicy = queuePolicy;
+        return this;
+    }
+
+    /**
+     * How long the writer waits for more writes to fill a batch, 0 only merges what is pending.
+     */
+    public SerialWriteOptions setFlushWindowMicros(long flushWindowMicros) {
+        if (flushWindowMicros < 0) {
+            throw new IllegalArgumentException("flushWindowMicros must not be negative: " + flushWindowMicros);
+        }
+        this.flushWindowMicros = flushWindowMicros;
+        return this;
+    }
+
+    /**
+     * Every write is framed by the encoder on the writer thread, straight into the batch buffer.
+     */
+    public SerialWriteOptions setFrameEncoder(FrameEncoder frameEncoder) {
+        this.frameEncoder = frameEncoder;
+        return this;
+    }
+
+    /**
+     * Caps the write rate so a slow remote UART never overflows, 0 for no limit. A tenth of a
+     * second worth, at least one MTU or frame, may go out in a burst. Every write, or every chunk
+     * of a streamed write, counts as one frame.
+     */
+    public SerialWriteOptions setRateLimit(long bytesPerSecond, int framesPerSecond) {
+        if (bytesPerSecond < 0 || framesPerSecond < 0) {
+            throw new IllegalArgumentException("Rates must not be negative: " + bytesPerSecond + ", " + framesPerSecond);
+        }
+        this.bytesPerSecond = bytesPerSecond;
+        this.framesPerSecond = framesPerSecond;
+        return this;
+    }
+
+    /**
+     * Software flow control: XOFF in the read bytes pauses the writer until XON. Both bytes are
+     * removed from what is read, so only for text protocols.
+     */
+    public SerialWriteOptions setXonXoff(boolean xonXoff) {
+        this.xonXoff = xonXoff;
+        return this;
+    }
+
+    /**
+     * At most this many frames written and not yet acknowledged with
+     * {@link SerialSession#acknowledge(int)}, 0 to not wait for acknowledgements.
+     */
+    public SerialWriteOptions setAckWindow(int ackWindow) {
+        if (ackWindow < 0) {
+            throw new IllegalArgumentException("ackWindow must not be negative: " + ackWindow);
+        }
+        this.ackWindow = ackWindow;
+        return this;
+    }
+
+    public int getMtu() {
+        return mtu;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    @WriteQueuePolicy
+    public int getQueuePolicy() {
+        return queuePolicy;
+    }
+
+    public long getFlushWindowMicros() {
+        return flushWindowMicros;
+    }
+
+    public FrameEncoder getFrameEncoder() {
+        return frameEncoder;
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    public int getFramesPerSecond() {
+        return framesPerSecond;
+    }
+
+    public boolean isXonXoff() {
+        return xonXoff;
+    }
+
+    public int getAckWindow() {
+        return ackWindow;
+    }
+}
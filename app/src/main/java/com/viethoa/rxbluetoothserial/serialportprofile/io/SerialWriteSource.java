@@ -0,0 +1,31 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Payload the writer pulls chunk by chunk on its own thread, so a large write never sits in
+ * memory as a whole. See {@link SerialWriteSources} for buffers, streams and files.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public interface SerialWriteSource extends Closeable {
+
+    /**
+     * Total byte count, or -1 when unknown.
+     */
+    long length();
+
+    /**
+     * Blocks until at least one byte is copied into {@code buffer}.
+     *
+     * @return the byte count, or -1 at the end of the payload
+     */
+    int read(byte[] buffer, int offset, int length) throws IOException;
+
+    /**
+     * Called by the writer once the write is done or failed.
+     */
+    @Override
+    void close() throws IOException;
+}
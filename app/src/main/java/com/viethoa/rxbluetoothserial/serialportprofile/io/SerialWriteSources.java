@@ -0,0 +1,112 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Write sources for the usual payloads. Nothing is copied up front, the writer reads each chunk
+ * straight from the caller's buffers, stream or file.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public final class SerialWriteSources {
+
+    private SerialWriteSources() {
+    }
+
+    /**
+     * The remaining bytes of each buffer in order, as one write. Positions of the given buffers
+     * are left alone, but their content must not change until the write is done.
+     */
+    public static SerialWriteSource of(ByteBuffer... buffers) {
+        return new ByteBufferSource(buffers);
+    }
+
+    /**
+     * Reads the stream to its end and closes it once the write is done or failed.
+     *
+     * @param length byte count if known up front for progress, or -1
+     */
+    public static SerialWriteSource of(InputStream inputStream, long length) {
+        return new InputStreamSource(inputStream, length);
+    }
+
+    public static SerialWriteSource of(File file) throws IOException {
+        return new InputStreamSource(new FileInputStream(file), file.length());
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Sources
+    //----------------------------------------------------------------------------------------------
+
+    private static final class ByteBufferSource implements SerialWriteSource {
+
+        private final ByteBuffer[] buffers;
+        private final long length;
+        private int current;
+
+        ByteBufferSource(ByteBuffer[] buffers) {
+            this.buffers = new ByteBuffer[buffers.length];
+            long length = 0;
+            for (int i = 0; i < buffers.length; i++) {
+                this.buffers[i] = buffers[i].duplicate();
+                length += buffers[i].remaining();
+            }
+            this.length = length;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            int used = 0;
+            while (used < length && current < buffers.length) {
+                ByteBuffer source = buffers[current];
+                int count = Math.min(source.remaining(), length - used);
+                source.get(buffer, offset + used, count);
+                used += count;
+                if (!source.hasRemaining()) {
+                    buffers[current++] = null;
+                }
+            }
+            return used > 0 || length == 0 ? used : -1;
+        }
+
+        @Override
+        public void close() {
+            current = buffers.length;
+        }
+    }
+
+    private static final class InputStreamSource implements SerialWriteSource {
+
+        private final InputStream inputStream;
+        private final long length;
+
+        InputStreamSource(InputStream inputStream, long length) {
+            this.inputStream = inputStream;
+            this.length = length;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            return inputStream.read(buffer, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,638 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import com.viethoa.rxbluetoothserial.serialportprofile.buffer.BufferPool;
+import com.viethoa.rxbluetoothserial.serialportprofile.buffer.PooledBuffer;
+import com.viethoa.rxbluetoothserial.serialportprofile.codec.FrameEncoder;
+import com.viethoa.rxbluetoothserial.serialportprofile.metrics.SerialMetrics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes on an executor so callers never block on the socket. A drain task is scheduled whenever
+ * writes are pending and at most one runs at a time, so writers of many sessions can share a few
+ * threads. Small pending writes are merged into one transport write of at most MTU bytes, and
+ * a flush window waits for more on the scheduler rather than on the shared thread.
+ * Pooled writes go back to their pool once written or failed, and large frames are encoded into
+ * a pooled array, so steady writing allocates nothing but the futures. Sources are pulled one
+ * chunk at a time and hold the writer until they are drained, keeping writes in order. With flow
+ * control the queue is parked, freeing the thread, while a rate limit, XOFF or a full ack window
+ * holds writes back.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class SerialWriter {
+
+    private final SerialTransport transport;
+    private final SerialWriterListener listener;
+    private final int mtu;
+    @WriteQueuePolicy
+    private final int queuePolicy;
+    private final long flushWindowNanos;
+    private final FrameEncoder encoder;
+    private final BlockingQueue<WriteRequest> queue;
+    private final byte[] batch;
+    private final List<WriteRequest> batchRequests = new ArrayList<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+    private final WriteFlowControl flow;
+    private final Runnable resumeTask = new Runnable() {
+        @Override
+        public void run() {
+            resume();
+        }
+    };
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            schedule();
+        }
+    };
+
+    private volatile boolean running;
+    private volatile boolean paused;
+    private boolean pausedUntilResumed;
+    private SerialMetrics metrics;
+    private IoEventLog eventLog;
+    private Executor executor;
+    private ScheduledExecutorService scheduler;
+    private WriteRequest carry;
+    // The batch in batchRequests waiting out its flush window, by the drain task.
+    private int batchUsed;
+    private long batchDeadline;
+    private long flushScheduledFor;
+
+    public SerialWriter(SerialTransport transport, SerialWriteOptions options, SerialWriterListener listener) {
+        this.transport = transport;
+        this.listener = listener;
+        this.mtu = options.getMtu();
+        this.queuePolicy = options.getQueuePolicy();
+        this.flushWindowNanos = TimeUnit.MICROSECONDS.toNanos(options.getFlushWindowMicros());
+        this.encoder = options.getFrameEncoder();
+        this.queue = new ArrayBlockingQueue<>(options.getQueueCapacity());
+        this.batch = new byte[mtu];
+        this.flow = WriteFlowControl.isEnabled(options) ? new WriteFlowControl(options) : null;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Set before {@link #start(Executor, ScheduledExecutorService)}, null to record nothing.
+     */
+    public void setMetrics(SerialMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Set before {@link #start(Executor, ScheduledExecutorService)}, null to record nothing.
+     */
+    public void setEventLog(IoEventLog eventLog) {
+        this.eventLog = eventLog;
+    }
+
+    /**
+     * @param scheduler resumes the writer once a rate limit delay is over
+     */
+    public synchronized void start(Executor executor, ScheduledExecutorService scheduler) {
+        if (this.executor != null) {
+            return;
+        }
+        this.executor = executor;
+        this.scheduler = scheduler;
+        running = true;
+    }
+
+    /**
+     * Fails everything pending, a write in progress ends once the transport is closed.
+     */
+    public void stop() {
+        running = false;
+        failPending(new IOException("Writer was stopped"));
+        // A paused writer has no drain task left to fail the stream it held back.
+        if (scheduled.compareAndSet(false, true)) {
+            failBatch(new IOException("Writer was stopped"));
+            scheduled.set(false);
+        }
+    }
+
+    /**
+     * Queue a write, {@code data} is read by the writer thread later so it must not be changed
+     * until the returned future is done.
+     */
+    public WriteFuture write(byte[] data, int offset, int length) {
+        return enqueue(new WriteRequest(data, offset, length, null));
+    }
+
+    /**
+     * Queue the first {@link PooledBuffer#length()} bytes of {@code buffer}. Takes over the
+     * caller's reference, the buffer is released once written or failed.
+     */
+    public WriteFuture write(PooledBuffer buffer) {
+        return enqueue(new WriteRequest(buffer.array(), 0, buffer.length(), buffer));
+    }
+
+    /**
+     * Queue a write that is read from {@code source} in chunks of {@code chunkSize} bytes, or the
+     * MTU when 0. With a frame encoder every chunk becomes one frame. Cancelling the future stops
+     * after the current chunk, the source is closed either way.
+     *
+     * @param progress called on the writer thread after each chunk, may be null
+     */
+    public WriteFuture write(SerialWriteSource source, int chunkSize, WriteProgressListener progress) {
+        if (chunkSize < 0) {
+            throw new IllegalArgumentException("chunkSize must not be negative: " + chunkSize);
+        }
+        return enqueue(new WriteRequest(source, chunkSize > 0 ? chunkSize : mtu, progress));
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * With XON/XOFF flow control, drops both bytes from what was read and pauses or resumes the
+     * writer. Called by the reader thread.
+     *
+     * @return the byte count left at {@code offset}
+     */
+    public int filterXonXoff(byte[] buffer, int offset, int length) {
+        if (flow == null || !flow.isXonXoff()) {
+            return length;
+        }
+        int left = flow.filterXonXoff(buffer, offset, length);
+        if (left != length) {
+            resume();
+        }
+        return left;
+    }
+
+    /**
+     * The remote device took {@code frames} more frames, opening the ack window again.
+     */
+    public void acknowledge(int frames) {
+        if (flow != null) {
+            flow.acknowledge(frames);
+            resume();
+        }
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Drain task
+    //----------------------------------------------------------------------------------------------
+
+    private WriteFuture enqueue(WriteRequest request) {
+        WriteFuture future = request.future;
+        if (!running) {
+            failed(request, new IOException("Writer is not running"));
+            return future;
+        }
+        if (request.source == null && request.length == 0) {
+            request.release();
+            future.complete();
+            return future;
+        }
+
+        switch (queuePolicy) {
+            case WriteQueuePolicy.BLOCK:
+                try {
+                    queue.put(request);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failed(request, e);
+                    return future;
+                }
+                break;
+            case WriteQueuePolicy.FAIL:
+                if (!queue.offer(request)) {
+                    failed(request, new IOException("Write queue is full"));
+                    return future;
+                }
+                break;
+            case WriteQueuePolicy.DROP:
+                while (!queue.offer(request)) {
+                    WriteRequest dropped = queue.poll();
+                    if (dropped != null) {
+                        failed(dropped, new IOException("Write was dropped"));
+                    }
+                }
+                break;
+        }
+
+        // The writer may have stopped while we were waiting for room.
+        if (!running && queue.remove(request)) {
+            failed(request, new IOException("Writer was stopped"));
+        } else if (metrics != null) {
+            metrics.onWriteQueued(queue.size());
+        }
+        schedule();
+        return future;
+    }
+
+    private void schedule() {
+        if (!running || paused || !scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(drainTask);
+        } catch (RejectedExecutionException e) {
+            scheduled.set(false);
+            running = false;
+            failPending(new IOException("Writer executor is shut down"));
+        }
+    }
+
+    private void resume() {
+        if (paused) {
+            paused = false;
+            schedule();
+        }
+    }
+
+    /**
+     * Parks the queue when flow control says wait, the drain task ends and the timer, XON or an
+     * acknowledgement schedules it again.
+     */
+    private boolean holdBack() {
+        if (flow == null) {
+            return false;
+        }
+        long delay = flow.delayNanos();
+        if (delay == 0) {
+            return false;
+        }
+        if (eventLog != null) {
+            eventLog.record(IoEvent.WRITE_PAUSED, delay == WriteFlowControl.UNTIL_RESUMED ? -1 : delay);
+        }
+        // Paused before the timer is set, a short delay may resume us before schedule returns.
+        pausedUntilResumed = delay == WriteFlowControl.UNTIL_RESUMED;
+        paused = true;
+        if (!pausedUntilResumed) {
+            try {
+                scheduler.schedule(resumeTask, delay, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shutting down, wait here rather than spin.
+                paused = false;
+                LockSupport.parkNanos(delay);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void drain() {
+        try {
+            while (running && !paused && !holdBack()) {
+                WriteRequest first = null;
+                if (batchRequests.isEmpty()) {
+                    first = carry != null ? carry : queue.poll();
+                    carry = null;
+                    if (first == null) {
+                        break;
+                    }
+
+                    if (first.source != null) {
+                        writeSource(first);
+                        continue;
+                    }
+                    if (encodedLength(first) >= mtu) {
+                        writeLarge(first);
+                        continue;
+                    }
+                }
+
+                if (!fillBatch(first)) {
+                    // The flush task picks the batch up again.
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            running = false;
+            failBatch(e);
+            failPending(e);
+            listener.onWriteError(e);
+        } finally {
+            if (!running) {
+                failBatch(new IOException("Writer was stopped"));
+                failPending(new IOException("Writer was stopped"));
+            }
+            scheduled.set(false);
+            if (paused) {
+                // XON or an acknowledgement may have come in before we paused.
+                if (pausedUntilResumed && !flow.isWaitingForPeer()) {
+                    resume();
+                }
+            } else if (carry != null || !queue.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * Starts a batch with {@code first}, or goes on with the open one when null.
+     *
+     * @return false when the batch waits out its flush window, it stays in batchRequests
+     */
+    private boolean fillBatch(WriteRequest first) throws IOException {
+        if (first != null) {
+            batchUsed = append(first, 0);
+            batchDeadline = System.nanoTime() + flushWindowNanos;
+        }
+        int used = batchUsed;
+        int allowance = flow != null ? flow.frameAllowance() : Integer.MAX_VALUE;
+
+        while (batchRequests.size() < allowance) {
+            WriteRequest next = queue.poll();
+            if (next == null) {
+                long remaining = batchDeadline - System.nanoTime();
+                if (flushWindowNanos > 0 && remaining > 0 && !batchRequests.isEmpty() && waitForMore(remaining)) {
+                    batchUsed = used;
+                    return false;
+                }
+                break;
+            }
+            if (next.source != null || used + encodedLength(next) > mtu) {
+                carry = next;
+                break;
+            }
+            used = append(next, used);
+        }
+
+        if (batchRequests.isEmpty()) {
+            // The encoder refused all of them.
+            return true;
+        }
+        transport.write(batch, 0, used);
+        transport.flush();
+        if (flow != null) {
+            flow.onWritten(batchRequests.size(), used);
+        }
+        if (eventLog != null) {
+            eventLog.record(IoEvent.WRITE, used);
+        }
+        finishBatch();
+        return true;
+    }
+
+    /**
+     * Ends the drain task until the flush window is over, a write coming in meanwhile starts it
+     * again. Blocking here would hold a thread the writers of other sessions need.
+     *
+     * @return false when it can't be scheduled, flush now then
+     */
+    private boolean waitForMore(long remainingNanos) {
+        if (flushScheduledFor == batchDeadline) {
+            return true;
+        }
+        try {
+            scheduler.schedule(flushTask, remainingNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+        flushScheduledFor = batchDeadline;
+        return true;
+    }
+
+    private void writeLarge(WriteRequest request) throws IOException {
+        batchRequests.add(request);
+        int encoded;
+        try {
+            encoded = writeEncoded(request.data, request.offset, request.length);
+        } catch (RuntimeException e) {
+            // The encoder refused the payload, nothing was written.
+            batchRequests.clear();
+            failed(request, e);
+            return;
+        }
+        transport.flush();
+        if (flow != null) {
+            flow.onWritten(1, encoded);
+        }
+        if (eventLog != null) {
+            eventLog.record(IoEvent.WRITE, request.length);
+        }
+        finishBatch();
+    }
+
+    private void writeSource(WriteRequest request) throws IOException {
+        batchRequests.add(request);
+        SerialWriteSource source = request.source;
+        PooledBuffer chunk = BufferPool.shared().acquire(request.chunkSize);
+        byte[] buffer = chunk.array();
+        try {
+            while (running && !request.future.isDone()) {
+                if (holdBack()) {
+                    // Picked up where it stopped once resumed.
+                    batchRequests.clear();
+                    carry = request;
+                    return;
+                }
+
+                int count;
+                try {
+                    count = source.read(buffer, 0, request.chunkSize);
+                } catch (IOException e) {
+                    // The source failed, not the transport, so only this write does.
+                    batchRequests.clear();
+                    failed(request, e);
+                    return;
+                }
+                if (count < 0) {
+                    break;
+                }
+
+                int encoded;
+                try {
+                    encoded = writeEncoded(buffer, 0, count);
+                } catch (RuntimeException e) {
+                    // The encoder refused the chunk, the stream can't go on.
+                    batchRequests.clear();
+                    failed(request, e);
+                    return;
+                }
+                request.written += count;
+                if (flow != null) {
+                    flow.onWritten(1, encoded);
+                }
+                if (eventLog != null) {
+                    eventLog.record(IoEvent.WRITE, count);
+                }
+                listener.onDataWritten(buffer, 0, count);
+                if (request.progress != null) {
+                    request.progress.onWriteProgress(request.written, source.length());
+                }
+            }
+            transport.flush();
+        } finally {
+            chunk.release();
+        }
+        if (!running) {
+            // Failed by the drain task like the rest of the batch.
+            return;
+        }
+
+        batchRequests.clear();
+        if (metrics != null) {
+            metrics.onWritten((int) Math.min(request.written, Integer.MAX_VALUE),
+                    System.nanoTime() - request.queuedNanos, encoder != null);
+            metrics.onWriteQueueDrained(queue.size());
+        }
+        request.release();
+        request.future.complete();
+    }
+
+    /**
+     * @return the byte count handed to the transport
+     */
+    private int writeEncoded(byte[] data, int offset, int length) throws IOException {
+        if (encoder == null) {
+            transport.write(data, offset, length);
+            return length;
+        }
+        PooledBuffer scratch = BufferPool.shared().acquire(encoder.maxEncodedLength(length));
+        try {
+            int encoded = encoder.encode(data, offset, length, scratch.array(), 0);
+            transport.write(scratch.array(), 0, encoded);
+            return encoded;
+        } finally {
+            scratch.release();
+        }
+    }
+
+    /**
+     * Fails a request the encoder refuses on its own, the rest of the batch goes on.
+     */
+    private int append(WriteRequest request, int used) {
+        if (encoder == null) {
+            System.arraycopy(request.data, request.offset, batch, used, request.length);
+            batchRequests.add(request);
+            return used + request.length;
+        }
+        int encoded;
+        try {
+            encoded = encoder.encode(request.data, request.offset, request.length, batch, used);
+        } catch (RuntimeException e) {
+            failed(request, e);
+            return used;
+        }
+        batchRequests.add(request);
+        return used + encoded;
+    }
+
+    private int encodedLength(WriteRequest request) {
+        return encoder == null ? request.length : encoder.maxEncodedLength(request.length);
+    }
+
+    private void finishBatch() {
+        long now = metrics != null ? System.nanoTime() : 0;
+        for (int i = 0; i < batchRequests.size(); i++) {
+            WriteRequest request = batchRequests.get(i);
+            if (metrics != null) {
+                metrics.onWritten(request.length, now - request.queuedNanos, encoder != null);
+            }
+            // The caller may reuse the array once the future is done, so report it first.
+            listener.onDataWritten(request.data, request.offset, request.length);
+            request.release();
+            request.future.complete();
+        }
+        batchRequests.clear();
+        if (metrics != null) {
+            metrics.onWriteQueueDrained(queue.size());
+        }
+    }
+
+    private void failBatch(Throwable error) {
+        for (int i = 0; i < batchRequests.size(); i++) {
+            failed(batchRequests.get(i), error);
+        }
+        batchRequests.clear();
+        if (carry != null) {
+            failed(carry, error);
+            carry = null;
+        }
+    }
+
+    private void failPending(Throwable error) {
+        WriteRequest request;
+        while ((request = queue.poll()) != null) {
+            failed(request, error);
+        }
+    }
+
+    private void failed(WriteRequest request, Throwable error) {
+        request.release();
+        if (metrics != null) {
+            metrics.onWriteFailed();
+        }
+        if (eventLog != null) {
+            eventLog.record(IoEvent.WRITE_FAILED, 0);
+        }
+        request.future.fail(error);
+    }
+
+    private static final class WriteRequest {
+        final byte[] data;
+        final int offset;
+        final int length;
+        final PooledBuffer pooled;
+        final SerialWriteSource source;
+        final int chunkSize;
+        final WriteProgressListener progress;
+        final WriteFuture future = new WriteFuture();
+        final long queuedNanos = System.nanoTime();
+        // Streamed so far, by the writer thread.
+        long written;
+
+        WriteRequest(byte[] data, int offset, int length, PooledBuffer pooled) {
+            this.data = data;
+            this.offset = offset;
+            this.length = length;
+            this.pooled = pooled;
+            this.source = null;
+            this.chunkSize = 0;
+            this.progress = null;
+        }
+
+        WriteRequest(SerialWriteSource source, int chunkSize, WriteProgressListener progress) {
+            this.data = null;
+            this.offset = 0;
+            this.length = 0;
+            this.pooled = null;
+            this.source = source;
+            this.chunkSize = chunkSize;
+            this.progress = progress;
+        }
+
+        void release() {
+            if (pooled != null) {
+                pooled.release();
+            }
+            if (source != null) {
+                try {
+                    source.close();
+                } catch (IOException e) {
+                    // Nothing left to read from it.
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import java.io.IOException;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+
+public interface SerialWriterListener {
+
+    /**
+     * One write made it to the transport, valid from {@code offset} for {@code length} bytes
+     * during this call only, pooled arrays are reused afterwards.
+     */
+    void onDataWritten(byte[] buffer, int offset, int length);
+
+    /**
+     * The transport failed, the writer has stopped and failed everything still pending.
+     */
+    void onWriteError(IOException e);
+}
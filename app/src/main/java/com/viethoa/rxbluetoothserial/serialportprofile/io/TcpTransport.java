@@ -0,0 +1,82 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Serial link over TCP, e.g. to a device simulator listening on localhost.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class TcpTransport implements SerialTransport {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    private final String host;
+    private final int port;
+
+    private volatile Socket socket;
+    private volatile boolean closed;
+    private InputStream inputStream;
+    private OutputStream outputStream;
+
+    public TcpTransport(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    @Override
+    public void connect() throws IOException {
+        if (closed) {
+            throw new IOException("Transport is closed");
+        }
+
+        Socket socket = new Socket();
+        this.socket = socket;
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+        if (closed) {
+            socket.close();
+            throw new IOException("Transport is closed");
+        }
+        inputStream = socket.getInputStream();
+        outputStream = socket.getOutputStream();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        return inputStream.read(buffer, offset, length);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return inputStream.available();
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        outputStream.write(buffer, offset, length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        Socket socket = this.socket;
+        if (socket != null) {
+            socket.close();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return host + ":" + port;
+    }
+}
@@ -0,0 +1,88 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the threads a {@link NamedThreadFactory} made until they exit, across all the
+ * pools of a {@link SerialIoRuntime}, so it can report how many there are and wait for them.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class ThreadCounter {
+
+    private final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+    private final AtomicInteger peak = new AtomicInteger();
+    private final AtomicLong created = new AtomicLong();
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Threads made and not exited yet.
+     */
+    public int getLiveCount() {
+        return threads.size();
+    }
+
+    /**
+     * Most threads alive at the same time.
+     */
+    public int getPeakCount() {
+        return peak.get();
+    }
+
+    /**
+     * Threads made so far, more than the peak means idle threads went away and were made again.
+     */
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+    /**
+     * Wait for every thread to exit, the pools must be shut down first.
+     *
+     * @return false when some are still running after {@code timeout}
+     */
+    public boolean join(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread thread : threads) {
+            if (thread == Thread.currentThread()) {
+                continue;
+            }
+            long left = deadline - System.nanoTime();
+            if (left > 0) {
+                TimeUnit.NANOSECONDS.timedJoin(thread, left);
+            }
+            if (thread.isAlive()) {
+                return false;
+            }
+            // Made but never started, nothing else removes it.
+            threads.remove(thread);
+        }
+        return true;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Settings
+    //----------------------------------------------------------------------------------------------
+
+    void created(Thread thread) {
+        threads.add(thread);
+        created.incrementAndGet();
+        int live = threads.size();
+        int last;
+        while (live > (last = peak.get()) && !peak.compareAndSet(last, live)) {
+            // Lost a race with another new thread, try again.
+        }
+    }
+
+    void exited(Thread thread) {
+        threads.remove(thread);
+    }
+}
@@ -0,0 +1,216 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed wheel timer for many short timeouts that mostly get cancelled, such as command
+ * responses. Scheduling and cancelling never take a lock: new timeouts are queued for the timer
+ * thread, which files them into the slot of their tick, and cancelled ones are dropped when their
+ * slot comes round. Timeouts fire up to one tick late. The thread parks while nothing is pending.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class TimerWheel {
+
+    public static final long DEFAULT_TICK_MILLIS = 10;
+    public static final int DEFAULT_SLOTS = 512;
+
+    private static final TimerWheel SHARED = new TimerWheel("SerialTimer", DEFAULT_TICK_MILLIS, DEFAULT_SLOTS);
+
+    private final String name;
+    private final long tickNanos;
+    private final int mask;
+    private final Timeout[] slots;
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    // Scheduled and not yet fired or dropped from a slot.
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile Thread thread;
+
+    // Timer thread only.
+    private long startNanos;
+    private long tick;
+
+    public TimerWheel(String name, long tickMillis, int slotCount) {
+        if (tickMillis <= 0 || slotCount <= 0) {
+            throw new IllegalArgumentException("Tick and slot count must be positive");
+        }
+        int slots = Integer.highestOneBit(slotCount);
+        if (slots < slotCount) {
+            slots <<= 1;
+        }
+        this.name = name;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.mask = slots - 1;
+        this.slots = new Timeout[slots];
+    }
+
+    /**
+     * The wheel shared by all sessions, ticking every {@value #DEFAULT_TICK_MILLIS} ms.
+     */
+    public static TimerWheel shared() {
+        return SHARED;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Run {@code task} on the timer thread after {@code delay}, keep it short.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() + unit.toNanos(Math.max(0, delay)));
+        pending.incrementAndGet();
+        added.add(timeout);
+        if (started.compareAndSet(false, true)) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runWheel();
+                }
+            }, name);
+            thread.setDaemon(true);
+            this.thread = thread;
+            thread.start();
+        } else {
+            Thread thread = this.thread;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+        return timeout;
+    }
+
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Timer thread
+    //----------------------------------------------------------------------------------------------
+
+    private void runWheel() {
+        startNanos = System.nanoTime();
+        tick = 0;
+        while (true) {
+            if (pending.get() == 0) {
+                // Nothing can be in the slots either, start the ticks over once woken.
+                LockSupport.park(this);
+                if (pending.get() == 0) {
+                    continue;
+                }
+                startNanos = System.nanoTime();
+                tick = 0;
+            }
+
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            long sleep;
+            while ((sleep = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, sleep);
+            }
+
+            transferAdded();
+            expire((int) (tick & mask));
+            tick++;
+        }
+    }
+
+    private void transferAdded() {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.isCancelled()) {
+                pending.decrementAndGet();
+                continue;
+            }
+            long ticks = Math.max(tick, (timeout.deadlineNanos - startNanos + tickNanos - 1) / tickNanos);
+            timeout.rounds = (ticks - tick) / slots.length;
+            int slot = (int) (ticks & mask);
+            timeout.next = slots[slot];
+            slots[slot] = timeout;
+        }
+    }
+
+    private void expire(int slot) {
+        Timeout previous = null;
+        Timeout timeout = slots[slot];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            boolean remove = timeout.isCancelled();
+            if (!remove && timeout.rounds <= 0) {
+                remove = true;
+                timeout.expire();
+            } else if (!remove) {
+                timeout.rounds--;
+            }
+
+            if (remove) {
+                pending.decrementAndGet();
+                timeout.next = null;
+                if (previous == null) {
+                    slots[slot] = next;
+                } else {
+                    previous.next = next;
+                }
+            } else {
+                previous = timeout;
+            }
+            timeout = next;
+        }
+    }
+
+    /**
+     * Handle of a scheduled task.
+     */
+    public static final class Timeout {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadlineNanos;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        // Timer thread only.
+        private Timeout next;
+        private long rounds;
+
+        Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * @return false when the task already ran or was cancelled
+         */
+        public boolean cancel() {
+            return state.compareAndSet(PENDING, CANCELLED);
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(PENDING, EXPIRED)) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // Report it like any thread would, but keep the other timeouts ticking.
+                Thread current = Thread.currentThread();
+                current.getUncaughtExceptionHandler().uncaughtException(current, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limit that refills {@code ratePerSecond} tokens a second up to a burst. Tokens are taken
+ * after the fact, a write larger than what is left puts the bucket in debt and the next write
+ * waits until it is paid off, so the size of a write never has to be known up front. Used by the
+ * writer thread only, not thread safe.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class TokenBucket {
+
+    private final double tokensPerNano;
+    private final double burst;
+    private double tokens;
+    private long refilledNanos;
+
+    public TokenBucket(long ratePerSecond, long burst) {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("ratePerSecond must be positive: " + ratePerSecond);
+        }
+        if (burst <= 0) {
+            throw new IllegalArgumentException("burst must be positive: " + burst);
+        }
+        this.tokensPerNano = ratePerSecond / (double) TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.tokens = burst;
+        this.refilledNanos = System.nanoTime();
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * @return 0 when the next write may go now, otherwise how long until the debt is paid
+     */
+    public long delayNanos(long nowNanos) {
+        refill(nowNanos);
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNano);
+    }
+
+    /**
+     * Whole tokens left, 0 in debt.
+     */
+    public long available(long nowNanos) {
+        refill(nowNanos);
+        return tokens > 0 ? (long) tokens : 0;
+    }
+
+    public void consume(long count) {
+        tokens -= count;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Settings
+    //----------------------------------------------------------------------------------------------
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - refilledNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(burst, tokens + elapsed * tokensPerNano);
+            refilledNanos = nowNanos;
+        }
+    }
+}
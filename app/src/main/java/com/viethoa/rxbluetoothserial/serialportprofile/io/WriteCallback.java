@@ -0,0 +1,18 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+
+public interface WriteCallback {
+
+    /**
+     * All bytes of the write are handed to the transport.
+     */
+    void onWriteComplete();
+
+    /**
+     * The write was rejected, dropped or the transport failed.
+     */
+    void onWriteFailed(Throwable error);
+}
@@ -0,0 +1,134 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * What may hold the writer back: byte and frame rate limits, XOFF from the remote device and
+ * frames written but not acknowledged yet. The writer asks before each write and parks its
+ * queue, without holding a thread, until the delay is over or XON or an acknowledgement comes in.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+class WriteFlowControl {
+
+    static final byte XON = 0x11;
+    static final byte XOFF = 0x13;
+
+    /**
+     * Delay meaning wait for XON or an acknowledgement.
+     */
+    static final long UNTIL_RESUMED = Long.MAX_VALUE;
+
+    // A tenth of a second worth of tokens may go out at once.
+    private static final int BURST_DIVISOR = 10;
+
+    private final TokenBucket byteBucket;
+    private final TokenBucket frameBucket;
+    private final boolean xonXoff;
+    private final int ackWindow;
+    private final AtomicInteger unacknowledged = new AtomicInteger();
+    private volatile boolean stopped;
+
+    WriteFlowControl(SerialWriteOptions options) {
+        this.byteBucket = options.getBytesPerSecond() > 0
+                ? new TokenBucket(options.getBytesPerSecond(),
+                Math.max(options.getMtu(), options.getBytesPerSecond() / BURST_DIVISOR))
+                : null;
+        this.frameBucket = options.getFramesPerSecond() > 0
+                ? new TokenBucket(options.getFramesPerSecond(), Math.max(1, options.getFramesPerSecond() / BURST_DIVISOR))
+                : null;
+        this.xonXoff = options.isXonXoff();
+        this.ackWindow = options.getAckWindow();
+    }
+
+    static boolean isEnabled(SerialWriteOptions options) {
+        return options.getBytesPerSecond() > 0 || options.getFramesPerSecond() > 0
+                || options.isXonXoff() || options.getAckWindow() > 0;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Writer thread
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * @return 0 to write now, {@link #UNTIL_RESUMED} or nanos to wait
+     */
+    long delayNanos() {
+        if (isWaitingForPeer()) {
+            return UNTIL_RESUMED;
+        }
+        long now = System.nanoTime();
+        long delay = byteBucket != null ? byteBucket.delayNanos(now) : 0;
+        return frameBucket != null ? Math.max(delay, frameBucket.delayNanos(now)) : delay;
+    }
+
+    /**
+     * Frames that may go in the next batch, at least one once {@link #delayNanos()} said go.
+     */
+    int frameAllowance() {
+        long allowance = Integer.MAX_VALUE;
+        if (frameBucket != null) {
+            allowance = Math.max(1, frameBucket.available(System.nanoTime()));
+        }
+        if (ackWindow > 0) {
+            allowance = Math.min(allowance, Math.max(1, ackWindow - unacknowledged.get()));
+        }
+        return (int) allowance;
+    }
+
+    void onWritten(int frames, int bytes) {
+        if (byteBucket != null) {
+            byteBucket.consume(bytes);
+        }
+        if (frameBucket != null) {
+            frameBucket.consume(frames);
+        }
+        if (ackWindow > 0) {
+            unacknowledged.addAndGet(frames);
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Any thread
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Stopped by XOFF or the ack window is full, without touching the rate limits.
+     */
+    boolean isWaitingForPeer() {
+        return stopped || (ackWindow > 0 && unacknowledged.get() >= ackWindow);
+    }
+
+    boolean isXonXoff() {
+        return xonXoff;
+    }
+
+    /**
+     * Drops XON and XOFF from the read bytes and follows them.
+     *
+     * @return the byte count left at {@code offset}
+     */
+    int filterXonXoff(byte[] buffer, int offset, int length) {
+        int used = offset;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = buffer[i];
+            if (b == XOFF) {
+                stopped = true;
+            } else if (b == XON) {
+                stopped = false;
+            } else {
+                buffer[used++] = b;
+            }
+        }
+        return used - offset;
+    }
+
+    void acknowledge(int frames) {
+        while (true) {
+            int current = unacknowledged.get();
+            if (unacknowledged.compareAndSet(current, Math.max(0, current - frames))) {
+                return;
+            }
+        }
+    }
+}
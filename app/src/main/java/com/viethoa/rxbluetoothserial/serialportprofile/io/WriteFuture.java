@@ -0,0 +1,136 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public class WriteFuture implements Future<Void> {
+
+    private boolean done;
+    private boolean cancelled;
+    private Throwable error;
+    private WriteCallback callback;
+
+    public static WriteFuture failed(Throwable error) {
+        WriteFuture future = new WriteFuture();
+        future.fail(error);
+        return future;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Callback runs on the writer thread, or straight away when the write is already done.
+     */
+    public void setCallback(WriteCallback callback) {
+        synchronized (this) {
+            if (!done) {
+                this.callback = callback;
+                return;
+            }
+        }
+        notifyCallback(callback);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            cancelled = true;
+        }
+        return fail(new CancellationException("Write was cancelled"));
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public synchronized Void get() throws InterruptedException, ExecutionException {
+        while (!done) {
+            wait();
+        }
+        return result();
+    }
+
+    @Override
+    public synchronized Void get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!done) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return result();
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Settings
+    //----------------------------------------------------------------------------------------------
+
+    boolean complete() {
+        return finish(null);
+    }
+
+    boolean fail(Throwable error) {
+        return finish(error);
+    }
+
+    private boolean finish(Throwable error) {
+        WriteCallback callback;
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            this.done = true;
+            this.error = error;
+            callback = this.callback;
+            this.callback = null;
+            notifyAll();
+        }
+        if (callback != null) {
+            notifyCallback(callback);
+        }
+        return true;
+    }
+
+    private void notifyCallback(WriteCallback callback) {
+        Throwable error;
+        synchronized (this) {
+            error = this.error;
+        }
+        if (error == null) {
+            callback.onWriteComplete();
+        } else {
+            callback.onWriteFailed(error);
+        }
+    }
+
+    private Void result() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException("Write was cancelled");
+        }
+        if (error != null) {
+            throw new ExecutionException(error);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,14 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public interface WriteProgressListener {
+
+    /**
+     * Called on the writer thread after each chunk made it to the transport.
+     *
+     * @param total the payload length, or -1 when unknown
+     */
+    void onWriteProgress(long written, long total);
+}
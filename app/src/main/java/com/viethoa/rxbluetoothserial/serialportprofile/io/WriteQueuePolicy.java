@@ -0,0 +1,20 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+
+public @interface WriteQueuePolicy {
+    /**
+     * Caller waits until the writer has room for the write.
+     */
+    int BLOCK = 0;
+    /**
+     * The new write fails straight away.
+     */
+    int FAIL = 1;
+    /**
+     * The oldest pending write is dropped, and failed, to make room for the new one.
+     */
+    int DROP = 2;
+}
@@ -0,0 +1,10 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.journal;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+
+public @interface JournalDirection {
+    int INBOUND = 0;
+    int OUTBOUND = 1;
+}
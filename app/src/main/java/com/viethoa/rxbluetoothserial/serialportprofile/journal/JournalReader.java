@@ -0,0 +1,213 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Reads the records of a {@link SerialJournal} directory back, oldest file first, e.g. after a
+ * fault or to replay them. Works on the files of a running journal too, records still being
+ * written are left out.
+ * <pre>
+ * JournalReader reader = new JournalReader(directory);
+ * while (reader.next()) {
+ *     ... reader.getDirection(), reader.getNanoTime(), reader.getBytes()
+ * }
+ * reader.close();
+ * </pre>
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class JournalReader implements Closeable {
+
+    private final List<File> files;
+    private final CRC32 crc = new CRC32();
+    private final byte[] header = new byte[9];
+    private byte[] scratch = new byte[1024];
+    private int fileIndex;
+    private ByteBuffer segment;
+    private long baseWallMillis;
+    private long baseNanos;
+
+    private int direction;
+    private long nanoTime;
+    private int length;
+    private int payloadPosition;
+    private long tornCount;
+
+    public JournalReader(File directory) throws IOException {
+        File[] listed = directory.listFiles();
+        if (listed == null) {
+            throw new IOException("Not a directory " + directory);
+        }
+
+        files = new ArrayList<>();
+        for (File file : listed) {
+            if (JournalSegment.parseSequence(file.getName()) >= 0) {
+                files.add(file);
+            }
+        }
+        // Names are zero padded, so they sort by sequence.
+        Collections.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return a.getName().compareTo(b.getName());
+            }
+        });
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Move to the next intact record.
+     *
+     * @return false at the end of the journal
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (segment == null) {
+                if (fileIndex >= files.size()) {
+                    return false;
+                }
+                segment = open(files.get(fileIndex++));
+                continue;
+            }
+
+            int position = payloadPosition + length;
+            payloadPosition = position;
+            length = 0;
+            if (segment.capacity() - position < JournalSegment.RECORD_HEADER_SIZE) {
+                segment = null;
+                continue;
+            }
+
+            int recordLength = segment.getInt(position);
+            if (recordLength <= 0 || recordLength > segment.capacity() - position - JournalSegment.RECORD_HEADER_SIZE) {
+                // Never written, the end marker or garbage: nothing more in this file.
+                segment = null;
+                continue;
+            }
+
+            int recordDirection = segment.get(position + 8);
+            long recordNanos = segment.getLong(position + 9);
+            int checksum = segment.getInt(position + 4);
+            payloadPosition = position + JournalSegment.RECORD_HEADER_SIZE;
+            length = recordLength;
+            if (checksum != checksum(recordDirection, recordNanos)) {
+                tornCount++;
+                continue;
+            }
+
+            direction = recordDirection;
+            nanoTime = recordNanos;
+            return true;
+        }
+    }
+
+    @JournalDirection
+    public int getDirection() {
+        return direction;
+    }
+
+    /**
+     * {@link System#nanoTime()} of the append, only comparable within one journal run.
+     */
+    public long getNanoTime() {
+        return nanoTime;
+    }
+
+    /**
+     * Wall clock time of the append, from the time the file was created.
+     */
+    public long getWallTimeMillis() {
+        return baseWallMillis + (nanoTime - baseNanos) / 1000000;
+    }
+
+    /**
+     * Wall clock time of the append in nanoseconds, as precise as {@link #getNanoTime()} within a
+     * file and comparable across files and runs.
+     */
+    public long getWallTimeNanos() {
+        return baseWallMillis * 1000000 + (nanoTime - baseNanos);
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Copy the record's bytes to {@code buffer}, which needs {@link #getLength()} bytes of room.
+     */
+    public void copyTo(byte[] buffer, int offset) {
+        ByteBuffer view = segment.duplicate();
+        view.position(payloadPosition);
+        view.get(buffer, offset, length);
+    }
+
+    public byte[] getBytes() {
+        byte[] bytes = new byte[length];
+        copyTo(bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * Records skipped because a crash cut them short.
+     */
+    public long getTornCount() {
+        return tornCount;
+    }
+
+    @Override
+    public void close() {
+        segment = null;
+        fileIndex = files.size();
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Settings
+    //----------------------------------------------------------------------------------------------
+
+    private ByteBuffer open(File file) throws IOException {
+        RandomAccessFile raf;
+        try {
+            raf = new RandomAccessFile(file, "r");
+        } catch (FileNotFoundException e) {
+            // Deleted by the running journal since it was listed.
+            return null;
+        }
+        try {
+            ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            if (buffer.capacity() < JournalSegment.HEADER_SIZE
+                    || buffer.getInt(0) != JournalSegment.MAGIC
+                    || buffer.getInt(4) != JournalSegment.VERSION) {
+                return null;
+            }
+            baseWallMillis = buffer.getLong(8);
+            baseNanos = buffer.getLong(16);
+            payloadPosition = JournalSegment.HEADER_SIZE;
+            length = 0;
+            return buffer;
+        } finally {
+            raf.close();
+        }
+    }
+
+    private int checksum(int recordDirection, long recordNanos) {
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        copyTo(scratch, 0);
+        return SerialJournal.checksum(crc, header, recordDirection, recordNanos, scratch, 0, length);
+    }
+}
@@ -0,0 +1,97 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One memory mapped journal file. The file starts with a header holding the wall clock and
+ * {@link System#nanoTime()} at creation, so record times can be converted to wall clock times
+ * later, even by another process. Records follow:
+ * <pre>
+ * int length | int crc32 | byte direction | long nanoTime | length bytes
+ * </pre>
+ * A record's length is written first and its checksum last. A zero length means nothing was
+ * written from there on, {@link #END_OF_SEGMENT} that the journal moved on to the next file, and a
+ * checksum that doesn't match a record cut short by a crash.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+class JournalSegment {
+
+    static final int MAGIC = 0x534A4E4C;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    static final int RECORD_HEADER_SIZE = 17;
+    static final int END_OF_SEGMENT = -1;
+
+    private static final int PAGE_SIZE = 4096;
+
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".seg";
+
+    final long sequence;
+    final File file;
+    final MappedByteBuffer buffer;
+    final int capacity;
+    // Next free offset, can run past the capacity when appends race for the last bytes.
+    final AtomicInteger position = new AtomicInteger(HEADER_SIZE);
+
+    private JournalSegment(long sequence, File file, MappedByteBuffer buffer) {
+        this.sequence = sequence;
+        this.file = file;
+        this.buffer = buffer;
+        this.capacity = buffer.capacity();
+    }
+
+    /**
+     * Create and map a new zero filled file of {@code size} bytes.
+     */
+    static JournalSegment create(File directory, long sequence, int size) throws IOException {
+        File file = new File(directory, fileName(sequence));
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+            raf.setLength(size);
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(8, System.currentTimeMillis());
+            buffer.putLong(16, System.nanoTime());
+            return new JournalSegment(sequence, file, buffer);
+        } finally {
+            // The mapping stays valid after the file is closed.
+            raf.close();
+        }
+    }
+
+    /**
+     * Fault every page of the mapping in, so appends don't take the page faults.
+     */
+    void touch() {
+        for (int i = HEADER_SIZE; i < capacity; i += PAGE_SIZE) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+
+    static String fileName(long sequence) {
+        return String.format("%s%019d%s", PREFIX, sequence, SUFFIX);
+    }
+
+    /**
+     * @return the sequence of a journal file name, -1 for other files
+     */
+    static long parseSequence(String name) {
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
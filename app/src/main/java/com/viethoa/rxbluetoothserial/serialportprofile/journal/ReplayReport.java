@@ -0,0 +1,91 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.journal;
+
+import com.viethoa.rxbluetoothserial.serialportprofile.metrics.HistogramSnapshot;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable numbers of a {@link ReplayTransport} run.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class ReplayReport {
+
+    private final long chunks;
+    private final long bytes;
+    private final long bytesWritten;
+    private final long elapsedNanos;
+    private final HistogramSnapshot latenessNanos;
+    private final HistogramSnapshot processingNanos;
+
+    ReplayReport(long chunks, long bytes, long bytesWritten, long elapsedNanos,
+                 HistogramSnapshot latenessNanos, HistogramSnapshot processingNanos) {
+        this.chunks = chunks;
+        this.bytes = bytes;
+        this.bytesWritten = bytesWritten;
+        this.elapsedNanos = elapsedNanos;
+        this.latenessNanos = latenessNanos;
+        this.processingNanos = processingNanos;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    public long getChunkCount() {
+        return chunks;
+    }
+
+    public long getByteCount() {
+        return bytes;
+    }
+
+    /**
+     * Written by the session during the replay, dropped by the transport.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * From the first read to the last chunk handed out and processed, or until now while running.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getBytesPerSecond() {
+        return elapsedNanos > 0 ? bytes * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos : 0;
+    }
+
+    public double getChunksPerSecond() {
+        return elapsedNanos > 0 ? chunks * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos : 0;
+    }
+
+    /**
+     * How long after its recorded time each chunk was read. Grows when processing can't keep up
+     * with the replay speed; when replaying flat out it is the time each chunk queued.
+     */
+    public HistogramSnapshot getLatenessNanos() {
+        return latenessNanos;
+    }
+
+    /**
+     * Time the read loop spent on a read before asking for the next: framing and listeners when
+     * they run inline, handing over to the dispatcher otherwise.
+     */
+    public HistogramSnapshot getProcessingNanos() {
+        return processingNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "ReplayReport{chunks=" + chunks
+                + ", bytes=" + bytes
+                + ", elapsedMs=" + TimeUnit.NANOSECONDS.toMillis(elapsedNanos)
+                + ", bytesPerSecond=" + (long) getBytesPerSecond()
+                + ", latenessNanos={" + latenessNanos + "}"
+                + ", processingNanos={" + processingNanos + "}"
+                + "}";
+    }
+}
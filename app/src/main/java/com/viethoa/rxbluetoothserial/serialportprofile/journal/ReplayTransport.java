@@ -0,0 +1,221 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.journal;
+
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialTransport;
+import com.viethoa.rxbluetoothserial.serialportprofile.metrics.Histogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays the bytes a {@link SerialJournal} recorded as read back as a transport, so the session,
+ * framing and listeners process real device traffic without a radio, e.g. to benchmark parsing on
+ * a JVM. Chunks are handed out as recorded, at the recorded pace, {@code speed} times faster, or
+ * flat out. Writes are accepted and dropped. Once the recording ends reads return -1, like a
+ * remote device closing the connection, and connecting again starts it over.
+ * <p>
+ * {@link #getReport()} tells how well the stack kept up: how late each chunk was picked up
+ * compared to its schedule, how long the read loop spent on each one before asking for the next,
+ * and the throughput.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class ReplayTransport implements SerialTransport {
+
+    /**
+     * No waiting at all, every chunk is due when the replay starts.
+     */
+    public static final double FLAT_OUT = Double.POSITIVE_INFINITY;
+
+    private static final long MAX_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final File directory;
+    private final double speed;
+    private final long maxGapNanos;
+    private volatile CountDownLatch closed = new CountDownLatch(1);
+
+    // Reader thread only.
+    private JournalReader reader;
+    private byte[] chunk = new byte[1024];
+    private int chunkLength;
+    private int chunkOffset;
+    private long chunkDueNanos;
+    private long lastRecordNanos;
+    private long lastReturnNanos;
+
+    private volatile Histogram lateness = new Histogram(MAX_NANOS);
+    private volatile Histogram processing = new Histogram(MAX_NANOS);
+    private final AtomicLong chunks = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    /**
+     * @param speed 1 for the recorded pace, 2 for twice as fast, {@link #FLAT_OUT} for no waiting
+     */
+    public ReplayTransport(File directory, double speed) {
+        this(directory, speed, Long.MAX_VALUE);
+    }
+
+    /**
+     * Recorded pauses longer than {@code maxGapNanos}, e.g. while disconnected, are cut to it
+     * before the speed is applied.
+     */
+    public ReplayTransport(File directory, double speed, long maxGapNanos) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("speed must be positive");
+        }
+        if (maxGapNanos < 0) {
+            throw new IllegalArgumentException("maxGapNanos must not be negative");
+        }
+        this.directory = directory;
+        this.speed = speed;
+        this.maxGapNanos = maxGapNanos;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Starts the replay from the first recorded read.
+     */
+    @Override
+    public void connect() throws IOException {
+        if (reader != null) {
+            reader.close();
+        }
+        reader = new JournalReader(directory);
+        closed = new CountDownLatch(1);
+        chunkLength = 0;
+        chunkOffset = 0;
+        lastRecordNanos = Long.MIN_VALUE;
+        lastReturnNanos = 0;
+        lateness = new Histogram(MAX_NANOS);
+        processing = new Histogram(MAX_NANOS);
+        chunks.set(0);
+        bytes.set(0);
+        bytesWritten.set(0);
+        endNanos = 0;
+        startNanos = System.nanoTime();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (reader == null || closed.getCount() == 0) {
+            return -1;
+        }
+
+        long now = System.nanoTime();
+        if (lastReturnNanos != 0) {
+            processing.record(now - lastReturnNanos);
+        }
+
+        if (chunkOffset == chunkLength && !nextChunk()) {
+            endNanos = lastReturnNanos != 0 ? lastReturnNanos : now;
+            return -1;
+        }
+
+        boolean first = chunkOffset == 0;
+        if (first) {
+            long wait = chunkDueNanos - now;
+            if (wait > 0) {
+                try {
+                    if (closed.await(wait, TimeUnit.NANOSECONDS)) {
+                        return -1;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while replaying");
+                }
+                now = System.nanoTime();
+            }
+            lateness.record(now - chunkDueNanos);
+            chunks.incrementAndGet();
+        }
+
+        int count = Math.min(length, chunkLength - chunkOffset);
+        System.arraycopy(chunk, chunkOffset, buffer, offset, count);
+        chunkOffset += count;
+        bytes.addAndGet(count);
+        lastReturnNanos = System.nanoTime();
+        return count;
+    }
+
+    /**
+     * What is left of the current chunk once it is due.
+     */
+    @Override
+    public int available() throws IOException {
+        if (chunkOffset == 0 || chunkOffset == chunkLength) {
+            return 0;
+        }
+        return chunkLength - chunkOffset;
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        if (closed.getCount() == 0) {
+            throw new IOException("Replay was closed");
+        }
+        bytesWritten.addAndGet(length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed.countDown();
+    }
+
+    @Override
+    public String getName() {
+        return "replay of " + directory;
+    }
+
+    /**
+     * Numbers of the current or last replay, can be taken while it runs.
+     */
+    public ReplayReport getReport() {
+        long end = endNanos != 0 ? endNanos : System.nanoTime();
+        return new ReplayReport(chunks.get(), bytes.get(), bytesWritten.get(), end - startNanos,
+                lateness.snapshot(), processing.snapshot());
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Settings
+    //----------------------------------------------------------------------------------------------
+
+    private boolean nextChunk() throws IOException {
+        while (reader.next()) {
+            if (reader.getDirection() != JournalDirection.INBOUND) {
+                continue;
+            }
+
+            long recorded = reader.getWallTimeNanos();
+            if (lastRecordNanos == Long.MIN_VALUE) {
+                // The schedule starts with the first read, not while the session starts up.
+                startNanos = System.nanoTime();
+                chunkDueNanos = startNanos;
+            } else if (speed != FLAT_OUT) {
+                long gap = Math.min(Math.max(0, recorded - lastRecordNanos), maxGapNanos);
+                chunkDueNanos += (long) (gap / speed);
+            }
+            lastRecordNanos = recorded;
+
+            if (chunk.length < reader.getLength()) {
+                chunk = new byte[Math.max(reader.getLength(), chunk.length * 2)];
+            }
+            reader.copyTo(chunk, 0);
+            chunkLength = reader.getLength();
+            chunkOffset = 0;
+            return true;
+        }
+        return false;
+    }
+}
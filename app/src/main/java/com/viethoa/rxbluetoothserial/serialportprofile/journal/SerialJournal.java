@@ -0,0 +1,337 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.journal;
+
+import com.viethoa.rxbluetoothserial.serialportprofile.io.NamedThreadFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+/**
+ * Journal of the bytes read and written, with their direction and {@link System#nanoTime()}, in
+ * memory mapped files of a fixed size kept within a disk budget. Read it back with
+ * {@link JournalReader}.
+ * <p>
+ * Appending reserves its bytes with one atomic add on the current file and copies straight into
+ * the mapping, no lock, no system call, no page fault and no allocation, so the reader and writer threads can
+ * both append without waiting for each other. The append that fills a file switches to a spare
+ * one created and paged in ahead of time by a background thread, which also flushes the full file to disk and
+ * deletes the oldest files over the budget. Only appends racing that switch wait for it.
+ * <p>
+ * Written bytes are in the page cache as soon as an append returns, so they survive the app
+ * crashing; {@link #flush()} forces them to disk to survive the device losing power too. A record
+ * cut short by a crash fails its checksum and is skipped when reading.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class SerialJournal implements Closeable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 4 << 20;
+    public static final int DEFAULT_MAX_SEGMENTS = 8;
+
+    private static final int MIN_SEGMENT_SIZE = 4096;
+    private static final int MAX_SEGMENT_SIZE = 1 << 30;
+
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final int maxPayload;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final AtomicReference<JournalSegment> current = new AtomicReference<>();
+    private final AtomicReference<JournalSegment> spare = new AtomicReference<>();
+    private final ExecutorService housekeeper;
+    // Files on disk by sequence, housekeeper thread only once constructed.
+    private final TreeMap<Long, File> files = new TreeMap<>();
+    private final ThreadLocal<Cursor> cursors = new ThreadLocal<Cursor>() {
+        @Override
+        protected Cursor initialValue() {
+            return new Cursor();
+        }
+    };
+    private final Runnable prepareSpareTask = new Runnable() {
+        @Override
+        public void run() {
+            prepareSpare();
+        }
+    };
+
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+    private volatile IOException error;
+
+    public SerialJournal(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS);
+    }
+
+    /**
+     * Keeps at most {@code maxSegments} files of {@code segmentSize} bytes in {@code directory},
+     * deleting the oldest ones, including those of earlier journals in the same directory.
+     * Appending always starts a new file.
+     */
+    public SerialJournal(File directory, int segmentSize, int maxSegments) throws IOException {
+        if (segmentSize < MIN_SEGMENT_SIZE || segmentSize > MAX_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("segmentSize must be between 4 KiB and 1 GiB");
+        }
+        if (maxSegments < 2) {
+            throw new IllegalArgumentException("maxSegments must be at least 2, the current and a spare one");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create " + directory);
+        }
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.maxPayload = segmentSize - JournalSegment.HEADER_SIZE - JournalSegment.RECORD_HEADER_SIZE;
+
+        long last = -1;
+        File[] existing = directory.listFiles();
+        if (existing != null) {
+            for (File file : existing) {
+                long sequence = JournalSegment.parseSequence(file.getName());
+                if (sequence >= 0) {
+                    files.put(sequence, file);
+                    last = Math.max(last, sequence);
+                }
+            }
+        }
+        nextSequence.set(last + 1);
+
+        JournalSegment first = JournalSegment.create(directory, nextSequence.getAndIncrement(), segmentSize);
+        first.touch();
+        files.put(first.sequence, first.file);
+        current.set(first);
+
+        housekeeper = Executors.newSingleThreadExecutor(new NamedThreadFactory("SerialJournal"));
+        housekeeper.execute(prepareSpareTask);
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Append a chunk, any thread. Chunks larger than a file are split into several records.
+     *
+     * @return false when the journal is closed or failed, the chunk is counted as dropped
+     */
+    public boolean append(@JournalDirection int direction, byte[] buffer, int offset, int length) {
+        if (length <= 0) {
+            // A zero length marks the end of the written records.
+            return !closed;
+        }
+        long nanos = System.nanoTime();
+        while (length > maxPayload) {
+            if (!appendRecord(direction, nanos, buffer, offset, maxPayload)) {
+                return false;
+            }
+            offset += maxPayload;
+            length -= maxPayload;
+        }
+        return appendRecord(direction, nanos, buffer, offset, length);
+    }
+
+    /**
+     * Force what was appended so far to disk. Blocks, keep it off the I/O threads.
+     */
+    public void flush() {
+        JournalSegment segment = current.get();
+        if (segment != null) {
+            segment.buffer.force();
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Most bytes kept on disk.
+     */
+    public long getDiskBudget() {
+        return (long) segmentSize * maxSegments;
+    }
+
+    /**
+     * Chunks not journaled because it was closed or failed.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Why appending stopped, null while it works.
+     */
+    public IOException getError() {
+        return error;
+    }
+
+    /**
+     * Stop appending and flush the current file in the background.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        housekeeper.execute(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        });
+        housekeeper.shutdown();
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Settings
+    //----------------------------------------------------------------------------------------------
+
+    private boolean appendRecord(int direction, long nanos, byte[] data, int offset, int length) {
+        int size = JournalSegment.RECORD_HEADER_SIZE + length;
+        while (!closed) {
+            JournalSegment segment = current.get();
+            int position = segment.position.getAndAdd(size);
+            if (position <= segment.capacity - size) {
+                write(segment, position, direction, nanos, data, offset, length);
+                return true;
+            }
+
+            if (position <= segment.capacity) {
+                // This append crossed the end, so it is the one to switch files.
+                if (segment.capacity - position >= 4) {
+                    segment.buffer.putInt(position, JournalSegment.END_OF_SEGMENT);
+                }
+                rotate(segment);
+            } else {
+                while (current.get() == segment && !closed) {
+                    Thread.yield();
+                }
+            }
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    private void write(JournalSegment segment, int position, int direction, long nanos,
+                       byte[] data, int offset, int length) {
+        Cursor cursor = cursors.get();
+        if (cursor.segment != segment) {
+            cursor.segment = segment;
+            cursor.view = segment.buffer.duplicate();
+        }
+
+        ByteBuffer view = cursor.view;
+        view.putInt(position, length);
+        view.put(position + 8, (byte) direction);
+        view.putLong(position + 9, nanos);
+        view.position(position + JournalSegment.RECORD_HEADER_SIZE);
+        view.put(data, offset, length);
+        view.putInt(position + 4, checksum(cursor.crc, cursor.header, direction, nanos, data, offset, length));
+    }
+
+    /**
+     * CRC32 of the direction, time and bytes, {@code header} is scratch space of 9 bytes.
+     */
+    static int checksum(CRC32 crc, byte[] header, int direction, long nanos, byte[] data, int offset, int length) {
+        header[0] = (byte) direction;
+        for (int i = 8; i > 0; i--) {
+            header[i] = (byte) nanos;
+            nanos >>>= 8;
+        }
+        crc.reset();
+        crc.update(header, 0, 9);
+        crc.update(data, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private void rotate(JournalSegment full) {
+        JournalSegment next = spare.getAndSet(null);
+        final JournalSegment stale = next != null && next.sequence < full.sequence ? next : null;
+        if (stale != null) {
+            // Finished after an earlier switch had to create its own file, reading would put it
+            // before that one.
+            next = null;
+        }
+        final boolean prepared = next != null;
+        if (next == null) {
+            // The spare isn't ready, appending faster than files can be created.
+            try {
+                next = JournalSegment.create(directory, nextSequence.getAndIncrement(), segmentSize);
+            } catch (IOException e) {
+                error = e;
+                closed = true;
+                housekeeper.shutdown();
+                return;
+            }
+        }
+        current.set(next);
+
+        final JournalSegment previous = full;
+        final JournalSegment started = next;
+        try {
+            housekeeper.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!prepared) {
+                        files.put(started.sequence, started.file);
+                    }
+                    if (stale != null) {
+                        files.remove(stale.sequence);
+                        stale.file.delete();
+                    }
+                    previous.buffer.force();
+                    prepareSpare();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Closed meanwhile.
+        }
+    }
+
+    /**
+     * Housekeeper thread only.
+     */
+    private void prepareSpare() {
+        if (!closed && spare.get() == null) {
+            try {
+                JournalSegment segment = JournalSegment.create(directory, nextSequence.getAndIncrement(), segmentSize);
+                segment.touch();
+                files.put(segment.sequence, segment.file);
+                spare.set(segment);
+            } catch (IOException e) {
+                // Retried after the next switch, which creates its file itself.
+            }
+        }
+        trimToBudget();
+    }
+
+    private void trimToBudget() {
+        JournalSegment inUse = current.get();
+        while (files.size() > maxSegments) {
+            Map.Entry<Long, File> oldest = files.firstEntry();
+            if (inUse != null && oldest.getKey() >= inUse.sequence) {
+                break;
+            }
+            files.pollFirstEntry();
+            // Still mapped by a late append on some systems, deleting only unlinks it then.
+            oldest.getValue().delete();
+        }
+    }
+
+    private static final class Cursor {
+        final CRC32 crc = new CRC32();
+        final byte[] header = new byte[9];
+        JournalSegment segment;
+        ByteBuffer view;
+    }
+}
@@ -0,0 +1,139 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.metrics;
+
+import com.viethoa.rxbluetoothserial.BluetoothSerialState;
+
+/**
+ * Immutable view of {@link SerialMetrics} at one point in time, times are in nanoseconds.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class MetricsSnapshot {
+
+    private final long timestampMillis;
+    @BluetoothSerialState
+    private final int state;
+    private final long bytesRead;
+    private final long bytesWritten;
+    private final long framesRead;
+    private final long framesWritten;
+    private final long writesFailed;
+    private final long connects;
+    private final long reconnects;
+    private final int writeQueueDepth;
+    private final HistogramSnapshot readChunkSizes;
+    private final HistogramSnapshot writeQueueDepths;
+    private final HistogramSnapshot writeLatencyNanos;
+    private final HistogramSnapshot connectTimeNanos;
+    private final long[] timeInStateNanos;
+
+    MetricsSnapshot(long timestampMillis, int state, long bytesRead, long bytesWritten, long framesRead,
+                    long framesWritten, long writesFailed, long connects, long reconnects, int writeQueueDepth,
+                    HistogramSnapshot readChunkSizes, HistogramSnapshot writeQueueDepths,
+                    HistogramSnapshot writeLatencyNanos, HistogramSnapshot connectTimeNanos,
+                    long[] timeInStateNanos) {
+        this.timestampMillis = timestampMillis;
+        this.state = state;
+        this.bytesRead = bytesRead;
+        this.bytesWritten = bytesWritten;
+        this.framesRead = framesRead;
+        this.framesWritten = framesWritten;
+        this.writesFailed = writesFailed;
+        this.connects = connects;
+        this.reconnects = reconnects;
+        this.writeQueueDepth = writeQueueDepth;
+        this.readChunkSizes = readChunkSizes;
+        this.writeQueueDepths = writeQueueDepths;
+        this.writeLatencyNanos = writeLatencyNanos;
+        this.connectTimeNanos = connectTimeNanos;
+        this.timeInStateNanos = timeInStateNanos;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    @BluetoothSerialState
+    public int getState() {
+        return state;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Frames cut by the frame decoder, zero without one.
+     */
+    public long getFramesRead() {
+        return framesRead;
+    }
+
+    /**
+     * Writes encoded by the frame encoder, zero without one.
+     */
+    public long getFramesWritten() {
+        return framesWritten;
+    }
+
+    public long getWritesFailed() {
+        return writesFailed;
+    }
+
+    public long getConnects() {
+        return connects;
+    }
+
+    public long getReconnects() {
+        return reconnects;
+    }
+
+    public int getWriteQueueDepth() {
+        return writeQueueDepth;
+    }
+
+    public HistogramSnapshot getReadChunkSizes() {
+        return readChunkSizes;
+    }
+
+    public HistogramSnapshot getWriteQueueDepths() {
+        return writeQueueDepths;
+    }
+
+    /**
+     * From the write call until the bytes were handed to the transport.
+     */
+    public HistogramSnapshot getWriteLatencyNanos() {
+        return writeLatencyNanos;
+    }
+
+    /**
+     * From connecting or reconnecting until connected.
+     */
+    public HistogramSnapshot getConnectTimeNanos() {
+        return connectTimeNanos;
+    }
+
+    public long getTimeInStateNanos(@BluetoothSerialState int state) {
+        return state >= 0 && state < timeInStateNanos.length ? timeInStateNanos[state] : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsSnapshot{state=" + state
+                + ", bytesRead=" + bytesRead + ", bytesWritten=" + bytesWritten
+                + ", framesRead=" + framesRead + ", framesWritten=" + framesWritten
+                + ", writesFailed=" + writesFailed + ", connects=" + connects + ", reconnects=" + reconnects
+                + ", writeQueueDepth=" + writeQueueDepth
+                + ", readChunkSizes={" + readChunkSizes + "}"
+                + ", writeLatencyNanos={" + writeLatencyNanos + "}"
+                + ", connectTimeNanos={" + connectTimeNanos + "}}";
+    }
+}
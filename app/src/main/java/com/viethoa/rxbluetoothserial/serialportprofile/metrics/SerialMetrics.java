@@ -0,0 +1,129 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.metrics;
+
+import com.viethoa.rxbluetoothserial.BluetoothSerialState;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and histograms of one serial link, kept across its reconnects. The data path only
+ * touches atomics, state changes are rare and synchronized. Read it with {@link #snapshot()}.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+public class SerialMetrics {
+
+    private static final int STATE_COUNT = BluetoothSerialState.RECONNECTING + 1;
+    private static final long MAX_CHUNK_SIZE = 1 << 20;
+    private static final long MAX_QUEUE_DEPTH = 1 << 16;
+    private static final long MAX_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong framesRead = new AtomicLong();
+    private final AtomicLong framesWritten = new AtomicLong();
+    private final AtomicLong writesFailed = new AtomicLong();
+    private final AtomicLong connects = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private final Histogram readChunkSizes = new Histogram(MAX_CHUNK_SIZE);
+    private final Histogram writeQueueDepths = new Histogram(MAX_QUEUE_DEPTH);
+    private final Histogram writeLatencyNanos = new Histogram(MAX_NANOS);
+    private final Histogram connectTimeNanos = new Histogram(MAX_NANOS);
+    private volatile int writeQueueDepth;
+
+    private final long[] stateNanos = new long[STATE_COUNT];
+    @BluetoothSerialState
+    private int state = BluetoothSerialState.DISCONNECTED;
+    private long stateSinceNanos = System.nanoTime();
+    private long connectStartNanos;
+
+    //----------------------------------------------------------------------------------------------
+    // Data path
+    //----------------------------------------------------------------------------------------------
+
+    public void onRead(int length) {
+        bytesRead.addAndGet(length);
+        readChunkSizes.record(length);
+    }
+
+    public void onFrameRead() {
+        framesRead.incrementAndGet();
+    }
+
+    /**
+     * A write request went out, {@code frame} when it was encoded as one frame.
+     */
+    public void onWritten(int length, long latencyNanos, boolean frame) {
+        bytesWritten.addAndGet(length);
+        writeLatencyNanos.record(latencyNanos);
+        if (frame) {
+            framesWritten.incrementAndGet();
+        }
+    }
+
+    public void onWriteFailed() {
+        writesFailed.incrementAndGet();
+    }
+
+    /**
+     * Depth of the write queue seen by a new write.
+     */
+    public void onWriteQueued(int depth) {
+        writeQueueDepth = depth;
+        writeQueueDepths.record(depth);
+    }
+
+    /**
+     * Depth left once a batch went out.
+     */
+    public void onWriteQueueDrained(int depth) {
+        writeQueueDepth = depth;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Connection
+    //----------------------------------------------------------------------------------------------
+
+    public synchronized void onStateChanged(@BluetoothSerialState int newState) {
+        long now = System.nanoTime();
+        stateNanos[state] += now - stateSinceNanos;
+
+        if (newState == BluetoothSerialState.RECONNECTING && state != BluetoothSerialState.RECONNECTING) {
+            reconnects.incrementAndGet();
+        }
+        if ((newState == BluetoothSerialState.CONNECTING || newState == BluetoothSerialState.RECONNECTING)
+                && state != BluetoothSerialState.CONNECTING && state != BluetoothSerialState.RECONNECTING) {
+            connectStartNanos = now;
+        }
+        if (newState == BluetoothSerialState.CONNECTED && state != BluetoothSerialState.CONNECTED) {
+            connects.incrementAndGet();
+            connectTimeNanos.record(now - connectStartNanos);
+        }
+        if (newState != BluetoothSerialState.CONNECTED) {
+            writeQueueDepth = 0;
+        }
+
+        state = newState;
+        stateSinceNanos = now;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Properties
+    //----------------------------------------------------------------------------------------------
+
+    public MetricsSnapshot snapshot() {
+        long[] timeInState = new long[STATE_COUNT];
+        int currentState;
+        synchronized (this) {
+            System.arraycopy(stateNanos, 0, timeInState, 0, STATE_COUNT);
+            timeInState[state] += System.nanoTime() - stateSinceNanos;
+            currentState = state;
+        }
+
+        return new MetricsSnapshot(System.currentTimeMillis(), currentState,
+                bytesRead.get(), bytesWritten.get(), framesRead.get(), framesWritten.get(), writesFailed.get(),
+                connects.get(), reconnects.get(), writeQueueDepth,
+                readChunkSizes.snapshot(), writeQueueDepths.snapshot(), writeLatencyNanos.snapshot(),
+                connectTimeNanos.snapshot(), timeInState);
+    }
+}
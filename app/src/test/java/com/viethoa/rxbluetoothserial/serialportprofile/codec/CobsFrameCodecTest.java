@@ -0,0 +1,80 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.codec;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public class CobsFrameCodecTest {
+
+    @Test
+    public void encodedFramesDecodeInAnyChunkSize() {
+        byte[][] payloads = {
+                FrameCollector.payload(600),
+                new byte[0],
+                new byte[]{0},
+                new byte[]{0, 0, 1, 0},
+                nonZero(254),
+                nonZero(255),
+                nonZero(508),
+        };
+        byte[] encoded = FrameCollector.encode(new CobsFrameEncoder(), payloads);
+
+        for (int chunkSize : new int[]{1, 2, 5, 254, 255, encoded.length}) {
+            FrameCollector collector = new FrameCollector();
+            collector.decode(new CobsFrameDecoder(1024), encoded, chunkSize);
+            assertEquals(payloads.length, collector.frames.size());
+            for (int i = 0; i < payloads.length; i++) {
+                assertArrayEquals("frame " + i + ", chunks of " + chunkSize, payloads[i], collector.frames.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void encodedFrameHasNoZeroButTheLast() {
+        byte[] encoded = FrameCollector.encode(new CobsFrameEncoder(), FrameCollector.payload(600));
+
+        for (int i = 0; i < encoded.length - 1; i++) {
+            assertEquals(false, encoded[i] == 0);
+        }
+        assertEquals(0, encoded[encoded.length - 1]);
+    }
+
+    @Test
+    public void oversizeFrameIsDropped() {
+        byte[] encoded = FrameCollector.encode(new CobsFrameEncoder(), FrameCollector.payload(100), new byte[]{1, 0, 2});
+
+        for (int chunkSize : new int[]{1, 10, encoded.length}) {
+            CobsFrameDecoder decoder = new CobsFrameDecoder(50);
+            FrameCollector collector = new FrameCollector();
+            collector.decode(decoder, encoded, chunkSize);
+
+            assertEquals(1, collector.frames.size());
+            assertArrayEquals(new byte[]{1, 0, 2}, collector.frames.get(0));
+            assertEquals(1, decoder.getDroppedFrames());
+        }
+    }
+
+    @Test
+    public void truncatedFrameIsDropped() {
+        CobsFrameDecoder decoder = new CobsFrameDecoder(16);
+        FrameCollector collector = new FrameCollector();
+        // The code byte promises 4 more bytes, only 2 come before the end.
+        collector.decode(decoder, new byte[]{5, 'a', 'b', 0, 3, 'o', 'k', 0}, 8);
+
+        assertEquals(1, collector.frames.size());
+        assertEquals("ok", new String(collector.frames.get(0)));
+        assertEquals(1, decoder.getDroppedFrames());
+    }
+
+    private static byte[] nonZero(int length) {
+        byte[] payload = new byte[length];
+        for (int i = 0; i < length; i++) {
+            payload[i] = (byte) (1 + i % 255);
+        }
+        return payload;
+    }
+}
@@ -0,0 +1,127 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.codec;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public class DelimiterFrameCodecTest {
+
+    private final List<String> frames = new ArrayList<>();
+
+    private final FrameListener listener = new FrameListener() {
+        @Override
+        public void onFrame(byte[] buffer, int offset, int length) {
+            frames.add(new String(buffer, offset, length));
+        }
+    };
+
+    @Test
+    public void encodedFramesDecodeInAnyChunkSize() {
+        byte[] encoded = FrameCollector.encode(DelimiterFrameEncoder.crlf(),
+                "AT".getBytes(), new byte[0], "OK\rthen\nmore".getBytes());
+        assertEquals("AT\r\n\r\nOK\rthen\nmore\r\n", new String(encoded));
+
+        for (int chunkSize = 1; chunkSize <= encoded.length; chunkSize++) {
+            FrameCollector collector = new FrameCollector();
+            collector.decode(DelimiterFrameDecoder.crlf(16), encoded, chunkSize);
+            assertEquals(3, collector.frames.size());
+            assertEquals("AT", new String(collector.frames.get(0)));
+            assertEquals("", new String(collector.frames.get(1)));
+            assertEquals("OK\rthen\nmore", new String(collector.frames.get(2)));
+        }
+    }
+
+    @Test
+    public void framesInOneChunk() {
+        DelimiterFrameDecoder decoder = DelimiterFrameDecoder.crlf(16);
+        decode(decoder, "one\r\n\r\ntwo\r\n");
+
+        assertFrames("one", "", "two");
+    }
+
+    @Test
+    public void frameAndDelimiterSplitAcrossChunks() {
+        DelimiterFrameDecoder decoder = DelimiterFrameDecoder.crlf(16);
+        decode(decoder, "on");
+        decode(decoder, "e\r");
+        decode(decoder, "\ntwo\r");
+        decode(decoder, "\n");
+
+        assertFrames("one", "two");
+    }
+
+    @Test
+    public void oversizeFrameInOneChunkIsDropped() {
+        DelimiterFrameDecoder decoder = DelimiterFrameDecoder.crlf(4);
+        decode(decoder, "abcdefg\r\nok\r\n");
+
+        assertFrames("ok");
+        assertEquals(1, decoder.getDroppedFrames());
+    }
+
+    @Test
+    public void oversizeFrameEndingInNextChunkKeepsTheFollowingFrame() {
+        DelimiterFrameDecoder decoder = DelimiterFrameDecoder.crlf(4);
+        decode(decoder, "abc");
+        decode(decoder, "defg\r\nok\r\n");
+
+        assertFrames("ok");
+        assertEquals(1, decoder.getDroppedFrames());
+    }
+
+    @Test
+    public void oversizeFrameSpanningManyChunksIsSkippedToTheDelimiter() {
+        DelimiterFrameDecoder decoder = DelimiterFrameDecoder.crlf(4);
+        decode(decoder, "abcdef");
+        decode(decoder, "ghijkl");
+        decode(decoder, "m\r\nok\r\n");
+
+        assertFrames("ok");
+        assertEquals(1, decoder.getDroppedFrames());
+    }
+
+    @Test
+    public void selfOverlappingDelimiter() {
+        DelimiterFrameDecoder decoder = new DelimiterFrameDecoder("ABAC".getBytes(), 16);
+        decode(decoder, "xyABABACz ABAC");
+
+        assertFrames("xyAB", "z ");
+    }
+
+    @Test
+    public void selfOverlappingDelimiterSplitAcrossChunks() {
+        DelimiterFrameDecoder decoder = new DelimiterFrameDecoder("AAB".getBytes(), 16);
+        decode(decoder, "xA");
+        decode(decoder, "A");
+        decode(decoder, "AB");
+
+        assertFrames("xA");
+    }
+
+    @Test
+    public void resetForgetsThePartialFrame() {
+        DelimiterFrameDecoder decoder = DelimiterFrameDecoder.crlf(16);
+        decode(decoder, "stale\r");
+        decoder.reset();
+        decode(decoder, "\nfresh\r\n");
+
+        assertFrames("\nfresh");
+    }
+
+    private void decode(FrameDecoder decoder, String chunk) {
+        // Not at the start of the array, so offsets are honoured.
+        byte[] bytes = ("__" + chunk).getBytes();
+        decoder.decode(bytes, 2, bytes.length - 2, listener);
+    }
+
+    private void assertFrames(String... expected) {
+        assertEquals(Arrays.asList(expected), frames);
+    }
+}
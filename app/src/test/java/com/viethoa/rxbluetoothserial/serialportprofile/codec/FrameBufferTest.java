@@ -0,0 +1,52 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.codec;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public class FrameBufferTest {
+
+    @Test
+    public void growsUpToTheMaxLength() {
+        byte[] payload = FrameCollector.payload(300);
+        FrameBuffer buffer = new FrameBuffer(300);
+        for (byte b : payload) {
+            assertTrue(buffer.append(b));
+        }
+
+        assertFalse(buffer.append((byte) 1));
+        assertEquals(300, buffer.length());
+        assertArrayEquals(payload, Arrays.copyOf(buffer.data(), buffer.length()));
+    }
+
+    @Test
+    public void refusedAppendLeavesTheFrameUnchanged() {
+        FrameBuffer buffer = new FrameBuffer(8);
+        assertTrue(buffer.append("abcde".getBytes(), 0, 5));
+
+        assertFalse(buffer.append("fghij".getBytes(), 0, 5));
+        assertEquals("abcde", new String(buffer.data(), 0, buffer.length()));
+        assertTrue(buffer.append("xyzfghij".getBytes(), 3, 3));
+        assertEquals("abcdefgh", new String(buffer.data(), 0, buffer.length()));
+    }
+
+    @Test
+    public void clearKeepsTheGrownArray() {
+        FrameBuffer buffer = new FrameBuffer(1000);
+        buffer.append(FrameCollector.payload(500), 0, 500);
+        byte[] grown = buffer.data();
+        buffer.clear();
+
+        assertEquals(0, buffer.length());
+        assertTrue(buffer.append(FrameCollector.payload(500), 0, 500));
+        assertTrue(grown == buffer.data());
+    }
+}
@@ -0,0 +1,60 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.codec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Copies every decoded frame, and helpers to feed decoders as a stream would.
+ * <p>
+ * Created by VietHoa on 23/10/2016.
+ */
+class FrameCollector implements FrameListener {
+
+    final List<byte[]> frames = new ArrayList<>();
+
+    @Override
+    public void onFrame(byte[] buffer, int offset, int length) {
+        frames.add(Arrays.copyOfRange(buffer, offset, offset + length));
+    }
+
+    /**
+     * Feeds {@code bytes} in chunks of {@code chunkSize}, each at a non zero offset of its array.
+     */
+    void decode(FrameDecoder decoder, byte[] bytes, int chunkSize) {
+        for (int i = 0; i < bytes.length; i += chunkSize) {
+            int count = Math.min(chunkSize, bytes.length - i);
+            byte[] chunk = new byte[count + 2];
+            System.arraycopy(bytes, i, chunk, 1, count);
+            decoder.decode(chunk, 1, count, this);
+        }
+    }
+
+    static byte[] encode(FrameEncoder encoder, byte[]... payloads) {
+        int max = 0;
+        for (byte[] payload : payloads) {
+            max += encoder.maxEncodedLength(payload.length);
+        }
+        byte[] encoded = new byte[max];
+        int length = 0;
+        for (byte[] payload : payloads) {
+            int written = encoder.encode(payload, 0, payload.length, encoded, length);
+            if (written > encoder.maxEncodedLength(payload.length)) {
+                throw new AssertionError("Encoded " + written + " bytes, more than the max");
+            }
+            length += written;
+        }
+        return Arrays.copyOf(encoded, length);
+    }
+
+    /**
+     * Has every byte value from 256 bytes on, zeros and escape bytes included.
+     */
+    static byte[] payload(int length) {
+        byte[] payload = new byte[length];
+        for (int i = 0; i < length; i++) {
+            payload[i] = (byte) (i * 7);
+        }
+        return payload;
+    }
+}
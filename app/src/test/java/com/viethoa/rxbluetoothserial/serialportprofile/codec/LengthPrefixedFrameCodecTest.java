@@ -0,0 +1,84 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.codec;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public class LengthPrefixedFrameCodecTest {
+
+    @Test
+    public void encodedFramesDecodeInAnyChunkSize() {
+        for (int headerLength : new int[]{1, 2, 4}) {
+            for (boolean bigEndian : new boolean[]{true, false}) {
+                byte[] first = FrameCollector.payload(200);
+                byte[] second = new byte[0];
+                byte[] third = FrameCollector.payload(3);
+                byte[] encoded = FrameCollector.encode(new LengthPrefixedFrameEncoder(headerLength, bigEndian),
+                        first, second, third);
+
+                for (int chunkSize : new int[]{1, 2, 3, 7, 64, encoded.length}) {
+                    FrameCollector collector = new FrameCollector();
+                    collector.decode(new LengthPrefixedFrameDecoder(headerLength, bigEndian, 256), encoded, chunkSize);
+                    assertEquals(3, collector.frames.size());
+                    assertArrayEquals(first, collector.frames.get(0));
+                    assertArrayEquals(second, collector.frames.get(1));
+                    assertArrayEquals(third, collector.frames.get(2));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void headerByteOrder() {
+        byte[] payload = FrameCollector.payload(0x0102);
+        byte[] big = FrameCollector.encode(new LengthPrefixedFrameEncoder(2, true), payload);
+        byte[] little = FrameCollector.encode(new LengthPrefixedFrameEncoder(2, false), payload);
+
+        assertArrayEquals(new byte[]{1, 2}, new byte[]{big[0], big[1]});
+        assertArrayEquals(new byte[]{2, 1}, new byte[]{little[0], little[1]});
+    }
+
+    @Test
+    public void oversizeFrameIsSkipped() {
+        byte[] encoded = FrameCollector.encode(new LengthPrefixedFrameEncoder(2, true),
+                FrameCollector.payload(100), FrameCollector.payload(5));
+
+        for (int chunkSize : new int[]{1, 10, encoded.length}) {
+            LengthPrefixedFrameDecoder decoder = new LengthPrefixedFrameDecoder(2, true, 50);
+            FrameCollector collector = new FrameCollector();
+            collector.decode(decoder, encoded, chunkSize);
+
+            assertEquals(1, collector.frames.size());
+            assertArrayEquals(FrameCollector.payload(5), collector.frames.get(0));
+            assertEquals(1, decoder.getDroppedFrames());
+        }
+    }
+
+    @Test
+    public void payloadTooLongForTheHeaderIsRefused() {
+        LengthPrefixedFrameEncoder encoder = new LengthPrefixedFrameEncoder(1, true);
+        FrameCollector.encode(encoder, FrameCollector.payload(255));
+        try {
+            FrameCollector.encode(encoder, FrameCollector.payload(256));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void resetDropsThePartialFrame() {
+        LengthPrefixedFrameDecoder decoder = new LengthPrefixedFrameDecoder(1, true, 16);
+        FrameCollector collector = new FrameCollector();
+        collector.decode(decoder, new byte[]{5, 'a', 'b'}, 3);
+        decoder.reset();
+        collector.decode(decoder, new byte[]{2, 'o', 'k'}, 3);
+
+        assertEquals(1, collector.frames.size());
+        assertEquals("ok", new String(collector.frames.get(0)));
+    }
+}
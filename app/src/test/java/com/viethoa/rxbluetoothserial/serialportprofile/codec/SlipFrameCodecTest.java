@@ -0,0 +1,74 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.codec;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public class SlipFrameCodecTest {
+
+    @Test
+    public void encodedFramesDecodeInAnyChunkSize() {
+        byte[][] payloads = {
+                FrameCollector.payload(600),
+                new byte[]{SlipFrameDecoder.END, SlipFrameDecoder.ESC, SlipFrameDecoder.ESC_END},
+                "plain".getBytes(),
+        };
+        byte[] encoded = FrameCollector.encode(new SlipFrameEncoder(), payloads);
+
+        for (int chunkSize : new int[]{1, 2, 3, 100, encoded.length}) {
+            FrameCollector collector = new FrameCollector();
+            collector.decode(new SlipFrameDecoder(1024), encoded, chunkSize);
+            assertEquals(payloads.length, collector.frames.size());
+            for (int i = 0; i < payloads.length; i++) {
+                assertArrayEquals("frame " + i + ", chunks of " + chunkSize, payloads[i], collector.frames.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void escapeSplitAcrossChunks() {
+        byte[] encoded = FrameCollector.encode(new SlipFrameEncoder(), new byte[]{SlipFrameDecoder.END});
+        assertArrayEquals(new byte[]{SlipFrameDecoder.END, SlipFrameDecoder.ESC, SlipFrameDecoder.ESC_END,
+                SlipFrameDecoder.END}, encoded);
+
+        FrameCollector collector = new FrameCollector();
+        collector.decode(new SlipFrameDecoder(16), encoded, 2);
+        assertEquals(1, collector.frames.size());
+        assertArrayEquals(new byte[]{SlipFrameDecoder.END}, collector.frames.get(0));
+    }
+
+    @Test
+    public void oversizeFrameIsDropped() {
+        byte[] encoded = FrameCollector.encode(new SlipFrameEncoder(), FrameCollector.payload(100), "ok".getBytes());
+
+        for (int chunkSize : new int[]{1, 10, encoded.length}) {
+            SlipFrameDecoder decoder = new SlipFrameDecoder(50);
+            FrameCollector collector = new FrameCollector();
+            collector.decode(decoder, encoded, chunkSize);
+
+            assertEquals(1, collector.frames.size());
+            assertEquals("ok", new String(collector.frames.get(0)));
+            assertEquals(1, decoder.getDroppedFrames());
+        }
+    }
+
+    @Test
+    public void noiseBeforeTheFirstFrameIsFlushed() {
+        byte[] frame = FrameCollector.encode(new SlipFrameEncoder(), "ok".getBytes());
+        byte[] noisy = new byte[frame.length + 3];
+        noisy[0] = 'x';
+        noisy[1] = 'y';
+        noisy[2] = 'z';
+        System.arraycopy(frame, 0, noisy, 3, frame.length);
+
+        FrameCollector collector = new FrameCollector();
+        collector.decode(new SlipFrameDecoder(16), noisy, noisy.length);
+        assertEquals(2, collector.frames.size());
+        assertEquals("xyz", new String(collector.frames.get(0)));
+        assertEquals("ok", new String(collector.frames.get(1)));
+    }
+}
@@ -0,0 +1,147 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.command;
+
+import com.viethoa.rxbluetoothserial.serialportprofile.codec.FrameListener;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.TimerWheel;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.WriteFuture;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public class CommandCorrelatorTest {
+
+    private final List<String> written = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> writerThreads = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> unsolicited = new ArrayList<>();
+    private TimerWheel timer;
+    private ExecutorService sendExecutor;
+    private CommandCorrelator correlator;
+
+    @Before
+    public void setUp() {
+        timer = new TimerWheel("TestTimer", 1, 64);
+        sendExecutor = Executors.newSingleThreadExecutor();
+        correlator = new CommandCorrelator(new CommandWriter() {
+            @Override
+            public WriteFuture write(byte[] data) {
+                written.add(new String(data));
+                writerThreads.add(Thread.currentThread().getName());
+                return new WriteFuture();
+            }
+        }, timer, sendExecutor);
+        correlator.setUnsolicitedListener(new FrameListener() {
+            @Override
+            public void onFrame(byte[] buffer, int offset, int length) {
+                unsolicited.add(new String(buffer, offset, length));
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        sendExecutor.shutdownNow();
+    }
+
+    @Test
+    public void lateReplyToCancelledCommandIsSwallowed() {
+        Callback first = new Callback();
+        Callback second = new Callback();
+        PendingCommand pending = correlator.send(SerialCommand.line("AT+A"), ResponseMatchers.prefix("OK"),
+                10, TimeUnit.SECONDS, first);
+        pending.cancel();
+        correlator.send(SerialCommand.line("AT+B"), ResponseMatchers.prefix("OK"), 10, TimeUnit.SECONDS, second);
+        assertTrue(first.error instanceof CancellationException);
+        assertEquals(1, correlator.getInFlightCount());
+
+        frame("OK A");
+        assertEquals(null, second.response);
+        assertTrue(unsolicited.isEmpty());
+
+        frame("OK B");
+        assertEquals("OK B", second.response);
+        assertEquals(0, correlator.getInFlightCount());
+    }
+
+    @Test
+    public void lateReplyToTimedOutCommandIsSwallowed() throws InterruptedException {
+        Callback first = new Callback();
+        Callback second = new Callback();
+        correlator.send(SerialCommand.line("AT+A"), ResponseMatchers.prefix("OK"), 20, TimeUnit.MILLISECONDS, first);
+        assertTrue(first.failed.await(5, TimeUnit.SECONDS));
+        assertTrue(first.error instanceof TimeoutException);
+
+        correlator.send(SerialCommand.line("AT+B"), ResponseMatchers.prefix("OK"), 10, TimeUnit.SECONDS, second);
+        frame("OK A");
+        frame("OK B");
+        assertEquals("OK B", second.response);
+        assertTrue(unsolicited.isEmpty());
+    }
+
+    @Test
+    public void expiredTombstoneNoLongerTakesReplies() throws InterruptedException {
+        Callback first = new Callback();
+        correlator.send(SerialCommand.line("AT+A"), ResponseMatchers.prefix("OK"), 20, TimeUnit.MILLISECONDS, first);
+        assertTrue(first.failed.await(5, TimeUnit.SECONDS));
+        // Once for the response, once more for the tombstone.
+        Thread.sleep(200);
+
+        frame("OK A");
+        assertEquals(1, unsolicited.size());
+    }
+
+    @Test
+    public void commandAfterTimeoutIsWrittenOffTheTimerThread() throws InterruptedException {
+        correlator.setMaxInFlight(1);
+        Callback first = new Callback();
+        correlator.send(SerialCommand.line("AT+A"), ResponseMatchers.prefix("OK"), 20, TimeUnit.MILLISECONDS, first);
+        correlator.send(SerialCommand.line("AT+B"), ResponseMatchers.prefix("OK"), 10, TimeUnit.SECONDS, new Callback());
+        assertEquals(1, written.size());
+
+        assertTrue(first.failed.await(5, TimeUnit.SECONDS));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (written.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(2, written.size());
+        assertTrue(!"TestTimer".equals(writerThreads.get(1)));
+    }
+
+    private void frame(String text) {
+        byte[] bytes = text.getBytes();
+        correlator.onFrame(bytes, 0, bytes.length);
+    }
+
+    private static class Callback implements ResponseCallback {
+
+        final CountDownLatch failed = new CountDownLatch(1);
+        volatile String response;
+        volatile Throwable error;
+
+        @Override
+        public void onResponse(SerialResponse response) {
+            this.response = response.getText();
+        }
+
+        @Override
+        public void onCommandFailed(Throwable error) {
+            this.error = error;
+            failed.countDown();
+        }
+    }
+}
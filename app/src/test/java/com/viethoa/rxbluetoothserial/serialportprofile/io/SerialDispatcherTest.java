@@ -0,0 +1,72 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import org.junit.Test;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public class SerialDispatcherTest {
+
+    private static final Executor SHUT_DOWN = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            throw new RejectedExecutionException("Shut down");
+        }
+    };
+
+    private final AtomicInteger delivered = new AtomicInteger();
+
+    private final SerialDispatcherListener listener = new SerialDispatcherListener() {
+        @Override
+        public void onDispatchRead(byte[] buffer, int offset, int length) {
+            delivered.incrementAndGet();
+        }
+    };
+
+    @Test(timeout = 5000)
+    public void readsForAShutDownExecutorAreDropped() {
+        SerialDispatcher dispatcher = new SerialDispatcher(SHUT_DOWN, new SerialDispatchOptions()
+                .setCapacity(4)
+                .setOverflowPolicy(DispatchOverflowPolicy.BLOCK), listener);
+
+        // More than fit the queue, the blocking policy would wait for room forever.
+        for (int i = 0; i < 10; i++) {
+            dispatcher.dispatchRead(new byte[]{1, 2, 3}, 0, 3);
+        }
+
+        assertEquals(0, delivered.get());
+        assertEquals(0, dispatcher.getDepth());
+        assertEquals(10, dispatcher.getDroppedCount());
+        assertEquals(30, dispatcher.getDroppedBytes());
+    }
+
+    @Test
+    public void readsAndTasksRunInOrder() {
+        final StringBuilder order = new StringBuilder();
+        SerialDispatcher dispatcher = new SerialDispatcher(SerialDispatcher.INLINE, new SerialDispatchOptions(),
+                new SerialDispatcherListener() {
+                    @Override
+                    public void onDispatchRead(byte[] buffer, int offset, int length) {
+                        order.append(new String(buffer, offset, length));
+                    }
+                });
+
+        dispatcher.dispatchRead("a".getBytes(), 0, 1);
+        dispatcher.post(new Runnable() {
+            @Override
+            public void run() {
+                order.append('|');
+            }
+        });
+        dispatcher.dispatchRead("b".getBytes(), 0, 1);
+
+        assertEquals("a|b", order.toString());
+        assertEquals(2, dispatcher.getDeliveredCount());
+    }
+}
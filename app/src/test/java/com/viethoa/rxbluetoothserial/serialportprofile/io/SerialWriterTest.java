@@ -0,0 +1,208 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import com.viethoa.rxbluetoothserial.serialportprofile.codec.LengthPrefixedFrameEncoder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public class SerialWriterTest {
+
+    private final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+    private final List<byte[]> reported = Collections.synchronizedList(new ArrayList<byte[]>());
+    private ScheduledExecutorService executor;
+    private volatile WriteFuture watched;
+    private volatile boolean reportedAfterDone;
+
+    private final SerialTransport transport = new SerialTransport() {
+        @Override
+        public void connect() {
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            return -1;
+        }
+
+        @Override
+        public int available() {
+            return 0;
+        }
+
+        @Override
+        public synchronized void write(byte[] buffer, int offset, int length) {
+            sent.write(buffer, offset, length);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String getName() {
+            return "capture";
+        }
+    };
+
+    private final SerialWriterListener listener = new SerialWriterListener() {
+        @Override
+        public void onDataWritten(byte[] buffer, int offset, int length) {
+            WriteFuture future = watched;
+            if (future != null && future.isDone()) {
+                reportedAfterDone = true;
+            }
+            reported.add(Arrays.copyOfRange(buffer, offset, offset + length));
+        }
+
+        @Override
+        public void onWriteError(IOException e) {
+        }
+    };
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void oversizePayloadFailsOnlyItsOwnWrite() throws Exception {
+        SerialWriter writer = start(new SerialWriteOptions()
+                .setFrameEncoder(new LengthPrefixedFrameEncoder(1, true)));
+
+        WriteFuture before = writer.write(new byte[]{1, 2}, 0, 2);
+        WriteFuture oversize = writer.write(new byte[300], 0, 300);
+        WriteFuture after = writer.write(new byte[]{3}, 0, 1);
+
+        assertFailsWith(IllegalArgumentException.class, oversize);
+        before.get(2, TimeUnit.SECONDS);
+        after.get(2, TimeUnit.SECONDS);
+        assertArrayEquals(new byte[]{2, 1, 2, 1, 3}, sentBytes());
+        assertEquals(2, reported.size());
+
+        // Nothing of the refused write is reported with the next batch.
+        writer.write(new byte[]{4}, 0, 1).get(2, TimeUnit.SECONDS);
+        assertEquals(3, reported.size());
+        assertArrayEquals(new byte[]{4}, reported.get(2));
+    }
+
+    @Test
+    public void oversizeLargeWriteFails() throws Exception {
+        SerialWriter writer = start(new SerialWriteOptions()
+                .setFrameEncoder(new LengthPrefixedFrameEncoder(2, true)));
+
+        assertFailsWith(IllegalArgumentException.class, writer.write(new byte[70000], 0, 70000));
+        writer.write(new byte[]{5}, 0, 1).get(2, TimeUnit.SECONDS);
+        assertArrayEquals(new byte[]{0, 1, 5}, sentBytes());
+        assertEquals(1, reported.size());
+    }
+
+    @Test
+    public void writeIsReportedBeforeItsFutureCompletes() throws Exception {
+        SerialWriter writer = start(new SerialWriteOptions());
+        for (int i = 0; i < 100; i++) {
+            synchronized (transport) {
+                // Held until the future is watched, so the writer can't finish first.
+                watched = writer.write(new byte[]{(byte) i}, 0, 1);
+            }
+            watched.get(2, TimeUnit.SECONDS);
+        }
+        assertEquals(100, reported.size());
+        assertTrue("onDataWritten ran after the future completed", !reportedAfterDone);
+    }
+
+    @Test
+    public void rateLimitResumeBeforeThePauseDoesNotStallTheWriter() throws Exception {
+        // Past the burst of one every frame is held back, and the worst case of a delay near zero
+        // is the timer resuming the writer before schedule even returns.
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1) {
+            @Override
+            public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+                command.run();
+                return super.schedule(command, 0, unit);
+            }
+        };
+        try {
+            SerialWriter writer = new SerialWriter(transport, new SerialWriteOptions()
+                    .setRateLimit(0, 10), listener);
+            writer.start(executor, scheduler);
+            WriteFuture last = null;
+            for (int i = 0; i < 20; i++) {
+                last = writer.write(new byte[]{(byte) i}, 0, 1);
+            }
+            last.get(2, TimeUnit.SECONDS);
+            assertEquals(20, sentBytes().length);
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void flushWindowDoesNotHoldTheSharedThread() throws Exception {
+        SerialWriter waiting = start(new SerialWriteOptions().setFlushWindowMicros(TimeUnit.SECONDS.toMicros(1)));
+        SerialWriter other = start(new SerialWriteOptions());
+
+        WriteFuture batched = waiting.write(new byte[]{1}, 0, 1);
+        Thread.sleep(20);
+        long start = System.nanoTime();
+        other.write(new byte[]{2}, 0, 1).get(2, TimeUnit.SECONDS);
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+        assertTrue(!batched.isDone());
+
+        // Joins the open batch, which still goes out once the window is over.
+        WriteFuture joined = waiting.write(new byte[]{3}, 0, 1);
+        batched.get(2, TimeUnit.SECONDS);
+        joined.get(2, TimeUnit.SECONDS);
+        assertArrayEquals(new byte[]{2, 1, 3}, sentBytes());
+    }
+
+    private SerialWriter start(SerialWriteOptions options) {
+        SerialWriter writer = new SerialWriter(transport, options, listener);
+        writer.start(executor, executor);
+        return writer;
+    }
+
+    private byte[] sentBytes() {
+        synchronized (transport) {
+            return sent.toByteArray();
+        }
+    }
+
+    private static void assertFailsWith(Class<? extends Throwable> type, WriteFuture future) throws Exception {
+        try {
+            future.get(2, TimeUnit.SECONDS);
+            fail("Write should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().toString(), type.isInstance(e.getCause()));
+        }
+    }
+}
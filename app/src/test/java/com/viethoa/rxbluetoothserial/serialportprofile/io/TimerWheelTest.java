@@ -0,0 +1,116 @@
+package com.viethoa.rxbluetoothserial.serialportprofile.io;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created by VietHoa on 23/10/2016.
+ */
+public class TimerWheelTest {
+
+    private final TimerWheel timer = new TimerWheel("TestTimer", 1, 8);
+
+    @Test
+    public void firesNotBeforeTheDelay() throws InterruptedException {
+        final CountDownLatch fired = new CountDownLatch(1);
+        final AtomicLong firedNanos = new AtomicLong();
+        long start = System.nanoTime();
+        TimerWheel.Timeout timeout = timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                firedNanos.set(System.nanoTime());
+                fired.countDown();
+            }
+        }, 20, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertTrue(firedNanos.get() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(timeout.isExpired());
+    }
+
+    @Test
+    public void delayOfSeveralRoundsOfTheWheel() throws InterruptedException {
+        final CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        // 8 slots of 1 ms, so the wheel turns several times first.
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                fired.countDown();
+            }
+        }, 30, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+    }
+
+    @Test
+    public void cancelledTimeoutNeverFires() throws InterruptedException {
+        final AtomicBoolean ran = new AtomicBoolean();
+        final CountDownLatch later = new CountDownLatch(1);
+        TimerWheel.Timeout timeout = timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                ran.set(true);
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+        assertTrue(timeout.cancel());
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                later.countDown();
+            }
+        }, 30, TimeUnit.MILLISECONDS);
+
+        assertTrue(later.await(5, TimeUnit.SECONDS));
+        assertFalse(ran.get());
+        assertTrue(timeout.isCancelled());
+        assertFalse(timeout.cancel());
+        // The fired timeout is only dropped from its slot once its task returned.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (timer.getPendingCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, timer.getPendingCount());
+    }
+
+    @Test
+    public void failingTaskDoesNotStopTheWheel() throws InterruptedException {
+        final CountDownLatch reported = new CountDownLatch(1);
+        final CountDownLatch fired = new CountDownLatch(1);
+        Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread thread, Throwable error) {
+                reported.countDown();
+            }
+        });
+        try {
+            timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    throw new IllegalStateException("expected");
+                }
+            }, 5, TimeUnit.MILLISECONDS);
+            timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    fired.countDown();
+                }
+            }, 20, TimeUnit.MILLISECONDS);
+
+            assertTrue(reported.await(5, TimeUnit.SECONDS));
+            assertTrue(fired.await(5, TimeUnit.SECONDS));
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(handler);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.viethoa.rxbluetoothserial.benchmark;
+
+import com.viethoa.rxbluetoothserial.cores.SerialText;
+import com.viethoa.rxbluetoothserial.serialportprofile.buffer.BufferPool;
+import com.viethoa.rxbluetoothserial.serialportprofile.buffer.PooledBuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding a line into a fresh array against a pooled one, single threaded and with four writers
+ * sharing the pool. Run with {@code -prof gc} to see the allocation rate per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BufferPoolBenchmark {
+
+    @Param({"16", "200", "4000"})
+    public int length;
+
+    private final BufferPool pool = new BufferPool(BufferPool.DEFAULT_BUFFERS_PER_CLASS);
+    private String line;
+
+    @Setup
+    public void setup() {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + i % 26));
+        }
+        line = builder.toString();
+    }
+
+    @Benchmark
+    public byte[] allocated() {
+        return SerialText.encodeLine(line, SerialText.CRLF);
+    }
+
+    @Benchmark
+    public int pooled() {
+        return encodePooled();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int pooledContended() {
+        return encodePooled();
+    }
+
+    private int encodePooled() {
+        PooledBuffer buffer = pool.acquire(line.length() + SerialText.CRLF.length);
+        int length = SerialText.encodeLine(line, SerialText.CRLF, buffer.array());
+        buffer.release();
+        return length;
+    }
+}
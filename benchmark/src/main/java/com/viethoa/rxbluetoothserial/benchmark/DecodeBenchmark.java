@@ -0,0 +1,64 @@
+package com.viethoa.rxbluetoothserial.benchmark;
+
+import com.viethoa.rxbluetoothserial.cores.SerialText;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text delivery of one read chunk, as done for BluetoothSerialListener#onBluetoothSerialRead.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark {
+
+    private static final int READ_BUFFER_SIZE = 1024;
+
+    @Param({"16", "256", "1024"})
+    public int chunkSize;
+
+    private byte[] buffer;
+
+    @Setup
+    public void setUp() {
+        buffer = new byte[READ_BUFFER_SIZE];
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = (byte) ('A' + i % 26);
+        }
+    }
+
+    /**
+     * What the reader and BluetoothSerial did before: decode in the reader with a charset lookup,
+     * then decode the whole buffer again with the platform charset.
+     */
+    @Benchmark
+    public void legacyDecode(Blackhole blackhole, ByteCounters counters) {
+        blackhole.consume(new String(buffer, 0, chunkSize, Charset.forName("ISO-8859-1")));
+        blackhole.consume(new String(buffer));
+        counters.bytes += chunkSize;
+    }
+
+    @Benchmark
+    public void sliceDecode(Blackhole blackhole, ByteCounters counters) {
+        blackhole.consume(SerialText.copy(buffer, 0, chunkSize));
+        blackhole.consume(SerialText.decode(buffer, 0, chunkSize));
+        counters.bytes += chunkSize;
+    }
+}
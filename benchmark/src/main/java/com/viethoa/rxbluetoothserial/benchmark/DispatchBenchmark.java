@@ -0,0 +1,108 @@
+package com.viethoa.rxbluetoothserial.benchmark;
+
+import com.viethoa.rxbluetoothserial.serialportprofile.io.DispatchOverflowPolicy;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialDispatchOptions;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialDispatcher;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialDispatcherListener;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * What the reader thread pays to hand a chunk to a listener that takes {@code listenerNanos} per
+ * call, and what each overflow and coalescing policy does about it: chunks dropped and listener
+ * calls saved are reported next to the score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+    @Param({"BLOCK", "DROP_NEWEST"})
+    public String policy;
+
+    @Param({"0", "4096"})
+    public int coalesceBytes;
+
+    @Param({"0", "20000"})
+    public long listenerNanos;
+
+    private ExecutorService executor;
+    private SerialDispatcher dispatcher;
+    private final byte[] chunk = new byte[256];
+    private volatile long checksum;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SerialDispatchOptions options = new SerialDispatchOptions()
+                .setOverflowPolicy("BLOCK".equals(policy)
+                        ? DispatchOverflowPolicy.BLOCK : DispatchOverflowPolicy.DROP_NEWEST)
+                .setCoalesceBytes(coalesceBytes);
+        executor = Executors.newSingleThreadExecutor();
+        dispatcher = new SerialDispatcher(executor, options, new SerialDispatcherListener() {
+            @Override
+            public void onDispatchRead(byte[] buffer, int offset, int length) {
+                checksum += buffer[offset] + length;
+                if (listenerNanos > 0) {
+                    LockSupport.parkNanos(listenerNanos);
+                }
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void dispatchRead(ByteCounters bytes, PolicyCounters counters) {
+        dispatcher.dispatchRead(chunk, 0, chunk.length);
+        bytes.bytes += chunk.length;
+        counters.update(dispatcher);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PolicyCounters {
+
+        public long dropped;
+        public long coalesced;
+        private long droppedStart = -1;
+        private long coalescedStart;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            droppedStart = -1;
+        }
+
+        void update(SerialDispatcher dispatcher) {
+            if (droppedStart < 0) {
+                droppedStart = dispatcher.getDroppedCount();
+                coalescedStart = dispatcher.getCoalescedCount();
+            }
+            dropped = dispatcher.getDroppedCount() - droppedStart;
+            coalesced = dispatcher.getCoalescedCount() - coalescedStart;
+        }
+    }
+}
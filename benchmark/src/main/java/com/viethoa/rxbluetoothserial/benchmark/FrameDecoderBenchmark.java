@@ -0,0 +1,68 @@
+package com.viethoa.rxbluetoothserial.benchmark;
+
+import com.viethoa.rxbluetoothserial.serialportprofile.codec.DelimiterFrameDecoder;
+import com.viethoa.rxbluetoothserial.serialportprofile.codec.FrameListener;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CRLF line reassembly of a telemetry stream read in chunks that do not line up with the lines.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameDecoderBenchmark {
+
+    private static final String LINE = "$GPGGA,123519,4807.038,N,01131.000,E,1,08,0.9,545.4,M,46.9,M,,*47\r\n";
+    private static final int STREAM_LINES = 64;
+
+    @Param({"16", "100", "1024"})
+    public int chunkSize;
+
+    private byte[] stream;
+    private final DelimiterFrameDecoder decoder = DelimiterFrameDecoder.crlf(256);
+    private final Sink sink = new Sink();
+
+    @Setup
+    public void setUp() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < STREAM_LINES; i++) {
+            builder.append(LINE);
+        }
+        stream = builder.toString().getBytes();
+    }
+
+    @Benchmark
+    public long decodeStream(ByteCounters counters) {
+        for (int offset = 0; offset < stream.length; offset += chunkSize) {
+            decoder.decode(stream, offset, Math.min(chunkSize, stream.length - offset), sink);
+        }
+        counters.bytes += stream.length;
+        return sink.frames;
+    }
+
+    private static class Sink implements FrameListener {
+
+        long frames;
+
+        @Override
+        public void onFrame(byte[] buffer, int offset, int length) {
+            frames += length;
+        }
+    }
+}
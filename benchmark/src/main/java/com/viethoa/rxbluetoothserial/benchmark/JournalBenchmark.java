@@ -0,0 +1,73 @@
+package com.viethoa.rxbluetoothserial.benchmark;
+
+import com.viethoa.rxbluetoothserial.serialportprofile.journal.JournalDirection;
+import com.viethoa.rxbluetoothserial.serialportprofile.journal.SerialJournal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the reader and writer threads pay to journal a chunk, including the file switches and
+ * deletes that a long run takes, single threaded and with both threads appending.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JournalBenchmark {
+
+    @Param({"64", "1024"})
+    public int chunkSize;
+
+    private File directory;
+    private SerialJournal journal;
+    private byte[] chunk;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = File.createTempFile("journal", "bench");
+        directory.delete();
+        journal = new SerialJournal(directory, SerialJournal.DEFAULT_SEGMENT_SIZE, 4);
+        chunk = new byte[chunkSize];
+    }
+
+    @TearDown
+    public void tearDown() {
+        journal.close();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public boolean append() {
+        return journal.append(JournalDirection.INBOUND, chunk, 0, chunk.length);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public boolean appendContended() {
+        return journal.append(JournalDirection.INBOUND, chunk, 0, chunk.length);
+    }
+}
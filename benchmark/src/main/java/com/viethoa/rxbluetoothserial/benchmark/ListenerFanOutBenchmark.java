@@ -0,0 +1,64 @@
+package com.viethoa.rxbluetoothserial.benchmark;
+
+import com.viethoa.rxbluetoothserial.BluetoothSerialRawListener;
+import com.viethoa.rxbluetoothserial.BluetoothSerialRawListeners;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatch of one chunk to the raw listeners, should not allocate whatever the listener count.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListenerFanOutBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int listeners;
+
+    private final BluetoothSerialRawListeners rawListeners = new BluetoothSerialRawListeners();
+    private final Sink sink = new Sink();
+    private final byte[] chunk = new byte[256];
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < listeners; i++) {
+            rawListeners.add(sink);
+        }
+    }
+
+    @Benchmark
+    public long dispatchRead() {
+        rawListeners.dispatchRead(chunk, 0, chunk.length);
+        return sink.checksum;
+    }
+
+    private static class Sink implements BluetoothSerialRawListener {
+
+        long checksum;
+
+        @Override
+        public void onBluetoothSerialRawRead(byte[] buffer, int offset, int length) {
+            checksum += length + buffer[offset];
+        }
+
+        @Override
+        public void onBluetoothSerialRawWrite(byte[] buffer, int offset, int length) {
+        }
+    }
+}
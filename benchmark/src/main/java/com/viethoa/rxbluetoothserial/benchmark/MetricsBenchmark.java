@@ -0,0 +1,47 @@
+package com.viethoa.rxbluetoothserial.benchmark;
+
+import com.viethoa.rxbluetoothserial.serialportprofile.metrics.SerialMetrics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the data path pays for metrics: one read chunk and one completed write, single threaded and
+ * with the reader and writer threads of four sessions sharing one instance.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+    private final SerialMetrics metrics = new SerialMetrics();
+
+    @Benchmark
+    public void recordRead() {
+        metrics.onRead(256);
+    }
+
+    @Benchmark
+    public void recordWrite() {
+        metrics.onWritten(64, 125000, true);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordReadContended() {
+        metrics.onRead(256);
+    }
+}
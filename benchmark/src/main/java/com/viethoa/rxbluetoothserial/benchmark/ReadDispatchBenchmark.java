@@ -0,0 +1,123 @@
+package com.viethoa.rxbluetoothserial.benchmark;
+
+import com.viethoa.rxbluetoothserial.BluetoothSerialRawListener;
+import com.viethoa.rxbluetoothserial.BluetoothSerialRawListeners;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.LoopbackTransport;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialSession;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialReadOptions;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialSessionListener;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialWriteOptions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A chunk written by the remote side until it was dispatched to every raw listener, through the
+ * same reader loop the RFCOMM connection uses. With {@code coalesceMicros} small chunks wait for
+ * more bytes up to 4 KiB, which shows the latency paid for fewer callbacks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadDispatchBenchmark {
+
+    @Param({"16", "256", "1024"})
+    public int chunkSize;
+
+    @Param({"1", "4"})
+    public int listeners;
+
+    @Param({"0", "100"})
+    public long coalesceMicros;
+
+    private LoopbackTransport device;
+    private SerialSession session;
+    private byte[] chunk;
+    private long expected;
+    private final Counter counter = new Counter();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final BluetoothSerialRawListeners rawListeners = new BluetoothSerialRawListeners();
+        rawListeners.add(counter);
+        for (int i = 1; i < listeners; i++) {
+            rawListeners.add(new Counter());
+        }
+
+        LoopbackTransport[] pair = LoopbackTransport.pair(1 << 20);
+        device = pair[1];
+        session = new SerialSession(pair[0], new SerialWriteOptions(), new SerialSessionListener() {
+            @Override
+            public void onDataRead(byte[] buffer, int offset, int length) {
+                rawListeners.dispatchRead(buffer, offset, length);
+            }
+
+            @Override
+            public void onDataWritten(byte[] buffer, int offset, int length) {
+            }
+
+            @Override
+            public void onSessionError(IOException e) {
+            }
+        });
+        if (coalesceMicros > 0) {
+            session.setReadOptions(new SerialReadOptions().setCoalescing(4096, coalesceMicros));
+        }
+        session.start("bench");
+
+        chunk = new byte[chunkSize];
+        for (int i = 0; i < chunk.length; i++) {
+            chunk[i] = (byte) ('0' + i % 10);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        session.close();
+        device.close();
+    }
+
+    @Benchmark
+    public long readAndDispatch(ByteCounters counters) throws IOException {
+        expected += chunkSize;
+        device.write(chunk, 0, chunkSize);
+        while (counter.bytes < expected) {
+            // Spin, the reader thread is the only writer of bytes.
+        }
+        counters.bytes += chunkSize;
+        return counter.checksum;
+    }
+
+    private static class Counter implements BluetoothSerialRawListener {
+
+        volatile long bytes;
+        long checksum;
+
+        @Override
+        public void onBluetoothSerialRawRead(byte[] buffer, int offset, int length) {
+            checksum += buffer[offset];
+            bytes += length;
+        }
+
+        @Override
+        public void onBluetoothSerialRawWrite(byte[] buffer, int offset, int length) {
+        }
+    }
+}
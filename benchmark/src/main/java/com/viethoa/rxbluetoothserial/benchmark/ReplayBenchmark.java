@@ -0,0 +1,128 @@
+package com.viethoa.rxbluetoothserial.benchmark;
+
+import com.viethoa.rxbluetoothserial.serialportprofile.codec.DelimiterFrameDecoder;
+import com.viethoa.rxbluetoothserial.serialportprofile.codec.FrameListener;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialSession;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialSessionListener;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialWriteOptions;
+import com.viethoa.rxbluetoothserial.serialportprofile.journal.JournalDirection;
+import com.viethoa.rxbluetoothserial.serialportprofile.journal.ReplayTransport;
+import com.viethoa.rxbluetoothserial.serialportprofile.journal.SerialJournal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A recorded telemetry session replayed flat out through the reader loop and CRLF framing, the
+ * way a journal from a device is replayed on a machine without a radio. One op is the whole
+ * recording.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplayBenchmark {
+
+    private static final String LINE = "$GPGGA,123519,4807.038,N,01131.000,E,1,08,0.9,545.4,M,46.9,M,,*47\r\n";
+    private static final int RECORDED_CHUNKS = 10000;
+
+    private File directory;
+    private long recordedBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = File.createTempFile("replay", "bench");
+        directory.delete();
+
+        // Chunks of 1 to 200 bytes that do not line up with the lines, like RFCOMM reads.
+        byte[] line = LINE.getBytes();
+        byte[] stream = new byte[line.length * 4];
+        for (int i = 0; i < stream.length; i++) {
+            stream[i] = line[i % line.length];
+        }
+        Random random = new Random(1);
+        SerialJournal journal = new SerialJournal(directory, SerialJournal.DEFAULT_SEGMENT_SIZE, 4);
+        int offset = 0;
+        for (int i = 0; i < RECORDED_CHUNKS; i++) {
+            int length = 1 + random.nextInt(200);
+            if (offset + length > stream.length) {
+                offset = 0;
+            }
+            journal.append(JournalDirection.INBOUND, stream, offset, length);
+            recordedBytes += length;
+            offset += length;
+        }
+        journal.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public long replayFlatOut(ByteCounters counters) throws Exception {
+        final DelimiterFrameDecoder decoder = DelimiterFrameDecoder.crlf(256);
+        final Sink sink = new Sink();
+        final CountDownLatch ended = new CountDownLatch(1);
+        ReplayTransport transport = new ReplayTransport(directory, ReplayTransport.FLAT_OUT);
+        transport.connect();
+
+        SerialSession session = new SerialSession(transport, new SerialWriteOptions(), new SerialSessionListener() {
+            @Override
+            public void onDataRead(byte[] buffer, int offset, int length) {
+                decoder.decode(buffer, offset, length, sink);
+            }
+
+            @Override
+            public void onDataWritten(byte[] buffer, int offset, int length) {
+            }
+
+            @Override
+            public void onSessionError(IOException e) {
+                // The end of the recording reads like the remote side closing.
+                ended.countDown();
+            }
+        });
+        session.start("replay");
+        ended.await();
+        session.close();
+
+        counters.bytes += recordedBytes;
+        return sink.frames;
+    }
+
+    private static class Sink implements FrameListener {
+
+        long frames;
+
+        @Override
+        public void onFrame(byte[] buffer, int offset, int length) {
+            frames++;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.viethoa.rxbluetoothserial.benchmark;
+
+import com.viethoa.rxbluetoothserial.cores.SerialText;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.LoopbackTransport;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialSession;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialSessionListener;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.SerialWriteOptions;
+import com.viethoa.rxbluetoothserial.serialportprofile.io.WriteFuture;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CRLF framing of writeln and the trip through the writer thread to the transport.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteBenchmark {
+
+    private static final String COMMAND = "AT+TEMP?";
+    private static final int BURST = 64;
+
+    private LoopbackTransport device;
+    private SerialSession session;
+    private Thread drain;
+    private byte[] line;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        LoopbackTransport[] pair = LoopbackTransport.pair(1 << 20);
+        device = pair[1];
+        session = new SerialSession(pair[0], new SerialWriteOptions(), new SerialSessionListener() {
+            @Override
+            public void onDataRead(byte[] buffer, int offset, int length) {
+            }
+
+            @Override
+            public void onDataWritten(byte[] buffer, int offset, int length) {
+            }
+
+            @Override
+            public void onSessionError(IOException e) {
+            }
+        });
+        session.start("bench");
+
+        drain = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                byte[] buffer = new byte[4096];
+                try {
+                    while (device.read(buffer, 0, buffer.length) >= 0) {
+                        // Remote side consumes everything.
+                    }
+                } catch (IOException e) {
+                    // Closed.
+                }
+            }
+        }, "bench-drain");
+        drain.start();
+
+        line = SerialText.encodeLine(COMMAND, SerialText.CRLF);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        session.close();
+        device.close();
+        drain.join();
+    }
+
+    /**
+     * What writeln did before: a charset lookup per call and separate payload and CRLF arrays.
+     */
+    @Benchmark
+    public void legacyFraming(Blackhole blackhole) {
+        blackhole.consume(COMMAND.getBytes(Charset.forName("ISO-8859-1")));
+        blackhole.consume(SerialText.CRLF);
+    }
+
+    @Benchmark
+    public byte[] lineFraming() {
+        return SerialText.encodeLine(COMMAND, SerialText.CRLF);
+    }
+
+    /**
+     * Latency of one line from the caller until the writer handed it to the transport.
+     */
+    @Benchmark
+    public void writeAndAwait(ByteCounters counters) throws Exception {
+        session.write(line, 0, line.length).get();
+        counters.bytes += line.length;
+    }
+
+    /**
+     * Lines queued back to back, which the writer merges into MTU sized transport writes.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void writeBurst(ByteCounters counters) throws Exception {
+        WriteFuture last = null;
+        for (int i = 0; i < BURST; i++) {
+            last = session.write(line, 0, line.length);
+        }
+        last.get();
+        counters.bytes += BURST * line.length;
+    }
+}